@@ -0,0 +1,200 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.LocalArtifactRegistration;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalMetadataRegistration;
+import org.eclipse.aether.repository.LocalMetadataRequest;
+import org.eclipse.aether.repository.LocalMetadataResult;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.NoLocalRepositoryManagerException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.eclipse.aether.util.ConfigUtils;
+
+/**
+ * {@link LocalRepositoryManager} recording in a {@link LocalRepositoryAccessLog} the artifacts found, installed or
+ * downloaded, and pinning them for the eviction as long as the session is alive: the repository system creates a
+ * manager per session and the pins are held by the manager only.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class AccessTrackingLocalRepositoryManager
+    implements LocalRepositoryManager
+{
+    private final LocalRepositoryManager delegate;
+
+    private final LocalRepositoryAccessLog accessLog;
+
+    private final LocalRepositoryAccessLog.Pins pins;
+
+    AccessTrackingLocalRepositoryManager( LocalRepositoryManager delegate, LocalRepositoryAccessLog accessLog ) {
+        this.delegate = delegate;
+        this.accessLog = accessLog;
+        this.pins = accessLog.newPins();
+    }
+
+    LocalRepositoryManager getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public LocalRepository getRepository() {
+        return delegate.getRepository();
+    }
+
+    @Override
+    public String getPathForLocalArtifact( Artifact artifact ) {
+        return delegate.getPathForLocalArtifact( artifact );
+    }
+
+    @Override
+    public String getPathForRemoteArtifact( Artifact artifact, RemoteRepository repository, String context ) {
+        return delegate.getPathForRemoteArtifact( artifact, repository, context );
+    }
+
+    @Override
+    public String getPathForLocalMetadata( Metadata metadata ) {
+        return delegate.getPathForLocalMetadata( metadata );
+    }
+
+    @Override
+    public String getPathForRemoteMetadata( Metadata metadata, RemoteRepository repository, String context ) {
+        return delegate.getPathForRemoteMetadata( metadata, repository, context );
+    }
+
+    @Override
+    public LocalArtifactResult find( RepositorySystemSession session, LocalArtifactRequest request ) {
+        long deletions = accessLog.deletions();
+        LocalArtifactResult result = delegate.find( session, request );
+        if ( result.getFile() != null && !accessLog.access( result.getFile(), pins, deletions ) ) {
+            // evicted since the lookup, pinned from now on
+            return delegate.find( session, request );
+        }
+        return result;
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, LocalArtifactRegistration request ) {
+        delegate.add( session, request );
+        Artifact artifact = request.getArtifact();
+        String path = request.getRepository() == null ? delegate.getPathForLocalArtifact( artifact )
+                        : delegate.getPathForRemoteArtifact( artifact, request.getRepository(), "" );
+        accessLog.access( new File( getRepository().getBasedir(), path ), pins );
+    }
+
+    @Override
+    public LocalMetadataResult find( RepositorySystemSession session, LocalMetadataRequest request ) {
+        return delegate.find( session, request );
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, LocalMetadataRegistration request ) {
+        delegate.add( session, request );
+    }
+
+    @Override
+    public String toString() {
+        return delegate + " tracked by " + accessLog.getLogFile();
+    }
+
+    /**
+     * Used by the repository system in place of the other factories when the session has
+     * {@link LocalRepositoryAccessLog#CONFIG_PROP_ACCESS_LOG}, registered in the container by {@link #register}.
+     */
+    static final class Factory
+        implements LocalRepositoryManagerFactory
+    {
+        static final String NAME = "hudson-tracked";
+
+        /**
+         * tried in order for the tracked manager
+         */
+        private final List<LocalRepositoryManagerFactory> delegates;
+
+        Factory( List<LocalRepositoryManagerFactory> delegates ) {
+            this.delegates = delegates;
+        }
+
+        @Override
+        public LocalRepositoryManager newInstance( RepositorySystemSession session, LocalRepository repository )
+            throws NoLocalRepositoryManagerException {
+            String logFile = ConfigUtils.getString( session, null, LocalRepositoryAccessLog.CONFIG_PROP_ACCESS_LOG );
+            if ( logFile == null || logFile.isEmpty() ) {
+                throw new NoLocalRepositoryManagerException( repository );
+            }
+            LocalRepositoryAccessLog accessLog;
+            try {
+                accessLog = LocalRepositoryAccessLog.open( new File( logFile ), repository.getBasedir() );
+            } catch ( IOException e ) {
+                // another repository (a layered base for instance) is not tracked
+                throw new NoLocalRepositoryManagerException( repository, e.getMessage(), e );
+            }
+            NoLocalRepositoryManagerException failure = null;
+            for ( LocalRepositoryManagerFactory delegate : delegates ) {
+                try {
+                    return new AccessTrackingLocalRepositoryManager( delegate.newInstance( session, repository ),
+                                                                     accessLog );
+                } catch ( NoLocalRepositoryManagerException e ) {
+                    failure = e;
+                }
+            }
+            throw failure == null ? new NoLocalRepositoryManagerException( repository ) : failure;
+        }
+
+        @Override
+        public float getPriority() {
+            // before LayeredLocalRepositoryManager.Factory, only the overlay is tracked
+            return 120;
+        }
+    }
+
+    /**
+     * add the {@link Factory} to the container if it doesn't have it yet
+     */
+    static void register( PlexusContainer plexusContainer )
+        throws ComponentLookupException {
+        synchronized ( plexusContainer ) {
+            if ( !plexusContainer.hasComponent( LocalRepositoryManagerFactory.class, Factory.NAME ) ) {
+                LayeredLocalRepositoryManager.register( plexusContainer );
+                plexusContainer.addComponent( new Factory( Arrays.asList(
+                    plexusContainer.lookup( LocalRepositoryManagerFactory.class,
+                                            LayeredLocalRepositoryManager.Factory.NAME ),
+                    plexusContainer.lookup( LocalRepositoryManagerFactory.class,
+                                            IndexedLocalRepositoryManager.Factory.NAME ),
+                    plexusContainer.lookup( LocalRepositoryManagerFactory.class, "enhanced" ) ) ),
+                                              LocalRepositoryManagerFactory.class, Factory.NAME );
+            }
+        }
+    }
+}
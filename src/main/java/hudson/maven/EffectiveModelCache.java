@@ -0,0 +1,237 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Persistent cache of effective models, one file per pom in a directory which can be shared by several JVMs.
+ * An entry is found with a key computed from the pom content and the build context, and is only valid while
+ * the other files used to build the model (parents, imported poms) keep the content they had when it was stored.
+ * Entries are written atomically and carry a checksum, a damaged entry is a miss. The least recently used entries
+ * are removed once the directory gets bigger than the size limit.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class EffectiveModelCache
+{
+
+    private static final int MAGIC = 0x484d4543;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String SUFFIX = ".model";
+
+    private final File directory;
+
+    private final long maxSize;
+
+    EffectiveModelCache( File directory, long maxSize ) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param context everything apart from the pom which changes the effective model
+     */
+    static String newKey( File pom, String context )
+        throws IOException {
+        MessageDigest digest = SettingsCache.newDigest();
+        digest.update( pom.getAbsolutePath().getBytes( StandardCharsets.UTF_8 ) );
+        digest.update( (byte) 0 );
+        digest.update( Files.readAllBytes( pom.toPath() ) );
+        digest.update( (byte) 0 );
+        digest.update( context.getBytes( StandardCharsets.UTF_8 ) );
+        return SettingsCache.toHex( digest.digest() );
+    }
+
+    /**
+     * @return the cached model or <code>null</code> if there is none, it is damaged or one of its inputs has changed
+     */
+    Model get( String key ) {
+        File file = new File( directory, key + SUFFIX );
+        if ( !file.isFile() ) {
+            return null;
+        }
+        Model model = read( file, key );
+        if ( model == null ) {
+            delete( file );
+            return null;
+        }
+        // the mtime is the last access for the eviction
+        file.setLastModified( System.currentTimeMillis() );
+        return model;
+    }
+
+    /**
+     * @param inputs the files read to build the model apart from the pom
+     */
+    void put( String key, Collection<File> inputs, Model model ) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream( payload )) {
+                out.writeUTF( key );
+                Map<String, String> hashes = new LinkedHashMap<>();
+                for ( File input : inputs ) {
+                    hashes.put( input.getAbsolutePath(), hash( input ) );
+                }
+                out.writeInt( hashes.size() );
+                for ( Map.Entry<String, String> entry : hashes.entrySet() ) {
+                    out.writeUTF( entry.getKey() );
+                    out.writeUTF( entry.getValue() );
+                }
+                ByteArrayOutputStream xml = new ByteArrayOutputStream();
+                new MavenXpp3Writer().write( xml, model );
+                out.writeInt( xml.size() );
+                xml.writeTo( out );
+            }
+            byte[] bytes = payload.toByteArray();
+
+            Path dir = directory.toPath();
+            Files.createDirectories( dir );
+            Path tmp = Files.createTempFile( dir, key, ".tmp" );
+            try {
+                try (DataOutputStream out = new DataOutputStream( Files.newOutputStream( tmp ) )) {
+                    out.writeInt( MAGIC );
+                    out.writeInt( FORMAT_VERSION );
+                    out.writeInt( bytes.length );
+                    out.write( SettingsCache.newDigest().digest( bytes ) );
+                    out.write( bytes );
+                }
+                Files.move( tmp, dir.resolve( key + SUFFIX ), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE );
+            } finally {
+                Files.deleteIfExists( tmp );
+            }
+        } catch ( IOException e ) {
+            // the cache is only an optimization
+            if ( MavenEmbedderUtils.debug ) {
+                System.out.println( "cannot store effective model " + key + ": " + e.getMessage() );
+            }
+            return;
+        }
+        evict();
+    }
+
+    private Model read( File file, String key ) {
+        try (DataInputStream in = new DataInputStream( Files.newInputStream( file.toPath() ) )) {
+            if ( in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION ) {
+                return null;
+            }
+            int length = in.readInt();
+            if ( length < 0 || length > file.length() ) {
+                return null;
+            }
+            byte[] checksum = new byte[32];
+            in.readFully( checksum );
+            byte[] bytes = new byte[length];
+            in.readFully( bytes );
+            if ( !Arrays.equals( checksum, SettingsCache.newDigest().digest( bytes ) ) ) {
+                return null;
+            }
+
+            DataInputStream payload = new DataInputStream( new ByteArrayInputStream( bytes ) );
+            if ( !key.equals( payload.readUTF() ) ) {
+                return null;
+            }
+            int inputs = payload.readInt();
+            for ( int i = 0; i < inputs; i++ ) {
+                File input = new File( payload.readUTF() );
+                String hash = payload.readUTF();
+                if ( !input.isFile() || !hash.equals( hash( input ) ) ) {
+                    return null;
+                }
+            }
+            byte[] xml = new byte[payload.readInt()];
+            payload.readFully( xml );
+            return new MavenXpp3Reader().read( new ByteArrayInputStream( xml ), false );
+        } catch ( IOException | XmlPullParserException | RuntimeException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * remove the least recently used entries until the directory fits in the size limit
+     */
+    private void evict() {
+        File[] files = directory.listFiles( ( dir, name ) -> name.endsWith( SUFFIX ) );
+        if ( files == null ) {
+            return;
+        }
+        long size = 0;
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for ( int i = 0; i < files.length; i++ ) {
+            size += files[i].length();
+            // stat once, another JVM can touch the files while sorting
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        if ( size <= maxSize ) {
+            return;
+        }
+        Arrays.sort( order, Comparator.comparingLong( i -> lastModified[i] ) );
+        for ( int i = 0; i < order.length && size > maxSize; i++ ) {
+            File file = files[order[i]];
+            long length = file.length();
+            if ( delete( file ) ) {
+                size -= length;
+            }
+        }
+    }
+
+    private static boolean delete( File file ) {
+        try {
+            return Files.deleteIfExists( file.toPath() );
+        } catch ( IOException e ) {
+            // used by somebody else, will be removed later
+            return false;
+        }
+    }
+
+    private static String hash( File file )
+        throws IOException {
+        return SettingsCache.toHex( SettingsCache.newDigest().digest( Files.readAllBytes( file.toPath() ) ) );
+    }
+}
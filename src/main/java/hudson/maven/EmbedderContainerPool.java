@@ -0,0 +1,368 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.logging.LoggerManager;
+
+/**
+ * <p>
+ * Keeps built {@link PlexusContainer}s around so that several {@link MavenEmbedder}s created with the same
+ * container inputs share one warm container instead of running the component discovery again.
+ * </p>
+ * <p>
+ * Containers are keyed by the maven home (or the maven/parent classloaders), the overriding components.xml,
+ * the class path scanning mode, the component visibility, the auto wiring flag and the logger configuration.
+ * The pool is bounded: least recently used containers are evicted when it is full or when they have been
+ * idle for longer than the idle timeout. An evicted container is disposed as soon as it is no longer leased.
+ * </p>
+ * <p>
+ * Usage : <code>mavenRequest.setContainerPool( pool )</code> before creating the {@link MavenEmbedder}.
+ * </p>
+ * @since 3.16
+ */
+public class EmbedderContainerPool
+{
+
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis( 10 );
+
+    private final int maxSize;
+
+    private final long idleTimeoutMillis;
+
+    /**
+     * access ordered so the first entry is always the least recently used one
+     */
+    private final LinkedHashMap<ContainerKey, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /**
+     * all containers built by this pool (pooled or already evicted) which have not been disposed yet
+     */
+    private final Map<PlexusContainer, Entry> containers = new IdentityHashMap<>();
+
+    private boolean disposed;
+
+    public EmbedderContainerPool() {
+        this( DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT );
+    }
+
+    /**
+     * @param maxSize maximum number of containers kept in the pool, must be at least 1
+     * @param idleTimeoutMillis time after which a container which is not leased is evicted, 0 or less to never evict
+     *                          idle containers
+     */
+    public EmbedderContainerPool( int maxSize, long idleTimeoutMillis ) {
+        if ( maxSize < 1 ) {
+            throw new IllegalArgumentException( "maxSize must be at least 1" );
+        }
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @param mavenHome cannot be <code>null</code>
+     * @param mavenRequest the container inputs are read from this request
+     * @return a warm container from the pool or a new one built with
+     *         {@link MavenEmbedderUtils#buildPlexusContainer(File, MavenRequest)}. It must be handed back with
+     *         {@link #release(PlexusContainer)}
+     */
+    public PlexusContainer acquire( File mavenHome, MavenRequest mavenRequest )
+        throws MavenEmbedderException {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ContainerKey key = new ContainerKey( mavenHome.getAbsolutePath(), contextClassLoader, null, mavenRequest );
+        return acquire( key, () -> MavenEmbedderUtils.buildPlexusContainer( mavenHome, mavenRequest ) );
+    }
+
+    /**
+     * @param mavenClassLoader the classloader containing maven
+     * @param parent can be <code>null</code> the context classloader will be used
+     * @param mavenRequest the container inputs are read from this request
+     * @return a warm container from the pool or a new one built with
+     *         {@link MavenEmbedderUtils#buildPlexusContainer(ClassLoader, ClassLoader, MavenRequest)}. It must be
+     *         handed back with {@link #release(PlexusContainer)}
+     */
+    public PlexusContainer acquire( ClassLoader mavenClassLoader, ClassLoader parent, MavenRequest mavenRequest )
+        throws MavenEmbedderException {
+        ClassLoader parentClassLoader = parent == null ? Thread.currentThread().getContextClassLoader() : parent;
+        ContainerKey key = new ContainerKey( null, mavenClassLoader, parentClassLoader, mavenRequest );
+        return acquire( key,
+                        () -> MavenEmbedderUtils.buildPlexusContainer( mavenClassLoader, parentClassLoader, mavenRequest ) );
+    }
+
+    private PlexusContainer acquire( ContainerKey key, ContainerFactory factory )
+        throws MavenEmbedderException {
+        EmbedderEvents.ContainerAcquisition event = new EmbedderEvents.ContainerAcquisition();
+        event.begin();
+        evictIdle();
+        synchronized ( this ) {
+            if ( disposed ) {
+                throw new IllegalStateException( "container pool has been disposed" );
+            }
+            Entry entry = entries.get( key );
+            if ( entry != null ) {
+                entry.leases++;
+                entry.lastUsed = System.nanoTime();
+                EmbedderStats.getInstance().containerPool.hit();
+                if ( event.shouldCommit() ) {
+                    event.cacheHit = true;
+                    event.commit();
+                }
+                return entry.container;
+            }
+        }
+
+        EmbedderStats.getInstance().containerPool.miss();
+        // build outside of the lock, this can take a while
+        PlexusContainer container = factory.build();
+
+        List<Entry> toDispose = new ArrayList<>();
+        PlexusContainer result;
+        synchronized ( this ) {
+            Entry entry = disposed ? null : entries.get( key );
+            if ( entry == null ) {
+                entry = new Entry( container );
+                if ( !disposed ) {
+                    entries.put( key, entry );
+                    evictOverflow( toDispose );
+                } else {
+                    entry.evicted = true;
+                }
+                containers.put( container, entry );
+            } else {
+                // another thread has been faster
+                toDispose.add( new Entry( container ) );
+            }
+            entry.leases++;
+            entry.lastUsed = System.nanoTime();
+            result = entry.container;
+        }
+        disposeAll( toDispose );
+        if ( event.shouldCommit() ) {
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * hand back a container obtained with one of the <code>acquire</code> methods.
+     * @param container the container, containers not coming from this pool are ignored
+     */
+    public void release( PlexusContainer container ) {
+        List<Entry> toDispose = new ArrayList<>();
+        synchronized ( this ) {
+            Entry entry = containers.get( container );
+            if ( entry == null || entry.leases == 0 ) {
+                return;
+            }
+            entry.leases--;
+            entry.lastUsed = System.nanoTime();
+            if ( entry.evicted && entry.leases == 0 ) {
+                containers.remove( container );
+                toDispose.add( entry );
+            }
+        }
+        disposeAll( toDispose );
+    }
+
+    /**
+     * evict (and dispose) the containers which have not been used since the idle timeout.
+     * Can be called periodically by the client; it is also done on each {@link #acquire(File, MavenRequest)}.
+     */
+    public void evictIdle() {
+        if ( idleTimeoutMillis <= 0 ) {
+            return;
+        }
+        List<Entry> toDispose = new ArrayList<>();
+        synchronized ( this ) {
+            long now = System.nanoTime();
+            long timeout = TimeUnit.MILLISECONDS.toNanos( idleTimeoutMillis );
+            for ( Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if ( entry.leases == 0 && now - entry.lastUsed >= timeout ) {
+                    it.remove();
+                    evict( entry, toDispose );
+                }
+            }
+        }
+        disposeAll( toDispose );
+    }
+
+    /**
+     * evict all the containers of the pool. Leased containers will be disposed when released.
+     */
+    public void clear() {
+        List<Entry> toDispose = new ArrayList<>();
+        synchronized ( this ) {
+            for ( Entry entry : entries.values() ) {
+                evict( entry, toDispose );
+            }
+            entries.clear();
+        }
+        disposeAll( toDispose );
+    }
+
+    /**
+     * evict all the containers and refuse any further <code>acquire</code>.
+     */
+    public void dispose() {
+        synchronized ( this ) {
+            disposed = true;
+        }
+        clear();
+    }
+
+    /**
+     * @return number of containers currently pooled
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    private void evictOverflow( List<Entry> toDispose ) {
+        Iterator<Entry> it = entries.values().iterator();
+        while ( entries.size() > maxSize && it.hasNext() ) {
+            Entry entry = it.next();
+            it.remove();
+            evict( entry, toDispose );
+        }
+    }
+
+    private void evict( Entry entry, List<Entry> toDispose ) {
+        entry.evicted = true;
+        if ( entry.leases == 0 ) {
+            containers.remove( entry.container );
+            toDispose.add( entry );
+        }
+    }
+
+    private static void disposeAll( List<Entry> entries ) {
+        for ( Entry entry : entries ) {
+            MavenEmbedderUtils.disposePlexusContainer( entry.container );
+        }
+    }
+
+    private interface ContainerFactory {
+        PlexusContainer build() throws MavenEmbedderException;
+    }
+
+    private static final class Entry {
+        final PlexusContainer container;
+
+        int leases;
+
+        long lastUsed = System.nanoTime();
+
+        boolean evicted;
+
+        Entry( PlexusContainer container ) {
+            this.container = container;
+        }
+    }
+
+    /**
+     * fingerprint of all the inputs used by {@link MavenEmbedderUtils} to build a container.
+     * classloaders and logger manager are compared by identity.
+     */
+    static final class ContainerKey {
+        private final String mavenHome;
+
+        private final ClassLoader mavenClassLoader;
+
+        private final ClassLoader parentClassLoader;
+
+        private final String overridingComponentsXml;
+
+        private final String classPathScanning;
+
+        private final String componentVisibility;
+
+        private final boolean autoWiring;
+
+        private final LoggerManager loggerManager;
+
+        private final int loggingLevel;
+
+        private final int hashCode;
+
+        ContainerKey( String mavenHome, ClassLoader mavenClassLoader, ClassLoader parentClassLoader,
+                      MavenRequest mavenRequest ) {
+            this.mavenHome = mavenHome;
+            this.mavenClassLoader = mavenClassLoader;
+            this.parentClassLoader = parentClassLoader;
+            URL componentsXml = mavenRequest.getOverridingComponentsXml();
+            this.overridingComponentsXml = componentsXml == null ? null : componentsXml.toExternalForm();
+            this.classPathScanning = mavenRequest.getContainerClassPathScanning();
+            this.componentVisibility = mavenRequest.getContainerComponentVisibility();
+            this.autoWiring = mavenRequest.isContainerAutoWiring();
+            this.loggerManager = mavenRequest.getMavenLoggerManager();
+            this.loggingLevel = mavenRequest.getLoggingLevel();
+            this.hashCode = Objects.hash( mavenHome, System.identityHashCode( mavenClassLoader ),
+                                          System.identityHashCode( parentClassLoader ), overridingComponentsXml,
+                                          classPathScanning, componentVisibility, autoWiring,
+                                          System.identityHashCode( loggerManager ), loggingLevel );
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof ContainerKey ) ) {
+                return false;
+            }
+            ContainerKey that = (ContainerKey) o;
+            return autoWiring == that.autoWiring
+                && loggingLevel == that.loggingLevel
+                && mavenClassLoader == that.mavenClassLoader
+                && parentClassLoader == that.parentClassLoader
+                && loggerManager == that.loggerManager
+                && Objects.equals( mavenHome, that.mavenHome )
+                && Objects.equals( overridingComponentsXml, that.overridingComponentsXml )
+                && Objects.equals( classPathScanning, that.classPathScanning )
+                && Objects.equals( componentVisibility, that.componentVisibility );
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
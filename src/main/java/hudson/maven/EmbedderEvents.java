@@ -0,0 +1,188 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events of the embedder, all in the <code>Maven Embedder</code> category.
+ * They are {@link Enabled disabled} unless a recording enables them (<code>hudson.maven.*</code>), the fields are
+ * only filled when {@link Event#shouldCommit()} so a disabled event costs an allocation the JIT removes.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class EmbedderEvents
+{
+    private static final String CATEGORY = "Maven Embedder";
+
+    private EmbedderEvents() {
+        // holder
+    }
+
+    @Name( "hudson.maven.ContainerCreation" )
+    @Label( "Container Creation" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class ContainerCreation
+        extends Event
+    {
+        @Label( "Maven Home" )
+        @Description( "null if the container is built from a classloader" )
+        String mavenHome;
+
+        @Label( "Pooled" )
+        boolean pooled;
+    }
+
+    @Name( "hudson.maven.ContainerAcquisition" )
+    @Label( "Container Acquisition" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class ContainerAcquisition
+        extends Event
+    {
+        @Label( "Cache Hit" )
+        boolean cacheHit;
+    }
+
+    @Name( "hudson.maven.ClassRealmCreation" )
+    @Label( "Class Realm Creation" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class ClassRealmCreation
+        extends Event
+    {
+        @Label( "Maven Home" )
+        String mavenHome;
+
+        @Label( "Jar Count" )
+        int jarCount;
+    }
+
+    @Name( "hudson.maven.SettingsBuilding" )
+    @Label( "Settings Building" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class SettingsBuilding
+        extends Event
+    {
+        @Label( "Global Settings File" )
+        String globalSettingsFile;
+
+        @Label( "User Settings File" )
+        String userSettingsFile;
+
+        @Label( "Cache Hit" )
+        boolean cacheHit;
+    }
+
+    @Name( "hudson.maven.RepositorySessionCreation" )
+    @Label( "Repository Session Creation" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class RepositorySessionCreation
+        extends Event
+    {
+        @Label( "Local Repository" )
+        String localRepository;
+
+        @Label( "Offline" )
+        boolean offline;
+    }
+
+    @Name( "hudson.maven.ProjectBuilding" )
+    @Label( "Project Building" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class ProjectBuilding
+        extends Event
+    {
+        @Label( "POM" )
+        String pom;
+
+        @Label( "Recursive" )
+        boolean recursive;
+
+        @Label( "Project Count" )
+        @Description( "the pom and its modules if recursive" )
+        int projectCount;
+
+        @Label( "Dependency Resolution" )
+        @Description( "dependencies resolved while building, see MavenRequest#isResolveDependencies" )
+        boolean resolveDependencies;
+
+        @Label( "Resolved Dependency Count" )
+        int dependencyCount;
+
+        @Label( "Success" )
+        boolean success;
+    }
+
+    @Name( "hudson.maven.EffectiveModelReading" )
+    @Label( "Effective Model Reading" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class EffectiveModelReading
+        extends Event
+    {
+        @Label( "POM" )
+        String pom;
+
+        @Label( "Cache Hit" )
+        boolean cacheHit;
+    }
+
+    @Name( "hudson.maven.Execution" )
+    @Label( "Execution" )
+    @Category( CATEGORY )
+    @StackTrace( false )
+    @Enabled( false )
+    static final class Execution
+        extends Event
+    {
+        @Label( "POM" )
+        String pom;
+
+        @Label( "Goals" )
+        String goals;
+
+        @Label( "Project Count" )
+        int projectCount;
+
+        @Label( "Session Reuse" )
+        boolean sessionReuse;
+
+        @Label( "Success" )
+        boolean success;
+    }
+}
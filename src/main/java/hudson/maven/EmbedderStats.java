@@ -0,0 +1,358 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+
+/**
+ * Collects the {@link EmbedderStatsMXBean} statistics, the instance is registered in the platform MBean server
+ * when this class is loaded. The counters are {@link LongAdder}s, recording doesn't lock.
+ * @since 3.16
+ */
+public final class EmbedderStats
+    implements EmbedderStatsMXBean
+{
+    private static final long[] BUCKETS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000 };
+
+    private static final EmbedderStats INSTANCE = new EmbedderStats();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean( INSTANCE, new ObjectName( OBJECT_NAME ) );
+        } catch ( JMException | SecurityException e ) {
+            // already registered by another classloader or not allowed, the stats are still collected
+        }
+    }
+
+    private final AtomicInteger liveEmbedders = new AtomicInteger();
+
+    /**
+     * guarded by itself
+     */
+    private final Set<PlexusContainer> liveContainers = Collections.newSetFromMap( new WeakHashMap<>() );
+
+    final Recorder containerBuilds = new Recorder();
+
+    final Recorder settingsParses = new Recorder();
+
+    final Recorder projectBuilds = new Recorder();
+
+    final Recorder executions = new Recorder();
+
+    final Counter settingsCache = new Counter();
+
+    final Counter containerPool = new Counter();
+
+    final Counter effectiveModelCache = new Counter();
+
+    private EmbedderStats() {
+        // singleton
+    }
+
+    public static EmbedderStats getInstance() {
+        return INSTANCE;
+    }
+
+    void embedderCreated() {
+        liveEmbedders.incrementAndGet();
+    }
+
+    void embedderClosed() {
+        liveEmbedders.decrementAndGet();
+    }
+
+    void containerCreated( PlexusContainer container ) {
+        synchronized ( liveContainers ) {
+            liveContainers.add( container );
+        }
+    }
+
+    void containerDisposed( PlexusContainer container ) {
+        synchronized ( liveContainers ) {
+            liveContainers.remove( container );
+        }
+    }
+
+    @Override
+    public int getLiveEmbedderCount() {
+        return liveEmbedders.get();
+    }
+
+    @Override
+    public int getLiveContainerCount() {
+        synchronized ( liveContainers ) {
+            return liveContainers.size();
+        }
+    }
+
+    @Override
+    public int getLiveClassRealmCount() {
+        return getLiveRealms().size();
+    }
+
+    @Override
+    public long getLiveRealmJarBytes() {
+        long bytes = 0;
+        for ( ClassRealm realm : getLiveRealms() ) {
+            Set<URL> urls = new HashSet<>();
+            Collections.addAll( urls, realm.getURLs() );
+            for ( URL url : urls ) {
+                if ( "file".equals( url.getProtocol() ) ) {
+                    try {
+                        bytes += new File( url.toURI() ).length();
+                    } catch ( URISyntaxException | IllegalArgumentException e ) {
+                        // not a file
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private List<ClassRealm> getLiveRealms() {
+        List<PlexusContainer> containers;
+        synchronized ( liveContainers ) {
+            containers = new ArrayList<>( liveContainers );
+        }
+        Set<ClassRealm> realms = new HashSet<>();
+        for ( PlexusContainer container : containers ) {
+            ClassRealm containerRealm = container.getContainerRealm();
+            if ( containerRealm != null ) {
+                realms.addAll( containerRealm.getWorld().getRealms() );
+                // the realms built by MavenEmbedderUtils are not registered in their world
+                for ( ClassRealm realm = containerRealm; realm != null; realm = realm.getParentRealm() ) {
+                    realms.add( realm );
+                }
+            }
+        }
+        return new ArrayList<>( realms );
+    }
+
+    @Override
+    public long[] getLatencyBucketsMillis() {
+        return BUCKETS_MILLIS.clone();
+    }
+
+    @Override
+    public Latency getContainerBuilds() {
+        return containerBuilds.snapshot();
+    }
+
+    @Override
+    public Latency getSettingsParses() {
+        return settingsParses.snapshot();
+    }
+
+    @Override
+    public Latency getProjectBuilds() {
+        return projectBuilds.snapshot();
+    }
+
+    @Override
+    public Latency getExecutions() {
+        return executions.snapshot();
+    }
+
+    @Override
+    public CacheRatio getSettingsCache() {
+        return settingsCache.snapshot();
+    }
+
+    @Override
+    public CacheRatio getContainerPool() {
+        return containerPool.snapshot();
+    }
+
+    @Override
+    public CacheRatio getEffectiveModelCache() {
+        return effectiveModelCache.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        containerBuilds.reset();
+        settingsParses.reset();
+        projectBuilds.reset();
+        executions.reset();
+        settingsCache.reset();
+        containerPool.reset();
+        effectiveModelCache.reset();
+    }
+
+    /**
+     * latency histogram of an operation
+     */
+    static final class Recorder
+    {
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator( Math::max, 0 );
+
+        private final AtomicLongArray buckets = new AtomicLongArray( BUCKETS_MILLIS.length + 1 );
+
+        /**
+         * @param start {@link System#nanoTime()} at the start of the operation
+         */
+        void record( long start ) {
+            long nanos = System.nanoTime() - start;
+            count.increment();
+            totalNanos.add( nanos );
+            maxNanos.accumulate( nanos );
+            long millis = TimeUnit.NANOSECONDS.toMillis( nanos );
+            int bucket = 0;
+            while ( bucket < BUCKETS_MILLIS.length && millis >= BUCKETS_MILLIS[bucket] ) {
+                bucket++;
+            }
+            buckets.incrementAndGet( bucket );
+        }
+
+        Latency snapshot() {
+            long[] histogram = new long[buckets.length()];
+            for ( int i = 0; i < histogram.length; i++ ) {
+                histogram[i] = buckets.get( i );
+            }
+            return new Latency( count.sum(), TimeUnit.NANOSECONDS.toMillis( totalNanos.sum() ),
+                                TimeUnit.NANOSECONDS.toMillis( maxNanos.get() ), histogram );
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for ( int i = 0; i < buckets.length(); i++ ) {
+                buckets.set( i, 0 );
+            }
+        }
+    }
+
+    static final class Counter
+    {
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        void hit() {
+            hits.increment();
+        }
+
+        void miss() {
+            misses.increment();
+        }
+
+        CacheRatio snapshot() {
+            return new CacheRatio( hits.sum(), misses.sum() );
+        }
+
+        void reset() {
+            hits.reset();
+            misses.reset();
+        }
+    }
+
+    public static final class Latency
+    {
+        private final long count;
+
+        private final long totalMillis;
+
+        private final long maxMillis;
+
+        private final long[] histogram;
+
+        Latency( long count, long totalMillis, long maxMillis, long[] histogram ) {
+            this.count = count;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+            this.histogram = histogram;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : (double) totalMillis / count;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        /**
+         * @return number of operations per bucket of {@link EmbedderStatsMXBean#getLatencyBucketsMillis()}
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+    }
+
+    public static final class CacheRatio
+    {
+        private final long hits;
+
+        private final long misses;
+
+        CacheRatio( long hits, long misses ) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return <code>0</code> if the cache has not been used
+         */
+        public double getHitRatio() {
+            return hits + misses == 0 ? 0 : (double) hits / ( hits + misses );
+        }
+    }
+}
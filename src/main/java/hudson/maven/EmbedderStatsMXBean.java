@@ -0,0 +1,80 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Statistics of all the embedders of the JVM, registered as <code>hudson.maven:type=EmbedderStats</code>.
+ * The latencies and the cache counters are cumulated since the start or the last {@link #reset()}, the live
+ * counts are not reset.
+ * @since 3.16
+ */
+public interface EmbedderStatsMXBean
+{
+    String OBJECT_NAME = "hudson.maven:type=EmbedderStats";
+
+    /**
+     * @return embedders created and not closed yet
+     */
+    int getLiveEmbedderCount();
+
+    /**
+     * @return plexus containers built and not disposed yet, pooled ones included
+     */
+    int getLiveContainerCount();
+
+    /**
+     * @return class realms of the live containers (core, plugin, extension and project realms)
+     */
+    int getLiveClassRealmCount();
+
+    /**
+     * @return total size on disk of the jars on the class path of the live class realms, a jar in several realms
+     * counted once per realm. It grows with the realms kept alive but is not the heap they retain, use a heap dump
+     * for that.
+     */
+    long getLiveRealmJarBytes();
+
+    /**
+     * @return upper bounds of the histogram buckets of the latencies, the last bucket has no bound
+     */
+    long[] getLatencyBucketsMillis();
+
+    EmbedderStats.Latency getContainerBuilds();
+
+    /**
+     * @return settings parsed, the ones shared from the settings cache are not counted
+     */
+    EmbedderStats.Latency getSettingsParses();
+
+    EmbedderStats.Latency getProjectBuilds();
+
+    EmbedderStats.Latency getExecutions();
+
+    EmbedderStats.CacheRatio getSettingsCache();
+
+    EmbedderStats.CacheRatio getContainerPool();
+
+    EmbedderStats.CacheRatio getEffectiveModelCache();
+
+    /**
+     * reset the latencies and the cache counters
+     */
+    void reset();
+}
@@ -0,0 +1,372 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * {@link ExecutionListener} recording the wall and cpu time of the projects, phases and mojo executions of a build,
+ * the events are forwarded to an optional delegate. Can be used by the multithreaded builder: a mojo starts and
+ * ends on the same thread, its cpu time is the cpu time of that thread in between.
+ * Set {@link MavenRequest#setCollectExecutionTimings(boolean)} to get the timings attached to the result of
+ * {@link MavenEmbedder#execute(MavenRequest)}.
+ * @since 3.16
+ */
+public class ExecutionTimingListener
+    implements ExecutionListener
+{
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ExecutionListener delegate;
+
+    private final boolean cpuTimeSupported;
+
+    private volatile long sessionStart = -1;
+
+    private volatile long sessionEnd = -1;
+
+    /**
+     * by project id in start order, guarded by itself
+     */
+    private final Map<String, ProjectSlot> projects = new LinkedHashMap<>();
+
+    /**
+     * mojos started and not finished yet, guarded by itself
+     */
+    private final Map<MojoExecution, MojoSlot> running = new IdentityHashMap<>();
+
+    public ExecutionTimingListener() {
+        this( null );
+    }
+
+    /**
+     * @param delegate receives all the events, can be <code>null</code>
+     */
+    public ExecutionTimingListener( ExecutionListener delegate ) {
+        this.delegate = delegate;
+        this.cpuTimeSupported = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    }
+
+    public ExecutionListener getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the timings recorded so far, the projects and mojos still running are measured up to now
+     */
+    public ExecutionTimings getTimings() {
+        long now = System.nanoTime();
+        List<ProjectSlot> slots;
+        synchronized ( projects ) {
+            slots = new ArrayList<>( projects.values() );
+        }
+        List<ExecutionTimings.ProjectTiming> projectTimings = new ArrayList<>( slots.size() );
+        for ( ProjectSlot slot : slots ) {
+            projectTimings.add( slot.toTiming( now ) );
+        }
+        long start = sessionStart;
+        long end = sessionEnd;
+        long wallTime = start < 0 ? 0 : ( end < 0 ? now : end ) - start;
+        return new ExecutionTimings( wallTime, projectTimings );
+    }
+
+    private long cpuTime() {
+        return cpuTimeSupported ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private ProjectSlot project( MavenProject project ) {
+        String id = project.getGroupId() + ':' + project.getArtifactId() + ':' + project.getVersion();
+        synchronized ( projects ) {
+            return projects.computeIfAbsent( id, ProjectSlot::new );
+        }
+    }
+
+    @Override
+    public void projectDiscoveryStarted( ExecutionEvent event ) {
+        sessionStart = System.nanoTime();
+        if ( delegate != null ) {
+            delegate.projectDiscoveryStarted( event );
+        }
+    }
+
+    @Override
+    public void sessionStarted( ExecutionEvent event ) {
+        if ( sessionStart < 0 ) {
+            sessionStart = System.nanoTime();
+        }
+        if ( delegate != null ) {
+            delegate.sessionStarted( event );
+        }
+    }
+
+    @Override
+    public void sessionEnded( ExecutionEvent event ) {
+        sessionEnd = System.nanoTime();
+        if ( delegate != null ) {
+            delegate.sessionEnded( event );
+        }
+    }
+
+    @Override
+    public void projectSkipped( ExecutionEvent event ) {
+        project( event.getProject() ).end( "SKIPPED" );
+        if ( delegate != null ) {
+            delegate.projectSkipped( event );
+        }
+    }
+
+    @Override
+    public void projectStarted( ExecutionEvent event ) {
+        project( event.getProject() ).start = System.nanoTime();
+        if ( delegate != null ) {
+            delegate.projectStarted( event );
+        }
+    }
+
+    @Override
+    public void projectSucceeded( ExecutionEvent event ) {
+        project( event.getProject() ).end( "SUCCESS" );
+        if ( delegate != null ) {
+            delegate.projectSucceeded( event );
+        }
+    }
+
+    @Override
+    public void projectFailed( ExecutionEvent event ) {
+        project( event.getProject() ).end( "FAILED" );
+        if ( delegate != null ) {
+            delegate.projectFailed( event );
+        }
+    }
+
+    @Override
+    public void mojoSkipped( ExecutionEvent event ) {
+        MojoSlot mojo = new MojoSlot( event.getMojoExecution(), System.nanoTime(), 0 );
+        mojo.end( "SKIPPED", mojo.start, 0 );
+        project( event.getProject() ).add( mojo );
+        if ( delegate != null ) {
+            delegate.mojoSkipped( event );
+        }
+    }
+
+    @Override
+    public void mojoStarted( ExecutionEvent event ) {
+        MojoSlot mojo = new MojoSlot( event.getMojoExecution(), System.nanoTime(), cpuTime() );
+        project( event.getProject() ).add( mojo );
+        synchronized ( running ) {
+            running.put( event.getMojoExecution(), mojo );
+        }
+        if ( delegate != null ) {
+            delegate.mojoStarted( event );
+        }
+    }
+
+    @Override
+    public void mojoSucceeded( ExecutionEvent event ) {
+        mojoEnded( event, "SUCCESS" );
+        if ( delegate != null ) {
+            delegate.mojoSucceeded( event );
+        }
+    }
+
+    @Override
+    public void mojoFailed( ExecutionEvent event ) {
+        mojoEnded( event, "FAILED" );
+        if ( delegate != null ) {
+            delegate.mojoFailed( event );
+        }
+    }
+
+    private void mojoEnded( ExecutionEvent event, String result ) {
+        long end = System.nanoTime();
+        long cpuEnd = cpuTime();
+        MojoSlot mojo;
+        synchronized ( running ) {
+            mojo = running.remove( event.getMojoExecution() );
+        }
+        if ( mojo != null ) {
+            mojo.end( result, end, cpuEnd );
+        }
+    }
+
+    @Override
+    public void forkStarted( ExecutionEvent event ) {
+        if ( delegate != null ) {
+            delegate.forkStarted( event );
+        }
+    }
+
+    @Override
+    public void forkSucceeded( ExecutionEvent event ) {
+        if ( delegate != null ) {
+            delegate.forkSucceeded( event );
+        }
+    }
+
+    @Override
+    public void forkFailed( ExecutionEvent event ) {
+        if ( delegate != null ) {
+            delegate.forkFailed( event );
+        }
+    }
+
+    @Override
+    public void forkedProjectStarted( ExecutionEvent event ) {
+        if ( delegate != null ) {
+            delegate.forkedProjectStarted( event );
+        }
+    }
+
+    @Override
+    public void forkedProjectSucceeded( ExecutionEvent event ) {
+        if ( delegate != null ) {
+            delegate.forkedProjectSucceeded( event );
+        }
+    }
+
+    @Override
+    public void forkedProjectFailed( ExecutionEvent event ) {
+        if ( delegate != null ) {
+            delegate.forkedProjectFailed( event );
+        }
+    }
+
+    private static final class ProjectSlot
+    {
+        private final String id;
+
+        private volatile long start = -1;
+
+        private volatile long end = -1;
+
+        private volatile String result = "RUNNING";
+
+        /**
+         * guarded by itself
+         */
+        private final List<MojoSlot> mojos = new ArrayList<>();
+
+        ProjectSlot( String id ) {
+            this.id = id;
+        }
+
+        void end( String result ) {
+            this.end = System.nanoTime();
+            if ( start < 0 ) {
+                start = end;
+            }
+            this.result = result;
+        }
+
+        void add( MojoSlot mojo ) {
+            synchronized ( mojos ) {
+                mojos.add( mojo );
+            }
+        }
+
+        ExecutionTimings.ProjectTiming toTiming( long now ) {
+            List<MojoSlot> slots;
+            synchronized ( mojos ) {
+                slots = new ArrayList<>( mojos );
+            }
+            List<ExecutionTimings.MojoTiming> mojoTimings = new ArrayList<>( slots.size() );
+            // phase -> { first start, last end, cpu }
+            Map<String, long[]> phases = new LinkedHashMap<>();
+            long cpuTime = 0;
+            for ( MojoSlot slot : slots ) {
+                ExecutionTimings.MojoTiming mojo = slot.toTiming( now );
+                mojoTimings.add( mojo );
+                long[] phase = phases.computeIfAbsent( mojo.getPhase(), p -> new long[]{ Long.MAX_VALUE, 0, 0 } );
+                long mojoEnd = slot.start + mojo.getWallTime();
+                phase[0] = Math.min( phase[0], slot.start );
+                phase[1] = Math.max( phase[1], mojoEnd );
+                if ( mojo.getCpuTime() < 0 || phase[2] < 0 ) {
+                    phase[2] = -1;
+                } else {
+                    phase[2] += mojo.getCpuTime();
+                }
+                cpuTime = cpuTime < 0 || mojo.getCpuTime() < 0 ? -1 : cpuTime + mojo.getCpuTime();
+            }
+            List<ExecutionTimings.PhaseTiming> phaseTimings = new ArrayList<>( phases.size() );
+            for ( Map.Entry<String, long[]> phase : phases.entrySet() ) {
+                phaseTimings.add( new ExecutionTimings.PhaseTiming( phase.getKey(),
+                                                                    phase.getValue()[1] - phase.getValue()[0],
+                                                                    phase.getValue()[2] ) );
+            }
+            long wallTime = start < 0 ? 0 : ( end < 0 ? now : end ) - start;
+            return new ExecutionTimings.ProjectTiming( id, result, wallTime, cpuTime, phaseTimings, mojoTimings );
+        }
+    }
+
+    private static final class MojoSlot
+    {
+        private final String plugin;
+
+        private final String goal;
+
+        private final String executionId;
+
+        private final String phase;
+
+        private final long start;
+
+        private final long cpuStart;
+
+        private volatile long end = -1;
+
+        private volatile long cpuTime = -1;
+
+        private volatile String result = "RUNNING";
+
+        MojoSlot( MojoExecution mojoExecution, long start, long cpuStart ) {
+            this.plugin = mojoExecution.getGroupId() + ':' + mojoExecution.getArtifactId() + ':'
+                + mojoExecution.getVersion();
+            this.goal = mojoExecution.getGoal();
+            this.executionId = mojoExecution.getExecutionId();
+            this.phase = mojoExecution.getLifecyclePhase() == null ? ExecutionTimings.DIRECT_PHASE
+                            : mojoExecution.getLifecyclePhase();
+            this.start = start;
+            this.cpuStart = cpuStart;
+        }
+
+        void end( String result, long end, long cpuEnd ) {
+            this.cpuTime = cpuStart < 0 || cpuEnd < 0 ? -1 : cpuEnd - cpuStart;
+            this.result = result;
+            this.end = end;
+        }
+
+        ExecutionTimings.MojoTiming toTiming( long now ) {
+            long mojoEnd = end;
+            return new ExecutionTimings.MojoTiming( plugin, goal, executionId, phase, result,
+                                                    ( mojoEnd < 0 ? now : mojoEnd ) - start, cpuTime );
+        }
+    }
+}
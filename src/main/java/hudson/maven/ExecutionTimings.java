@@ -0,0 +1,311 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wall and cpu time of an execution per project, lifecycle phase and mojo execution, see
+ * {@link ExecutionTimingListener}. Times are in nanoseconds, a cpu time is <code>-1</code> if the JVM can't
+ * measure it.
+ * @since 3.16
+ */
+public final class ExecutionTimings
+{
+    /**
+     * phase of the mojos invoked directly, like <code>dependency:tree</code>, rather than bound to a phase
+     */
+    public static final String DIRECT_PHASE = "(direct)";
+
+    private final long wallTime;
+
+    private final List<ProjectTiming> projects;
+
+    ExecutionTimings( long wallTime, List<ProjectTiming> projects ) {
+        this.wallTime = wallTime;
+        this.projects = Collections.unmodifiableList( projects );
+    }
+
+    /**
+     * @return duration of the session
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * @return the projects in the order they started
+     */
+    public List<ProjectTiming> getProjects() {
+        return projects;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder( 256 + projects.size() * 1024 );
+        try {
+            writeJson( json );
+        } catch ( IOException e ) {
+            // StringBuilder doesn't throw
+            throw new IllegalStateException( e );
+        }
+        return json.toString();
+    }
+
+    public void writeJson( Appendable out )
+        throws IOException {
+        out.append( "{\"wallNanos\":" ).append( Long.toString( wallTime ) ).append( ",\"projects\":[" );
+        for ( int i = 0; i < projects.size(); i++ ) {
+            ProjectTiming project = projects.get( i );
+            out.append( i == 0 ? "{" : ",{" );
+            field( out, "id", project.getId() ).append( ',' );
+            field( out, "result", project.getResult() ).append( ',' );
+            times( out, project.getWallTime(), project.getCpuTime() );
+            out.append( ",\"phases\":[" );
+            for ( int j = 0; j < project.getPhases().size(); j++ ) {
+                PhaseTiming phase = project.getPhases().get( j );
+                out.append( j == 0 ? "{" : ",{" );
+                field( out, "phase", phase.getPhase() ).append( ',' );
+                times( out, phase.getWallTime(), phase.getCpuTime() );
+                out.append( '}' );
+            }
+            out.append( "],\"mojos\":[" );
+            for ( int j = 0; j < project.getMojos().size(); j++ ) {
+                MojoTiming mojo = project.getMojos().get( j );
+                out.append( j == 0 ? "{" : ",{" );
+                field( out, "plugin", mojo.getPlugin() ).append( ',' );
+                field( out, "goal", mojo.getGoal() ).append( ',' );
+                field( out, "executionId", mojo.getExecutionId() ).append( ',' );
+                field( out, "phase", mojo.getPhase() ).append( ',' );
+                field( out, "result", mojo.getResult() ).append( ',' );
+                times( out, mojo.getWallTime(), mojo.getCpuTime() );
+                out.append( '}' );
+            }
+            out.append( "]}" );
+        }
+        out.append( "]}" );
+    }
+
+    private static Appendable field( Appendable out, String name, String value )
+        throws IOException {
+        out.append( '"' ).append( name ).append( "\":" );
+        if ( value == null ) {
+            return out.append( "null" );
+        }
+        out.append( '"' );
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            switch ( c ) {
+                case '"':
+                    out.append( "\\\"" );
+                    break;
+                case '\\':
+                    out.append( "\\\\" );
+                    break;
+                case '\n':
+                    out.append( "\\n" );
+                    break;
+                case '\r':
+                    out.append( "\\r" );
+                    break;
+                case '\t':
+                    out.append( "\\t" );
+                    break;
+                default:
+                    if ( c < 0x20 ) {
+                        out.append( String.format( "\\u%04x", (int) c ) );
+                    } else {
+                        out.append( c );
+                    }
+            }
+        }
+        return out.append( '"' );
+    }
+
+    private static void times( Appendable out, long wallTime, long cpuTime )
+        throws IOException {
+        out.append( "\"wallNanos\":" ).append( Long.toString( wallTime ) )
+            .append( ",\"cpuNanos\":" ).append( Long.toString( cpuTime ) );
+    }
+
+    public static final class ProjectTiming
+    {
+        private final String id;
+
+        private final String result;
+
+        private final long wallTime;
+
+        private final long cpuTime;
+
+        private final List<PhaseTiming> phases;
+
+        private final List<MojoTiming> mojos;
+
+        ProjectTiming( String id, String result, long wallTime, long cpuTime, List<PhaseTiming> phases,
+                       List<MojoTiming> mojos ) {
+            this.id = id;
+            this.result = result;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+            this.phases = Collections.unmodifiableList( phases );
+            this.mojos = Collections.unmodifiableList( mojos );
+        }
+
+        /**
+         * @return <code>groupId:artifactId:version</code>
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return <code>SUCCESS</code>, <code>FAILED</code>, <code>SKIPPED</code> or <code>RUNNING</code> if the
+         *         project didn't finish
+         */
+        public String getResult() {
+            return result;
+        }
+
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return sum of the cpu time of the mojos
+         */
+        public long getCpuTime() {
+            return cpuTime;
+        }
+
+        /**
+         * @return the phases in the order they started
+         */
+        public List<PhaseTiming> getPhases() {
+            return phases;
+        }
+
+        /**
+         * @return the mojo executions in the order they started, forked ones included
+         */
+        public List<MojoTiming> getMojos() {
+            return mojos;
+        }
+    }
+
+    public static final class PhaseTiming
+    {
+        private final String phase;
+
+        private final long wallTime;
+
+        private final long cpuTime;
+
+        PhaseTiming( String phase, long wallTime, long cpuTime ) {
+            this.phase = phase;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+        }
+
+        /**
+         * @return {@link ExecutionTimings#DIRECT_PHASE} for the mojos invoked directly
+         */
+        public String getPhase() {
+            return phase;
+        }
+
+        /**
+         * @return from the start of the first mojo of the phase to the end of the last one
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        public long getCpuTime() {
+            return cpuTime;
+        }
+    }
+
+    public static final class MojoTiming
+    {
+        private final String plugin;
+
+        private final String goal;
+
+        private final String executionId;
+
+        private final String phase;
+
+        private final String result;
+
+        private final long wallTime;
+
+        private final long cpuTime;
+
+        MojoTiming( String plugin, String goal, String executionId, String phase, String result, long wallTime,
+                    long cpuTime ) {
+            this.plugin = plugin;
+            this.goal = goal;
+            this.executionId = executionId;
+            this.phase = phase;
+            this.result = result;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+        }
+
+        /**
+         * @return <code>groupId:artifactId:version</code> of the plugin
+         */
+        public String getPlugin() {
+            return plugin;
+        }
+
+        public String getGoal() {
+            return goal;
+        }
+
+        public String getExecutionId() {
+            return executionId;
+        }
+
+        /**
+         * @return {@link ExecutionTimings#DIRECT_PHASE} for a mojo invoked directly
+         */
+        public String getPhase() {
+            return phase;
+        }
+
+        /**
+         * @return <code>SUCCESS</code>, <code>FAILED</code> or <code>SKIPPED</code>
+         */
+        public String getResult() {
+            return result;
+        }
+
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        public long getCpuTime() {
+            return cpuTime;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches whether files exist. The directory of each file (or its closest existing ancestor) is watched with a
+ * {@link WatchService} and the pending events are applied before each check, no thread is needed. Without a
+ * watch service, or when a directory cannot be watched, the file system is checked each time.
+ * Some platforms poll for changes (macOS), a change can be seen a few seconds late there.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class FileStatusCache
+    implements Closeable
+{
+    private final WatchService watchService;
+
+    private final ConcurrentMap<Path, Boolean> exists = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Path, WatchKey> watched = new ConcurrentHashMap<>();
+
+    /**
+     * incremented by each batch of events, a check racing with it doesn't cache its result
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    FileStatusCache() {
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch ( IOException | UnsupportedOperationException e ) {
+            service = null;
+        }
+        this.watchService = service;
+    }
+
+    boolean exists( File file ) {
+        if ( watchService == null ) {
+            return file.exists();
+        }
+        processEvents();
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Boolean cached = exists.get( path );
+        if ( cached != null ) {
+            return cached;
+        }
+        long before = generation.get();
+        // watch before checking so a change right after the check is seen
+        if ( !watch( path ) ) {
+            return Files.exists( path );
+        }
+        boolean result = Files.exists( path );
+        exists.put( path, result );
+        if ( generation.get() != before ) {
+            exists.remove( path );
+        }
+        return result;
+    }
+
+    /**
+     * @return number of cached files, for the tests
+     */
+    int size() {
+        return exists.size();
+    }
+
+    /**
+     * @return number of watched directories, for the tests
+     */
+    int watchedDirectories() {
+        return watched.size();
+    }
+
+    private boolean watch( Path path ) {
+        for ( Path dir = path.getParent(); dir != null; dir = dir.getParent() ) {
+            if ( watched.containsKey( dir ) ) {
+                return true;
+            }
+            try {
+                watched.put( dir, dir.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                                StandardWatchEventKinds.ENTRY_DELETE ) );
+                return true;
+            } catch ( NoSuchFileException e ) {
+                // watch the parent, the creation of this directory will be seen there
+            } catch ( IOException | ClosedWatchServiceException e ) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void processEvents() {
+        WatchKey key;
+        try {
+            key = watchService.poll();
+        } catch ( ClosedWatchServiceException e ) {
+            exists.clear();
+            return;
+        }
+        while ( key != null ) {
+            generation.incrementAndGet();
+            Path dir = (Path) key.watchable();
+            for ( WatchEvent<?> event : key.pollEvents() ) {
+                if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+                    exists.clear();
+                } else {
+                    Path child = dir.resolve( (Path) event.context() );
+                    exists.keySet().removeIf( path -> path.startsWith( child ) );
+                }
+            }
+            if ( !key.reset() ) {
+                // the directory is gone
+                watched.remove( dir, key );
+                exists.keySet().removeIf( path -> path.startsWith( dir ) );
+            }
+            key = watchService.poll();
+        }
+    }
+
+    /**
+     * can be called several times, the files are checked each time afterwards
+     */
+    @Override
+    public void close() {
+        if ( watchService != null ) {
+            try {
+                watchService.close();
+            } catch ( IOException e ) {
+                // ignore
+            }
+        }
+        exists.clear();
+        watched.clear();
+    }
+}
@@ -0,0 +1,228 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.LocalArtifactRegistration;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalMetadataRegistration;
+import org.eclipse.aether.repository.LocalMetadataRequest;
+import org.eclipse.aether.repository.LocalMetadataResult;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.NoLocalRepositoryManagerException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.eclipse.aether.util.ConfigUtils;
+
+/**
+ * {@link LocalRepositoryManager} asking a {@link LocalRepositoryIndex} before letting the enhanced manager look
+ * for an artifact on disk, and recording the artifacts installed or downloaded in the index. An indexed artifact
+ * available from the requested repositories is answered from the index alone. The other lookups go to the enhanced
+ * manager, and the artifacts it finds are added to the index (or their availability updated).
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class IndexedLocalRepositoryManager
+    implements LocalRepositoryManager
+{
+    private final LocalRepositoryManager delegate;
+
+    private final LocalRepositoryIndex index;
+
+    IndexedLocalRepositoryManager( LocalRepositoryManager delegate, LocalRepositoryIndex index ) {
+        this.delegate = delegate;
+        this.index = index;
+    }
+
+    LocalRepositoryIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public LocalRepository getRepository() {
+        return delegate.getRepository();
+    }
+
+    @Override
+    public String getPathForLocalArtifact( Artifact artifact ) {
+        return delegate.getPathForLocalArtifact( artifact );
+    }
+
+    @Override
+    public String getPathForRemoteArtifact( Artifact artifact, RemoteRepository repository,
+                                            String context ) {
+        return delegate.getPathForRemoteArtifact( artifact, repository, context );
+    }
+
+    @Override
+    public String getPathForLocalMetadata( Metadata metadata ) {
+        return delegate.getPathForLocalMetadata( metadata );
+    }
+
+    @Override
+    public String getPathForRemoteMetadata( Metadata metadata, RemoteRepository repository,
+                                            String context ) {
+        return delegate.getPathForRemoteMetadata( metadata, repository, context );
+    }
+
+    @Override
+    public LocalArtifactResult find( RepositorySystemSession session, LocalArtifactRequest request ) {
+        Artifact artifact = request.getArtifact();
+        long[] availability = index.availability( artifact );
+        if ( availability != null ) {
+            LocalArtifactResult result = findIndexed( request, availability );
+            if ( result != null ) {
+                return result;
+            }
+        }
+        // not indexed (written behind the back of the index: plain mvn, a restored cache...) or not available from
+        // these repositories according to the index, _remote.repositories may say otherwise
+        LocalArtifactResult result = delegate.find( session, request );
+        if ( result.getFile() != null ) {
+            index.add( artifact, result.getFile() );
+        }
+        return result;
+    }
+
+    /**
+     * what the enhanced manager would answer for an available artifact, without reading the disk
+     * @return <code>null</code> if the index doesn't know the artifact is available
+     */
+    private LocalArtifactResult findIndexed( LocalArtifactRequest request, long[] availability ) {
+        Artifact artifact = request.getArtifact();
+        if ( ( availability[0] & LocalRepositoryIndex.OVERFLOW ) != 0 ) {
+            return null;
+        }
+        String path;
+        if ( Objects.equals( artifact.getVersion(), artifact.getBaseVersion() ) ) {
+            path = delegate.getPathForLocalArtifact( artifact );
+        } else if ( !request.getRepositories().isEmpty() ) {
+            // a timestamped snapshot is only looked for through the repositories, at the same path for all of them
+            path = delegate.getPathForRemoteArtifact( artifact, request.getRepositories().get( 0 ),
+                                                      request.getContext() );
+        } else {
+            return null;
+        }
+        LocalArtifactResult result = new LocalArtifactResult( request );
+        result.setFile( new File( getRepository().getBasedir(), path ) );
+        if ( ( availability[0] & LocalRepositoryIndex.LOCAL ) != 0 ) {
+            return result.setAvailable( true );
+        }
+        for ( RemoteRepository repository : request.getRepositories() ) {
+            if ( LocalRepositoryIndex.isAvailableFrom( availability, repository, request.getContext() ) ) {
+                return result.setAvailable( true ).setRepository( repository );
+            }
+        }
+        if ( ( availability[0] & LocalRepositoryIndex.UNTRACKED ) != 0 ) {
+            return result.setAvailable( true );
+        }
+        return null;
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, LocalArtifactRegistration request ) {
+        delegate.add( session, request );
+        Artifact artifact = request.getArtifact();
+        String path = request.getRepository() == null ? delegate.getPathForLocalArtifact( artifact )
+                        : delegate.getPathForRemoteArtifact( artifact, request.getRepository(), "" );
+        index.add( artifact, new File( getRepository().getBasedir(), path ) );
+    }
+
+    @Override
+    public LocalMetadataResult find( RepositorySystemSession session, LocalMetadataRequest request ) {
+        return delegate.find( session, request );
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, LocalMetadataRegistration request ) {
+        delegate.add( session, request );
+    }
+
+    @Override
+    public String toString() {
+        return delegate + " indexed by " + index.getIndexFile();
+    }
+
+    /**
+     * Used by the repository system in place of the enhanced factory when the session has
+     * {@link LocalRepositoryIndex#CONFIG_PROP_INDEX_FILE}, registered in the container by {@link #register}.
+     */
+    static final class Factory
+        implements LocalRepositoryManagerFactory
+    {
+        static final String NAME = "hudson-indexed";
+
+        private final LocalRepositoryManagerFactory delegate;
+
+        Factory( LocalRepositoryManagerFactory delegate ) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public LocalRepositoryManager newInstance( RepositorySystemSession session, LocalRepository repository )
+            throws NoLocalRepositoryManagerException {
+            String indexFile = ConfigUtils.getString( session, null, LocalRepositoryIndex.CONFIG_PROP_INDEX_FILE );
+            if ( indexFile == null || indexFile.isEmpty()
+                || !( "".equals( repository.getContentType() ) || "default".equals( repository.getContentType() ) ) ) {
+                throw new NoLocalRepositoryManagerException( repository );
+            }
+            if ( ConfigUtils.getBoolean( session, false, "aether.enhancedLocalRepository.split" ) ) {
+                throw new NoLocalRepositoryManagerException( repository, "split local repositories are not indexed" );
+            }
+            LocalRepositoryIndex index;
+            try {
+                // another repository (a tail for instance) is not indexed
+                index = LocalRepositoryIndex.open( new File( indexFile ), repository.getBasedir() );
+            } catch ( IOException e ) {
+                throw new NoLocalRepositoryManagerException( repository, e.getMessage(), e );
+            }
+            return new IndexedLocalRepositoryManager( delegate.newInstance( session, repository ), index );
+        }
+
+        @Override
+        public float getPriority() {
+            return 100;
+        }
+    }
+
+    /**
+     * add the {@link Factory} to the container if it doesn't have it yet
+     */
+    static void register( PlexusContainer plexusContainer )
+        throws ComponentLookupException {
+        synchronized ( plexusContainer ) {
+            if ( !plexusContainer.hasComponent( LocalRepositoryManagerFactory.class, Factory.NAME ) ) {
+                plexusContainer.addComponent(
+                    new Factory( plexusContainer.lookup( LocalRepositoryManagerFactory.class, "enhanced" ) ),
+                    LocalRepositoryManagerFactory.class, Factory.NAME );
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.LocalArtifactRegistration;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalMetadataRegistration;
+import org.eclipse.aether.repository.LocalMetadataRequest;
+import org.eclipse.aether.repository.LocalMetadataResult;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.NoLocalRepositoryManagerException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.eclipse.aether.util.ConfigUtils;
+
+/**
+ * {@link LocalRepositoryManager} of a writable overlay in front of read-only base repositories: the lookups fall
+ * through the overlay then the bases in order, the installs and downloads only go to the overlay. An artifact found
+ * in a base can be hard linked into the overlay, so the overlay ends up holding everything its builds used without
+ * copying a byte. The availability recorded in the bases is ignored, as with <code>maven.repo.local.tail</code>.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class LayeredLocalRepositoryManager
+    implements LocalRepositoryManager
+{
+    /**
+     * comma separated read-only base repositories of the session local repository
+     */
+    static final String CONFIG_PROP_BASES = "hudson.maven.localRepositoryBases";
+
+    /**
+     * if <code>true</code> the artifacts found in a base are hard linked into the overlay
+     */
+    static final String CONFIG_PROP_LINK = "hudson.maven.localRepositoryBases.link";
+
+    private final LocalRepositoryManager overlay;
+
+    private final List<LocalRepositoryManager> bases;
+
+    private final boolean link;
+
+    LayeredLocalRepositoryManager( LocalRepositoryManager overlay, List<LocalRepositoryManager> bases, boolean link ) {
+        this.overlay = overlay;
+        this.bases = bases;
+        this.link = link;
+    }
+
+    List<LocalRepositoryManager> getBases() {
+        return bases;
+    }
+
+    @Override
+    public LocalRepository getRepository() {
+        return overlay.getRepository();
+    }
+
+    @Override
+    public String getPathForLocalArtifact( Artifact artifact ) {
+        return overlay.getPathForLocalArtifact( artifact );
+    }
+
+    @Override
+    public String getPathForRemoteArtifact( Artifact artifact, RemoteRepository repository, String context ) {
+        return overlay.getPathForRemoteArtifact( artifact, repository, context );
+    }
+
+    @Override
+    public String getPathForLocalMetadata( Metadata metadata ) {
+        return overlay.getPathForLocalMetadata( metadata );
+    }
+
+    @Override
+    public String getPathForRemoteMetadata( Metadata metadata, RemoteRepository repository, String context ) {
+        return overlay.getPathForRemoteMetadata( metadata, repository, context );
+    }
+
+    @Override
+    public LocalArtifactResult find( RepositorySystemSession session, LocalArtifactRequest request ) {
+        LocalArtifactResult result = overlay.find( session, request );
+        if ( result.isAvailable() ) {
+            return result;
+        }
+        for ( LocalRepositoryManager base : bases ) {
+            LocalArtifactResult baseResult = base.find( session, request );
+            if ( baseResult.getFile() == null ) {
+                continue;
+            }
+            File file = link ? link( session, request.getArtifact(), baseResult.getFile() ) : null;
+            LocalArtifactResult layeredResult = new LocalArtifactResult( request );
+            layeredResult.setFile( file != null ? file : baseResult.getFile() );
+            layeredResult.setRepository( baseResult.getRepository() );
+            layeredResult.setAvailable( true );
+            return layeredResult;
+        }
+        return result;
+    }
+
+    /**
+     * @return the file in the overlay or <code>null</code> if it can't be linked (another file system for instance)
+     */
+    private File link( RepositorySystemSession session, Artifact artifact, File baseFile ) {
+        Path file = getRepository().getBasedir().toPath().resolve( overlay.getPathForLocalArtifact( artifact ) );
+        try {
+            Files.createDirectories( file.getParent() );
+            Files.createLink( file, baseFile.toPath() );
+        } catch ( FileAlreadyExistsException e ) {
+            // linked by a concurrent session, or left behind without being registered
+        } catch ( IOException | UnsupportedOperationException e ) {
+            return null;
+        }
+        // the resolver replaces the files it writes, so the base never sees a change made in the overlay
+        overlay.add( session, new LocalArtifactRegistration( artifact ) );
+        return file.toFile();
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, LocalArtifactRegistration request ) {
+        overlay.add( session, request );
+    }
+
+    @Override
+    public LocalMetadataResult find( RepositorySystemSession session, LocalMetadataRequest request ) {
+        LocalMetadataResult result = overlay.find( session, request );
+        for ( int i = 0; result.getFile() == null && i < bases.size(); i++ ) {
+            // never linked: the metadata are merged in place
+            result = bases.get( i ).find( session, request );
+        }
+        return result;
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, LocalMetadataRegistration request ) {
+        overlay.add( session, request );
+    }
+
+    @Override
+    public String toString() {
+        return overlay + " over " + bases;
+    }
+
+    /**
+     * Used by the repository system for the session local repository when the session has
+     * {@link #CONFIG_PROP_BASES}, registered in the container by {@link #register}.
+     */
+    static final class Factory
+        implements LocalRepositoryManagerFactory
+    {
+        static final String NAME = "hudson-layered";
+
+        /**
+         * tried in order for the overlay
+         */
+        private final List<LocalRepositoryManagerFactory> overlayFactories;
+
+        private final LocalRepositoryManagerFactory baseFactory;
+
+        Factory( List<LocalRepositoryManagerFactory> overlayFactories, LocalRepositoryManagerFactory baseFactory ) {
+            this.overlayFactories = overlayFactories;
+            this.baseFactory = baseFactory;
+        }
+
+        @Override
+        public LocalRepositoryManager newInstance( RepositorySystemSession session, LocalRepository repository )
+            throws NoLocalRepositoryManagerException {
+            String bases = ConfigUtils.getString( session, null, CONFIG_PROP_BASES );
+            if ( bases == null || bases.isEmpty() ) {
+                throw new NoLocalRepositoryManagerException( repository );
+            }
+            List<LocalRepositoryManager> baseManagers = new ArrayList<>();
+            for ( String base : bases.split( "," ) ) {
+                File basedir = new File( base.trim() );
+                if ( basedir.getAbsoluteFile().equals( repository.getBasedir().getAbsoluteFile() ) ) {
+                    // a base is not layered over the others
+                    throw new NoLocalRepositoryManagerException( repository );
+                }
+                baseManagers.add( baseFactory.newInstance( session, new LocalRepository( basedir ) ) );
+            }
+            NoLocalRepositoryManagerException failure = null;
+            for ( LocalRepositoryManagerFactory overlayFactory : overlayFactories ) {
+                try {
+                    return new LayeredLocalRepositoryManager( overlayFactory.newInstance( session, repository ),
+                                                              Collections.unmodifiableList( baseManagers ),
+                                                              ConfigUtils.getBoolean( session, false,
+                                                                                      CONFIG_PROP_LINK ) );
+                } catch ( NoLocalRepositoryManagerException e ) {
+                    failure = e;
+                }
+            }
+            throw failure == null ? new NoLocalRepositoryManagerException( repository ) : failure;
+        }
+
+        @Override
+        public float getPriority() {
+            // before IndexedLocalRepositoryManager.Factory, which indexes the overlay
+            return 110;
+        }
+    }
+
+    /**
+     * add the {@link Factory} to the container if it doesn't have it yet
+     */
+    static void register( PlexusContainer plexusContainer )
+        throws ComponentLookupException {
+        synchronized ( plexusContainer ) {
+            if ( !plexusContainer.hasComponent( LocalRepositoryManagerFactory.class, Factory.NAME ) ) {
+                IndexedLocalRepositoryManager.register( plexusContainer );
+                LocalRepositoryManagerFactory enhanced =
+                    plexusContainer.lookup( LocalRepositoryManagerFactory.class, "enhanced" );
+                plexusContainer.addComponent(
+                    new Factory( Arrays.asList( plexusContainer.lookup( LocalRepositoryManagerFactory.class,
+                                                                        IndexedLocalRepositoryManager.Factory.NAME ),
+                                                enhanced ), enhanced ),
+                    LocalRepositoryManagerFactory.class, Factory.NAME );
+            }
+        }
+    }
+}
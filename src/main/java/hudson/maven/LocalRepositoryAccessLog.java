@@ -0,0 +1,516 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * Append only log of the last access to the artifacts of a local repository, and eviction of the least recently
+ * used ones down to a size budget. Set {@link MavenRequest#setLocalRepositoryAccessLogFile(String)} to have the
+ * repository sessions of the embedder record the artifacts they find, install or download.
+ * <p>
+ * The unit is the version directory (<code>org/foo/bar/1.0</code>): it is recorded once a minute at most, the
+ * accesses are batched in memory and appended to the log by {@link #flush()}, every {@value #BATCH_SIZE} directories
+ * and when closing. A directory never logged is as old as its newest file. {@link #evict(long)} deletes the oldest
+ * directories until the repository fits in the budget, skipping the ones used by the repository sessions of this
+ * JVM still alive, and compacts the log. It can run in the background with {@link #evictor(long)}, or from the
+ * command line:
+ * <pre>java -cp ... hudson.maven.LocalRepositoryAccessLog evict &lt;local repository&gt; &lt;log file&gt; &lt;max bytes&gt;</pre>
+ * The log can be shared by the JVMs using the same local repository (the appends and the compaction are done under
+ * a file lock), but only the sessions of the evicting JVM are protected from the eviction.
+ * @since 3.16
+ */
+public final class LocalRepositoryAccessLog
+    implements Closeable
+{
+    /**
+     * session configuration property with the path of the log file, the embedder sets it from
+     * {@link MavenRequest#getLocalRepositoryAccessLogFile()}
+     */
+    public static final String CONFIG_PROP_ACCESS_LOG = "hudson.maven.localRepositoryAccessLog";
+
+    static final int BATCH_SIZE = 256;
+
+    /**
+     * a directory accessed again within this delay is not logged again
+     */
+    private static final long RESOLUTION = 60 * 1000L;
+
+    /**
+     * the open logs of this JVM: the file lock is taken by a single channel at a time
+     */
+    private static final ConcurrentMap<File, LocalRepositoryAccessLog> OPEN = new ConcurrentHashMap<>();
+
+    private final File logFile;
+
+    private final File basedir;
+
+    /**
+     * directory to access time, not appended yet
+     */
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * directory to access time last appended by this JVM
+     */
+    private final ConcurrentMap<String, Long> logged = new ConcurrentHashMap<>();
+
+    /**
+     * the directories used by the live sessions, dropped with their session, guarded by itself
+     */
+    private final Map<Pins, Boolean> pins = new WeakHashMap<>();
+
+    /**
+     * version directories deleted by this JVM, incremented under the lock of {@link #pins}
+     */
+    private volatile long deletions;
+
+    private volatile IOException lastEvictionFailure;
+
+    private LocalRepositoryAccessLog( File logFile, File basedir ) {
+        this.logFile = logFile;
+        this.basedir = basedir;
+    }
+
+    /**
+     * @param logFile created on the first flush if it doesn't exist
+     * @throws IOException if the log is already open in this JVM for another repository
+     */
+    public static LocalRepositoryAccessLog open( File logFile, File basedir )
+        throws IOException {
+        File file = logFile.getAbsoluteFile();
+        File repository = basedir.getAbsoluteFile();
+        LocalRepositoryAccessLog log = OPEN.computeIfAbsent( file, f -> new LocalRepositoryAccessLog( f, repository ) );
+        if ( !log.basedir.equals( repository ) ) {
+            throw new IOException( file + " tracks " + log.basedir + ", not " + repository );
+        }
+        return log;
+    }
+
+    public File getLogFile() {
+        return logFile;
+    }
+
+    public File getBasedir() {
+        return basedir;
+    }
+
+    /**
+     * @return directories protected from the eviction as long as they are reachable, the local repository manager
+     *         of a session holds them
+     */
+    Pins newPins() {
+        Pins sessionPins = new Pins();
+        synchronized ( pins ) {
+            pins.put( sessionPins, Boolean.TRUE );
+        }
+        return sessionPins;
+    }
+
+    /**
+     * @return a counter of the directories deleted by the eviction, to give to {@link #access(File, Pins, long)}
+     */
+    long deletions() {
+        return deletions;
+    }
+
+    /**
+     * Record the access to a file of the repository, ignored if it is not in the repository.
+     * @param sessionPins where to pin its directory, can be <code>null</code>
+     */
+    void access( File file, Pins sessionPins ) {
+        access( file, sessionPins, deletions );
+    }
+
+    /**
+     * Record the access to a file of the repository found by a lookup, ignored if it is not in the repository.
+     * Once pinned the directory of the file cannot be evicted anymore, but it can have been evicted since the lookup.
+     * @param sessionPins where to pin its directory, can be <code>null</code>
+     * @param deletionsBefore {@link #deletions()} before the lookup
+     * @return <code>false</code> if the file has been evicted since the lookup
+     */
+    boolean access( File file, Pins sessionPins, long deletionsBefore ) {
+        String directory = directory( file );
+        if ( directory == null ) {
+            return true;
+        }
+        boolean evicted = false;
+        if ( sessionPins != null ) {
+            synchronized ( pins ) {
+                sessionPins.directories.add( directory );
+                evicted = deletions != deletionsBefore;
+            }
+        }
+        if ( evicted && !file.exists() ) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Long last = logged.get( directory );
+        if ( last != null && now - last < RESOLUTION ) {
+            return true;
+        }
+        pending.put( directory, now );
+        if ( pending.size() >= BATCH_SIZE ) {
+            try {
+                flush();
+            } catch ( IOException e ) {
+                // kept pending, appended by the next flush
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the version directory of the file relative to the repository with <code>/</code> separators
+     */
+    private String directory( File file ) {
+        Path directory = file.getAbsoluteFile().toPath().getParent();
+        Path repository = basedir.toPath();
+        if ( directory == null || !directory.startsWith( repository ) || directory.equals( repository ) ) {
+            return null;
+        }
+        return repository.relativize( directory ).toString().replace( File.separatorChar, '/' );
+    }
+
+    /**
+     * append the pending accesses to the log
+     */
+    public synchronized void flush()
+        throws IOException {
+        if ( pending.isEmpty() ) {
+            return;
+        }
+        Map<String, Long> batch = new HashMap<>( pending );
+        StringBuilder lines = new StringBuilder();
+        for ( Map.Entry<String, Long> entry : batch.entrySet() ) {
+            lines.append( entry.getValue() ).append( ' ' ).append( entry.getKey() ).append( '\n' );
+        }
+        Files.createDirectories( logFile.getAbsoluteFile().getParentFile().toPath() );
+        try (FileChannel channel = FileChannel.open( logFile.toPath(), StandardOpenOption.CREATE,
+                                                     StandardOpenOption.WRITE, StandardOpenOption.APPEND )) {
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer buffer = StandardCharsets.UTF_8.encode( lines.toString() );
+                while ( buffer.hasRemaining() ) {
+                    channel.write( buffer );
+                }
+            } finally {
+                lock.release();
+            }
+        }
+        for ( Map.Entry<String, Long> entry : batch.entrySet() ) {
+            pending.remove( entry.getKey(), entry.getValue() );
+            logged.put( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    /**
+     * Delete the least recently used version directories until the repository is not bigger than
+     * <code>maxBytes</code>, then compact the log.
+     * @return the number of bytes deleted
+     */
+    public synchronized long evict( long maxBytes )
+        throws IOException {
+        flush();
+        Files.createDirectories( logFile.getAbsoluteFile().getParentFile().toPath() );
+        try (FileChannel channel = FileChannel.open( logFile.toPath(), StandardOpenOption.CREATE,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE )) {
+            FileLock lock = channel.lock();
+            try {
+                Map<String, Long> accesses = read( channel );
+                List<VersionDirectory> directories = scan();
+                long total = 0;
+                for ( VersionDirectory directory : directories ) {
+                    total += directory.size;
+                    Long access = accesses.get( directory.path );
+                    if ( access != null && access > directory.lastAccess ) {
+                        directory.lastAccess = access;
+                    }
+                }
+                directories.sort( ( d1, d2 ) -> Long.compare( d1.lastAccess, d2.lastAccess ) );
+
+                long evicted = 0;
+                Map<String, Long> kept = new HashMap<>();
+                for ( VersionDirectory directory : directories ) {
+                    long deleted = total - evicted > maxBytes ? deleteUnpinned( directory ) : -1;
+                    if ( deleted >= 0 ) {
+                        evicted += deleted;
+                        logged.remove( directory.path );
+                    } else {
+                        kept.put( directory.path, directory.lastAccess );
+                    }
+                }
+                compact( channel, kept );
+                return evicted;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * @return a task running {@link #evict(long)} for a scheduled executor, a failed run is retried by the next
+     *         one and available from {@link #getLastEvictionFailure()}
+     */
+    public Runnable evictor( long maxBytes ) {
+        return () -> {
+            try {
+                evict( maxBytes );
+                lastEvictionFailure = null;
+            } catch ( IOException e ) {
+                lastEvictionFailure = e;
+            }
+        };
+    }
+
+    public IOException getLastEvictionFailure() {
+        return lastEvictionFailure;
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        OPEN.remove( logFile, this );
+        flush();
+    }
+
+    /**
+     * <code>evict &lt;local repository&gt; &lt;log file&gt; &lt;max bytes&gt;</code>
+     */
+    public static void main( String[] args )
+        throws IOException {
+        if ( args.length != 4 || !"evict".equals( args[0] ) ) {
+            System.err.println( "usage: evict <local repository> <log file> <max bytes>" );
+            System.exit( 2 );
+        }
+        try (LocalRepositoryAccessLog log = open( new File( args[2] ), new File( args[1] ) )) {
+            System.out.println( log.evict( Long.parseLong( args[3] ) ) + " bytes evicted" );
+        }
+    }
+
+    /**
+     * compared by identity in the weak map, unlike the sets
+     */
+    static final class Pins
+    {
+        final Set<String> directories = ConcurrentHashMap.newKeySet();
+    }
+
+    // ----------------------------------------------------------------------
+    // Log file
+    // ----------------------------------------------------------------------
+
+    private static Map<String, Long> read( FileChannel channel )
+        throws IOException {
+        Map<String, Long> accesses = new HashMap<>();
+        channel.position( 0 );
+        // not closed: it would close the channel
+        BufferedReader reader =
+            new BufferedReader( new InputStreamReader( Channels.newInputStream( channel ), StandardCharsets.UTF_8 ) );
+        String line;
+        while ( ( line = reader.readLine() ) != null ) {
+            int space = line.indexOf( ' ' );
+            if ( space <= 0 ) {
+                // torn by a crash
+                continue;
+            }
+            try {
+                accesses.merge( line.substring( space + 1 ), Long.parseLong( line.substring( 0, space ) ), Math::max );
+            } catch ( NumberFormatException e ) {
+                // torn by a crash
+            }
+        }
+        return accesses;
+    }
+
+    /**
+     * rewrite the log in place with a line per directory: a rename would leave the other JVMs waiting for the lock
+     * of the old file
+     */
+    private static void compact( FileChannel channel, Map<String, Long> accesses )
+        throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for ( Map.Entry<String, Long> entry : accesses.entrySet() ) {
+            lines.append( entry.getValue() ).append( ' ' ).append( entry.getKey() ).append( '\n' );
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode( lines.toString() );
+        channel.truncate( 0 );
+        channel.position( 0 );
+        while ( buffer.hasRemaining() ) {
+            channel.write( buffer );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Repository
+    // ----------------------------------------------------------------------
+
+    private static final class VersionDirectory
+    {
+        final String path;
+
+        final Path directory;
+
+        long size;
+
+        long lastAccess;
+
+        VersionDirectory( String path, Path directory ) {
+            this.path = path;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * @return the directories holding artifacts, not the ones only holding metadata
+     */
+    private List<VersionDirectory> scan()
+        throws IOException {
+        List<VersionDirectory> directories = new ArrayList<>();
+        if ( !basedir.isDirectory() ) {
+            return directories;
+        }
+        Path repository = basedir.toPath();
+        Files.walkFileTree( repository, new SimpleFileVisitor<Path>() {
+            private final Map<Path, VersionDirectory> current = new HashMap<>();
+
+            @Override
+            public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attributes ) {
+                String name = dir.getFileName() == null ? "" : dir.getFileName().toString();
+                return name.startsWith( "." ) && !dir.equals( repository ) ? FileVisitResult.SKIP_SUBTREE
+                                : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attributes ) {
+                Path dir = file.getParent();
+                VersionDirectory directory = current.get( dir );
+                if ( directory == null ) {
+                    if ( isMetadata( file.getFileName().toString() ) || dir.equals( repository ) ) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    directory = new VersionDirectory(
+                        repository.relativize( dir ).toString().replace( File.separatorChar, '/' ), dir );
+                    current.put( dir, directory );
+                    directories.add( directory );
+                }
+                directory.size += attributes.size();
+                directory.lastAccess = Math.max( directory.lastAccess, attributes.lastModifiedTime().toMillis() );
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed( Path file, IOException e ) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory( Path dir, IOException e ) {
+                current.remove( dir );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+        return directories;
+    }
+
+    /**
+     * the metadata of a groupId or artifactId directory, or the resolver status of a directory without artifact
+     */
+    private static boolean isMetadata( String name ) {
+        return name.startsWith( "maven-metadata" ) || name.equals( "resolver-status.properties" );
+    }
+
+    /**
+     * delete the directory unless a live session pins it: the pins are checked and the directory deleted under the
+     * lock of the pins, a session pinning it meanwhile sees the deletion
+     * @return the number of bytes deleted, <code>-1</code> if it is pinned
+     */
+    private long deleteUnpinned( VersionDirectory directory )
+        throws IOException {
+        synchronized ( pins ) {
+            for ( Pins sessionPins : pins.keySet() ) {
+                if ( sessionPins.directories.contains( directory.path ) ) {
+                    return -1;
+                }
+            }
+            try {
+                return delete( directory );
+            } finally {
+                deletions++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes deleted, the subdirectories are not versions and are left alone
+     */
+    private long delete( VersionDirectory directory )
+        throws IOException {
+        long deleted = 0;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> children = Files.list( directory.directory )) {
+            children.filter( Files::isRegularFile ).forEach( files::add );
+        }
+        // trusted to be there by the indexes
+        LocalRepositoryIndex.removed( basedir, files );
+        for ( Path file : files ) {
+            long size = Files.size( file );
+            if ( Files.deleteIfExists( file ) ) {
+                deleted += size;
+            }
+        }
+        try {
+            Files.deleteIfExists( directory.directory );
+        } catch ( IOException e ) {
+            // not empty
+        }
+        return deleted;
+    }
+
+    @Override
+    public String toString() {
+        return logFile + " of " + basedir + ( pending.isEmpty() ? "" : ", " + pending.size() + " pending" );
+    }
+}
+
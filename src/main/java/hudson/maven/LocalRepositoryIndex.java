@@ -0,0 +1,838 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.util.StringDigestUtil;
+
+/**
+ * Memory mapped index of the artifacts present in a local repository, by groupId, artifactId, version, classifier
+ * and extension, with their size, modification time and availability: the repositories they were downloaded from
+ * according to their <code>_remote.repositories</code>, or whether they were installed locally. Set
+ * {@link MavenRequest#setLocalRepositoryIndexFile(String)} to have the repository sessions of the embedder look an
+ * artifact up in the index before touching the local repository: an indexed artifact available from one of the
+ * requested repositories is returned without any file system access, the other lookups go to the disk as usual.
+ * The artifacts installed or downloaded by the embedder are added to the index.
+ * <p>
+ * The index file is an open addressing hash table of 64 bits fingerprints of the coordinates, it can be shared by
+ * the JVMs using the same local repository (the updates are done under a file lock). An artifact written to the
+ * repository by another tool (the command line Maven for instance) is added to the index when a session finds it on
+ * disk, the index is never trusted to report an artifact missing. An indexed artifact is trusted to be there: the
+ * eviction of {@link LocalRepositoryAccessLog} removes the artifacts it deletes from the indexes open in its JVM, the
+ * index must be rebuilt after deleting artifacts any other way. {@link #rebuild()} brings the index up to date at
+ * once and {@link #verify()} lists the differences between the index and the repository. Both are available from
+ * the command line:
+ * <pre>java -cp ... hudson.maven.LocalRepositoryIndex rebuild|verify &lt;local repository&gt; &lt;index file&gt;</pre>
+ * Only the default layout is indexed: the split local repositories are not.
+ * @since 3.16
+ */
+public final class LocalRepositoryIndex
+    implements Closeable
+{
+    /**
+     * session configuration property with the path of the index file, the embedder sets it from
+     * {@link MavenRequest#getLocalRepositoryIndexFile()}
+     */
+    public static final String CONFIG_PROP_INDEX_FILE = "hudson.maven.localRepositoryIndex";
+
+    private static final int MAGIC = 0x484d4c49;
+
+    private static final int FORMAT_VERSION = 2;
+
+    // header: magic, version, capacity, size, used slots, replaced flag, basedir fingerprint
+    private static final int CAPACITY = 8;
+
+    private static final int SIZE = 12;
+
+    private static final int USED = 16;
+
+    private static final int REPLACED = 20;
+
+    private static final int BASEDIR = 24;
+
+    private static final int HEADER_SIZE = 32;
+
+    // slot: fingerprint, size, modification time, availability flags, fingerprints of two repository keys
+    private static final int SLOT_SIZE = 48;
+
+    /**
+     * number of longs of an entry, the content of a slot
+     */
+    private static final int ENTRY_SIZE = SLOT_SIZE / 8;
+
+    /**
+     * installed locally: <code>_remote.repositories</code> has the empty repository key
+     */
+    static final long LOCAL = 1;
+
+    /**
+     * no <code>_remote.repositories</code> entry, available from any repository
+     */
+    static final long UNTRACKED = 2;
+
+    /**
+     * more repository keys than the slot has room for, the availability must be read on disk
+     */
+    static final long OVERFLOW = 4;
+
+    private static final String TRACKING_FILE = "_remote.repositories";
+
+    private static final long EMPTY = 0;
+
+    private static final long DELETED = 1;
+
+    private static final int MIN_CAPACITY = 1 << 12;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final Pattern TIMESTAMP = Pattern.compile( "\\d{8}\\.\\d{6}-\\d+" );
+
+    /**
+     * written by the resolver next to the artifacts, never looked up as artifacts
+     */
+    private static final String[] IGNORED_SUFFIXES = { ".lastUpdated", ".part", ".lock" };
+
+    /**
+     * the open indexes of this JVM: a file is locked by a single channel
+     */
+    private static final ConcurrentMap<File, LocalRepositoryIndex> OPEN = new ConcurrentHashMap<>();
+
+    private final File indexFile;
+
+    private final File basedir;
+
+    private final long basedirFingerprint;
+
+    /**
+     * guarded by this
+     */
+    private FileChannel channel;
+
+    /**
+     * read with absolute gets only, <code>null</code> once closed
+     */
+    private volatile ByteBuffer buffer;
+
+    /**
+     * set if an update failed, the index can miss artifacts and is not trusted anymore
+     */
+    private volatile boolean broken;
+
+    private LocalRepositoryIndex( File indexFile, File basedir ) {
+        this.indexFile = indexFile;
+        this.basedir = basedir;
+        this.basedirFingerprint = fingerprint( basedir.getPath() );
+    }
+
+    /**
+     * @param indexFile built from the content of <code>basedir</code> if it doesn't exist
+     * @throws IOException if the index cannot be read or written, or if it indexes another repository
+     */
+    public static LocalRepositoryIndex open( File indexFile, File basedir )
+        throws IOException {
+        File file = indexFile.getAbsoluteFile();
+        File repository = basedir.getAbsoluteFile();
+        while ( true ) {
+            LocalRepositoryIndex index = OPEN.get( file );
+            if ( index != null ) {
+                if ( !index.basedir.equals( repository ) ) {
+                    throw new IOException( file + " indexes " + index.basedir + ", not " + repository );
+                }
+                return index;
+            }
+            synchronized ( OPEN ) {
+                if ( OPEN.containsKey( file ) ) {
+                    continue;
+                }
+                index = new LocalRepositoryIndex( file, repository );
+                index.load();
+                OPEN.put( file, index );
+                return index;
+            }
+        }
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    public File getBasedir() {
+        return basedir;
+    }
+
+    /**
+     * @return number of indexed artifacts
+     */
+    public int size() {
+        ByteBuffer current = current();
+        return current == null ? 0 : current.getInt( SIZE );
+    }
+
+    /**
+     * @return <code>false</code> if the artifact is not in the repository, <code>true</code> if it is there or if
+     *         the index cannot tell (fingerprint collision, index closed or broken)
+     */
+    public boolean mayContain( Artifact artifact ) {
+        ByteBuffer current = current();
+        if ( current == null || broken ) {
+            return true;
+        }
+        return find( current, fingerprint( artifact ) ) >= 0;
+    }
+
+    /**
+     * @return the availability flags then the fingerprints of the repository keys of an indexed artifact,
+     *         <code>null</code> if it is not indexed or if the index cannot tell
+     * @see #repositoryKey(RemoteRepository, String)
+     */
+    long[] availability( Artifact artifact ) {
+        ByteBuffer current = current();
+        if ( current == null || broken ) {
+            return null;
+        }
+        int slot = find( current, fingerprint( artifact ) );
+        if ( slot < 0 ) {
+            return null;
+        }
+        int position = HEADER_SIZE + slot * SLOT_SIZE;
+        long[] availability = { current.getLong( position + 24 ), current.getLong( position + 32 ),
+            current.getLong( position + 40 ) };
+        // updated meanwhile
+        return current.getLong( position ) == fingerprint( artifact ) ? availability : null;
+    }
+
+    /**
+     * Record an artifact written to the repository, with the availability read from its
+     * <code>_remote.repositories</code>. If the index cannot be updated it is not used anymore until it is rebuilt.
+     * @param file the file of the artifact in the repository
+     */
+    public synchronized void add( Artifact artifact, File file ) {
+        try {
+            long[] entry = entry( fingerprint( artifact ), file.toPath(), file.length(), file.lastModified(),
+                                  new HashMap<>() );
+            ByteBuffer current = current();
+            if ( current != null && !broken && matches( current, entry ) ) {
+                return;
+            }
+            update( entry );
+        } catch ( IOException | RuntimeException e ) {
+            broken = true;
+        }
+    }
+
+    /**
+     * Forget the artifacts deleted from the repository by the indexes of this JVM.
+     * @param files the deleted files of the artifacts
+     */
+    static void removed( File basedir, List<Path> files ) {
+        File repository = basedir.getAbsoluteFile();
+        for ( LocalRepositoryIndex index : OPEN.values() ) {
+            if ( index.basedir.equals( repository ) ) {
+                index.remove( files );
+            }
+        }
+    }
+
+    private synchronized void remove( List<Path> files ) {
+        try {
+            ensureOpen();
+            FileLock lock = lock();
+            try {
+                ByteBuffer current = buffer;
+                for ( Path file : files ) {
+                    long fingerprint = parse( basedir.toPath().relativize( file.toAbsolutePath() ) );
+                    int slot = fingerprint == EMPTY ? -1 : find( current, fingerprint );
+                    if ( slot >= 0 ) {
+                        current.putLong( HEADER_SIZE + slot * SLOT_SIZE, DELETED );
+                        current.putInt( SIZE, current.getInt( SIZE ) - 1 );
+                    }
+                }
+            } finally {
+                release( lock );
+            }
+        } catch ( IOException | RuntimeException e ) {
+            broken = true;
+        }
+    }
+
+    /**
+     * Scan the repository and replace the index with its content.
+     */
+    public synchronized void rebuild()
+        throws IOException {
+        ensureOpen();
+        List<long[]> entries = new ArrayList<>();
+        Map<Path, Properties> tracking = new HashMap<>();
+        scan( ( fingerprint, file, attributes ) -> entries.add(
+            entry( fingerprint, file, attributes.size(), attributes.lastModifiedTime().toMillis(), tracking ) ) );
+        FileLock lock = lock();
+        try {
+            replace( entries );
+        } finally {
+            release( lock );
+        }
+        broken = false;
+    }
+
+    /**
+     * Compare the index with the repository.
+     * @return the differences, empty if the index is accurate
+     */
+    public synchronized List<String> verify()
+        throws IOException {
+        ensureOpen();
+        List<String> problems = new ArrayList<>();
+        int[] found = new int[1];
+        ByteBuffer current = current();
+        Map<Path, Properties> tracking = new HashMap<>();
+        scan( ( fingerprint, file, attributes ) -> {
+            if ( find( current, fingerprint ) < 0 ) {
+                problems.add( "not indexed: " + file );
+                return;
+            }
+            found[0]++;
+            if ( !matches( current, entry( fingerprint, file, attributes.size(),
+                                           attributes.lastModifiedTime().toMillis(), tracking ) ) ) {
+                problems.add( "changed: " + file );
+            }
+        } );
+        int missing = current.getInt( SIZE ) - found[0];
+        if ( missing > 0 ) {
+            problems.add( missing + " indexed artifacts are not in the repository" );
+        }
+        if ( broken ) {
+            problems.add( "an update of the index failed" );
+        }
+        return problems;
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        synchronized ( OPEN ) {
+            OPEN.remove( indexFile, this );
+        }
+        synchronized ( this ) {
+            buffer = null;
+            if ( channel != null ) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * <code>rebuild|verify &lt;local repository&gt; &lt;index file&gt;</code>
+     */
+    public static void main( String[] args )
+        throws IOException {
+        if ( args.length != 3 || !( "rebuild".equals( args[0] ) || "verify".equals( args[0] ) ) ) {
+            System.err.println( "usage: rebuild|verify <local repository> <index file>" );
+            System.exit( 2 );
+        }
+        try (LocalRepositoryIndex index = open( new File( args[2] ), new File( args[1] ) )) {
+            if ( "rebuild".equals( args[0] ) ) {
+                index.rebuild();
+                System.out.println( index.size() + " artifacts indexed" );
+            } else {
+                List<String> problems = index.verify();
+                problems.forEach( System.out::println );
+                System.exit( problems.isEmpty() ? 0 : 1 );
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Index file
+    // ----------------------------------------------------------------------
+
+    private void load()
+        throws IOException {
+        if ( indexFile.isFile() ) {
+            map();
+            ByteBuffer current = buffer;
+            if ( current.capacity() >= HEADER_SIZE && current.getInt( 0 ) == MAGIC
+                && current.getInt( 4 ) == FORMAT_VERSION && current.getInt( REPLACED ) == 0
+                && current.capacity() == HEADER_SIZE + (long) current.getInt( CAPACITY ) * SLOT_SIZE ) {
+                if ( current.getLong( BASEDIR ) != basedirFingerprint ) {
+                    close();
+                    throw new IOException( indexFile + " doesn't index " + basedir );
+                }
+                return;
+            }
+        } else {
+            Files.createDirectories( indexFile.getParentFile().toPath() );
+            map();
+        }
+        // missing or damaged
+        try {
+            rebuild();
+        } catch ( IOException e ) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * (re)open the index file, guarded by this
+     */
+    private void map()
+        throws IOException {
+        if ( channel != null ) {
+            channel.close();
+        }
+        channel = FileChannel.open( indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE );
+        buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, channel.size() );
+    }
+
+    private void ensureOpen()
+        throws IOException {
+        if ( channel == null ) {
+            throw new IOException( indexFile + " is closed" );
+        }
+    }
+
+    /**
+     * @return the mapping of the current index file, it changes when the table grows (in this JVM or another one)
+     */
+    private ByteBuffer current() {
+        ByteBuffer current = buffer;
+        if ( current != null && current.capacity() >= HEADER_SIZE && current.getInt( REPLACED ) != 0 ) {
+            synchronized ( this ) {
+                try {
+                    if ( channel != null && buffer.getInt( REPLACED ) != 0 ) {
+                        map();
+                    }
+                } catch ( IOException e ) {
+                    broken = true;
+                }
+                current = buffer;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * lock the current index file, guarded by this
+     */
+    private FileLock lock()
+        throws IOException {
+        while ( true ) {
+            ensureOpen();
+            FileLock lock = channel.lock();
+            if ( buffer.capacity() < HEADER_SIZE || buffer.getInt( REPLACED ) == 0 ) {
+                return lock;
+            }
+            // replaced while waiting for the lock
+            lock.release();
+            map();
+        }
+    }
+
+    private void update( long[] entry )
+        throws IOException {
+        FileLock lock = lock();
+        try {
+            ByteBuffer current = buffer;
+            int slot = find( current, entry[0] );
+            if ( slot < 0 ) {
+                int capacity = current.getInt( CAPACITY );
+                if ( ( current.getInt( USED ) + 1 ) * 2 > capacity ) {
+                    List<long[]> entries = entries( current );
+                    entries.add( entry );
+                    replace( entries );
+                    return;
+                }
+                slot = free( current, entry[0] );
+                if ( current.getLong( HEADER_SIZE + slot * SLOT_SIZE ) == EMPTY ) {
+                    current.putInt( USED, current.getInt( USED ) + 1 );
+                }
+                current.putInt( SIZE, current.getInt( SIZE ) + 1 );
+            } else {
+                // hidden from the readers while it changes
+                current.putLong( HEADER_SIZE + slot * SLOT_SIZE, DELETED );
+            }
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            for ( int i = 1; i < ENTRY_SIZE; i++ ) {
+                current.putLong( position + 8 * i, entry[i] );
+            }
+            // last so a concurrent reader never sees a half written entry
+            current.putLong( position, entry[0] );
+        } finally {
+            release( lock );
+        }
+    }
+
+    /**
+     * @return whether the table has this exact entry
+     */
+    private static boolean matches( ByteBuffer table, long[] entry ) {
+        int slot = find( table, entry[0] );
+        if ( slot < 0 ) {
+            return false;
+        }
+        int position = HEADER_SIZE + slot * SLOT_SIZE;
+        for ( int i = 1; i < ENTRY_SIZE; i++ ) {
+            if ( table.getLong( position + 8 * i ) != entry[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param tracking the <code>_remote.repositories</code> already read, by directory
+     * @return the content of the slot of an artifact
+     */
+    private static long[] entry( long fingerprint, Path file, long size, long lastModified,
+                                 Map<Path, Properties> tracking ) {
+        long[] entry = { fingerprint, size, lastModified, 0, EMPTY, EMPTY };
+        Properties properties = tracking.computeIfAbsent( file.getParent(), LocalRepositoryIndex::readTracking );
+        String prefix = file.getFileName().toString() + '>';
+        int keys = 0;
+        for ( String name : properties.stringPropertyNames() ) {
+            if ( !name.startsWith( prefix ) ) {
+                continue;
+            }
+            String key = name.substring( prefix.length() );
+            if ( key.isEmpty() ) {
+                entry[3] |= LOCAL;
+            } else if ( keys < 2 ) {
+                entry[4 + keys++] = fingerprint( key );
+            } else {
+                entry[3] |= OVERFLOW;
+            }
+        }
+        if ( entry[3] == 0 && keys == 0 ) {
+            entry[3] = UNTRACKED;
+        }
+        // not ordered in the file
+        if ( entry[4] > entry[5] ) {
+            long first = entry[4];
+            entry[4] = entry[5];
+            entry[5] = first;
+        }
+        return entry;
+    }
+
+    private static Properties readTracking( Path directory ) {
+        Properties properties = new Properties();
+        Path file = directory.resolve( TRACKING_FILE );
+        if ( Files.isRegularFile( file ) ) {
+            try (InputStream in = Files.newInputStream( file )) {
+                properties.load( in );
+            } catch ( IOException e ) {
+                // read as untracked, like the resolver does
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * @param availability as returned by {@link #availability(Artifact)}
+     * @return whether the artifact was downloaded from this repository
+     */
+    static boolean isAvailableFrom( long[] availability, RemoteRepository repository, String context ) {
+        long key = fingerprint( repositoryKey( repository, context ) );
+        return availability[1] == key || availability[2] == key;
+    }
+
+    /**
+     * the key of the repository in <code>_remote.repositories</code>, computed like the resolver does
+     */
+    static String repositoryKey( RemoteRepository repository, String context ) {
+        if ( !repository.isRepositoryManager() ) {
+            return repository.getId();
+        }
+        List<String> mirrored = new ArrayList<>();
+        for ( RemoteRepository mirror : repository.getMirroredRepositories() ) {
+            mirrored.add( mirror.getId() );
+        }
+        mirrored.sort( null );
+        StringDigestUtil digest = StringDigestUtil.sha1();
+        digest.update( context );
+        for ( String id : mirrored ) {
+            digest.update( id );
+        }
+        return repository.getId() + '-' + digest.digest();
+    }
+
+    /**
+     * the lock is already gone if the file it was taken on has been replaced
+     */
+    private static void release( FileLock lock )
+        throws IOException {
+        if ( lock.isValid() ) {
+            lock.release();
+        }
+    }
+
+    /**
+     * write a new index file with the entries and map it, the lock on the current file must be held
+     */
+    private void replace( List<long[]> entries )
+        throws IOException {
+        int capacity = MIN_CAPACITY;
+        while ( capacity < entries.size() * 4 ) {
+            capacity <<= 1;
+        }
+        ByteBuffer table = ByteBuffer.allocate( HEADER_SIZE + capacity * SLOT_SIZE );
+        table.putInt( 0, MAGIC ).putInt( 4, FORMAT_VERSION ).putInt( CAPACITY, capacity );
+        table.putLong( BASEDIR, basedirFingerprint );
+        int size = 0;
+        for ( long[] entry : entries ) {
+            int slot = find( table, entry[0] );
+            if ( slot < 0 ) {
+                slot = free( table, entry[0] );
+                size++;
+            }
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            for ( int i = 0; i < ENTRY_SIZE; i++ ) {
+                table.putLong( position + 8 * i, entry[i] );
+            }
+        }
+        table.putInt( SIZE, size ).putInt( USED, size );
+
+        Path tmp = Files.createTempFile( indexFile.getParentFile().toPath(), indexFile.getName(), ".tmp" );
+        try {
+            Files.write( tmp, table.array() );
+            Files.move( tmp, indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        } finally {
+            Files.deleteIfExists( tmp );
+        }
+        ByteBuffer previous = buffer;
+        if ( previous.capacity() >= HEADER_SIZE ) {
+            // the other JVMs map the new file on their next access
+            previous.putInt( REPLACED, 1 );
+            if ( previous instanceof MappedByteBuffer ) {
+                ( (MappedByteBuffer) previous ).force();
+            }
+        }
+        map();
+    }
+
+    private static List<long[]> entries( ByteBuffer table ) {
+        int capacity = table.getInt( CAPACITY );
+        List<long[]> entries = new ArrayList<>( table.getInt( SIZE ) + 1 );
+        for ( int slot = 0; slot < capacity; slot++ ) {
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            long fingerprint = table.getLong( position );
+            if ( fingerprint != EMPTY && fingerprint != DELETED ) {
+                long[] entry = new long[ENTRY_SIZE];
+                for ( int i = 0; i < ENTRY_SIZE; i++ ) {
+                    entry[i] = table.getLong( position + 8 * i );
+                }
+                entries.add( entry );
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return the slot of the fingerprint, <code>-1</code> if not found
+     */
+    private static int find( ByteBuffer table, long fingerprint ) {
+        int mask = table.getInt( CAPACITY ) - 1;
+        for ( int slot = (int) fingerprint & mask; ; slot = ( slot + 1 ) & mask ) {
+            long candidate = table.getLong( HEADER_SIZE + slot * SLOT_SIZE );
+            if ( candidate == fingerprint ) {
+                return slot;
+            }
+            if ( candidate == EMPTY ) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return the first empty or deleted slot for the fingerprint
+     */
+    private static int free( ByteBuffer table, long fingerprint ) {
+        int mask = table.getInt( CAPACITY ) - 1;
+        for ( int slot = (int) fingerprint & mask; ; slot = ( slot + 1 ) & mask ) {
+            long candidate = table.getLong( HEADER_SIZE + slot * SLOT_SIZE );
+            if ( candidate == EMPTY || candidate == DELETED ) {
+                return slot;
+            }
+        }
+    }
+
+    static long fingerprint( Artifact artifact ) {
+        return fingerprint( artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(),
+                            artifact.getClassifier(), artifact.getExtension() );
+    }
+
+    private static long fingerprint( String groupId, String artifactId, String version, String classifier,
+                                     String extension ) {
+        long hash = fnv( FNV_OFFSET, groupId );
+        hash = fnv( fnv( hash, ":" ), artifactId );
+        hash = fnv( fnv( hash, ":" ), version );
+        hash = fnv( fnv( hash, ":" ), classifier );
+        return mix( fnv( fnv( hash, ":" ), extension ) );
+    }
+
+    private static long fingerprint( String value ) {
+        return mix( fnv( FNV_OFFSET, value ) );
+    }
+
+    private static long fnv( long hash, String value ) {
+        for ( int i = 0; i < value.length(); i++ ) {
+            hash = ( hash ^ value.charAt( i ) ) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * murmur3 finalizer, the low bits are used as slot
+     */
+    private static long mix( long hash ) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY || hash == DELETED ? hash + 2 : hash;
+    }
+
+    // ----------------------------------------------------------------------
+    // Repository scan
+    // ----------------------------------------------------------------------
+
+    private interface ArtifactVisitor
+    {
+        void visit( long fingerprint, Path file, BasicFileAttributes attributes );
+    }
+
+    /**
+     * visit the artifacts of the repository: <code>groupId/artifactId/version/artifactId-version[-classifier].extension</code>
+     */
+    private void scan( ArtifactVisitor visitor )
+        throws IOException {
+        Path root = basedir.toPath();
+        if ( !Files.isDirectory( root ) ) {
+            return;
+        }
+        Files.walkFileTree( root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attributes ) {
+                // .locks, .meta, .cache...
+                return dir.equals( root ) || !dir.getFileName().toString().startsWith( "." )
+                    ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attributes ) {
+                if ( attributes.isRegularFile() ) {
+                    long fingerprint = parse( root.relativize( file ) );
+                    if ( fingerprint != EMPTY ) {
+                        visitor.visit( fingerprint, file, attributes );
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed( Path file, IOException e ) {
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    /**
+     * @return the fingerprint of the artifact stored at this path, {@link #EMPTY} if it is not an artifact
+     */
+    static long parse( Path path ) {
+        int count = path.getNameCount();
+        if ( count < 4 ) {
+            return EMPTY;
+        }
+        String name = path.getFileName().toString();
+        String version = path.getName( count - 2 ).toString();
+        String artifactId = path.getName( count - 3 ).toString();
+        if ( name.startsWith( "maven-metadata" ) || !name.startsWith( artifactId + '-' ) ) {
+            return EMPTY;
+        }
+        for ( String suffix : IGNORED_SUFFIXES ) {
+            if ( name.endsWith( suffix ) ) {
+                return EMPTY;
+            }
+        }
+        String rest = name.substring( artifactId.length() + 1 );
+        if ( !rest.startsWith( version ) ) {
+            // timestamped snapshot in a baseVersion directory
+            if ( !version.endsWith( "-SNAPSHOT" ) ) {
+                return EMPTY;
+            }
+            String base = version.substring( 0, version.length() - "SNAPSHOT".length() );
+            Matcher timestamp = TIMESTAMP.matcher( rest ).region( base.length(), rest.length() );
+            if ( !rest.startsWith( base ) || !timestamp.lookingAt() ) {
+                return EMPTY;
+            }
+            version = rest.substring( 0, timestamp.end() );
+        }
+        String suffix = rest.substring( version.length() );
+        String classifier;
+        String extension;
+        if ( suffix.startsWith( "." ) && suffix.length() > 1 ) {
+            classifier = "";
+            extension = suffix.substring( 1 );
+        } else if ( suffix.startsWith( "-" ) && suffix.indexOf( '.' ) > 1 && suffix.indexOf( '.' ) < suffix.length() - 1 ) {
+            classifier = suffix.substring( 1, suffix.indexOf( '.' ) );
+            extension = suffix.substring( suffix.indexOf( '.' ) + 1 );
+        } else {
+            return EMPTY;
+        }
+        StringBuilder groupId = new StringBuilder();
+        for ( int i = 0; i < count - 3; i++ ) {
+            if ( i > 0 ) {
+                groupId.append( '.' );
+            }
+            groupId.append( path.getName( i ) );
+        }
+        return fingerprint( groupId.toString(), artifactId, version, classifier, extension );
+    }
+}
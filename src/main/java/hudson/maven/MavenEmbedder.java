@@ -15,8 +15,8 @@
  */
 package hudson.maven;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.maven.DefaultMaven;
+import org.apache.maven.RepositoryUtils;
 import org.apache.maven.Maven;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.InvalidRepositoryException;
@@ -36,15 +36,25 @@ import org.apache.maven.execution.MavenExecutionResult;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.Profile;
+import org.apache.maven.model.building.DefaultModelProblem;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelProblem;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
 import org.apache.maven.plugin.LegacySupport;
+import org.apache.maven.plugin.ExtensionRealmCache;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.PluginArtifactsCache;
+import org.apache.maven.plugin.PluginDescriptorCache;
+import org.apache.maven.plugin.PluginRealmCache;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.DependencyResolutionResult;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuilder;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.project.ProjectBuildingRequest;
 import org.apache.maven.project.ProjectBuildingResult;
+import org.apache.maven.project.ProjectRealmCache;
 import org.apache.maven.repository.RepositorySystem;
 import org.apache.maven.settings.Mirror;
 import org.apache.maven.settings.Proxy;
@@ -55,6 +65,7 @@ import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
 import org.apache.maven.settings.building.SettingsBuilder;
 import org.apache.maven.settings.building.SettingsBuildingException;
 import org.apache.maven.settings.building.SettingsBuildingRequest;
+import org.apache.maven.settings.io.xpp3.SettingsXpp3Writer;
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
@@ -62,38 +73,71 @@ import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.Os;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.DefaultRepositoryCache;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositoryCache;
 import org.eclipse.aether.RepositorySystemSession;
-
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.util.listener.ChainedRepositoryListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * Class intended to be used by clients who wish to embed Maven into their applications
+ * <p>
+ * An embedder must be {@link #close() closed} once not needed anymore, this disposes its container
+ * (or hands it back to the {@link EmbedderContainerPool} it comes from).
+ * </p>
  *
  * @author <a href="mailto:jason@maven.org">Jason van Zyl</a>
  * @author Olivier Lamy
  */
 public class MavenEmbedder
+    implements AutoCloseable
 {
     public static final String userHome = System.getProperty( "user.home" );
     
-    private MavenXpp3Reader modelReader;
-
-    private MavenXpp3Writer modelWriter;
-
     private final File mavenHome;
     
     private final PlexusContainer plexusContainer;
@@ -103,30 +147,80 @@ public class MavenEmbedder
     private final MavenExecutionRequest mavenExecutionRequest;
     private final MavenSession mavenSession;
 
+    private final LegacySupport legacySupport;
+
+    /**
+     * copied by each project reading, never modified
+     */
+    private final ProjectBuildingRequest projectBuildingRequest;
+
+    /**
+     * the pool the container comes from, <code>null</code> if this embedder owns its container
+     */
+    private final EmbedderContainerPool containerPool;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * the properties digest of the {@link SettingsCache} key, kept until the properties change
+     */
+    private final SettingsCache.PropertiesDigest propertiesDigest = new SettingsCache.PropertiesDigest();
+
+    /**
+     * shared by all the repository sessions of this embedder, it holds the resolved metadata and the parent and
+     * imported models, see {@link #invalidateCaches()}
+     */
+    private volatile RepositoryCache repositoryCache = new DefaultRepositoryCache();
+
+    /**
+     * <code>null</code> if {@link MavenRequest#getEffectiveModelCacheDirectory()} is not set
+     */
+    private final EffectiveModelCache effectiveModelCache;
+
+    /**
+     * used when {@link MavenRequest#getAsyncExecutor()} is not set, created on first use
+     */
+    private ExecutorService defaultAsyncExecutor;
+
     public MavenEmbedder( File mavenHome, MavenRequest mavenRequest ) throws MavenEmbedderException {
-        this(mavenHome,mavenRequest,MavenEmbedderUtils.buildPlexusContainer(mavenHome, mavenRequest));
+        this(mavenHome,mavenRequest,mavenRequest.getContainerPool() == null
+            ? MavenEmbedderUtils.buildPlexusContainer(mavenHome, mavenRequest)
+            : mavenRequest.getContainerPool().acquire(mavenHome, mavenRequest), mavenRequest.getContainerPool());
     }
 
     public MavenEmbedder( ClassLoader mavenClassLoader, ClassLoader parent, MavenRequest mavenRequest ) throws MavenEmbedderException {
-        this(null,mavenRequest,MavenEmbedderUtils.buildPlexusContainer(mavenClassLoader, parent, mavenRequest));
+        this(null,mavenRequest,mavenRequest.getContainerPool() == null
+            ? MavenEmbedderUtils.buildPlexusContainer(mavenClassLoader, parent, mavenRequest)
+            : mavenRequest.getContainerPool().acquire(mavenClassLoader, parent, mavenRequest), mavenRequest.getContainerPool());
     }
 
-    private MavenEmbedder( File mavenHome, MavenRequest mavenRequest, PlexusContainer plexusContainer )
+    private MavenEmbedder( File mavenHome, MavenRequest mavenRequest, PlexusContainer plexusContainer,
+                           EmbedderContainerPool containerPool )
         throws MavenEmbedderException
     {
         this.mavenHome = mavenHome;
         this.mavenRequest = mavenRequest;
         this.plexusContainer = plexusContainer;
+        this.containerPool = containerPool;
+        this.effectiveModelCache = mavenRequest.getEffectiveModelCacheDirectory() == null ? null
+            : new EffectiveModelCache( new File( mavenRequest.getEffectiveModelCacheDirectory() ),
+                                       mavenRequest.getEffectiveModelCacheMaxSize() );
 
         try {
             this.mavenExecutionRequest = this.buildMavenExecutionRequest(mavenRequest);
+            this.mavenExecutionRequest.setRepositoryCache( repositoryCache );
 
-            RepositorySystemSession rss = ((DefaultMaven) lookup(Maven.class)).newRepositorySession(mavenExecutionRequest);
+            RepositorySystemSession rss = buildRepositorySystemSession();
             
             mavenSession = new MavenSession( plexusContainer, rss, mavenExecutionRequest, new DefaultMavenExecutionResult() );
-                        
-            lookup(LegacySupport.class).setSession(mavenSession);
-        } catch (MavenEmbedderException | ComponentLookupException e) {
+
+            this.projectBuildingRequest = mavenExecutionRequest.getProjectBuildingRequest();
+
+            this.legacySupport = lookup(LegacySupport.class);
+            this.legacySupport.setSession(mavenSession);
+            EmbedderStats.getInstance().embedderCreated();
+        } catch (MavenEmbedderException | ComponentLookupException | RuntimeException e) {
+            releaseContainer();
             throw new MavenEmbedderException(e.getMessage(), e);
         }
     }
@@ -141,17 +235,84 @@ public class MavenEmbedder
         return plexusContainer;
     }
 
-    protected MavenExecutionRequest buildMavenExecutionRequest(MavenRequest mavenRequest)
-        throws MavenEmbedderException, ComponentLookupException  {
-        MavenExecutionRequest mavenExecutionRequest = new DefaultMavenExecutionRequest();
-
-        if ( mavenRequest.getGlobalSettingsFile() != null ) {
-            mavenExecutionRequest.setGlobalSettingsFile( new File( mavenRequest.getGlobalSettingsFile() ) );
+    /**
+     * Release the {@link LegacySupport} session of the current thread and dispose the container with all its
+     * {@link org.codehaus.plexus.classworlds.realm.ClassRealm}s, or hand it back to its {@link EmbedderContainerPool}.
+     * The embedder cannot be used anymore after this call. Calling it more than once has no effect.
+     * @since 3.16
+     */
+    @Override
+    public void close() {
+        if ( !closed.compareAndSet( false, true ) ) {
+            return;
+        }
+        EmbedderStats.getInstance().embedderClosed();
+        try {
+            synchronized ( this ) {
+                if ( defaultAsyncExecutor != null ) {
+                    defaultAsyncExecutor.shutdownNow();
+                }
+            }
+            if ( legacySupport.getSession() == mavenSession ) {
+                legacySupport.setSession( null );
+            }
+            if ( mavenRequest.getLocalRepositoryAccessLogFile() != null ) {
+                try {
+                    LocalRepositoryAccessLog.open( new File( mavenRequest.getLocalRepositoryAccessLogFile() ),
+                                                   mavenExecutionRequest.getLocalRepositoryPath() ).flush();
+                } catch ( IOException e ) {
+                    // appended by the next flush of the JVM
+                    if ( MavenEmbedderUtils.debug ) {
+                        System.out.println( "cannot flush the local repository access log: " + e.getMessage() );
+                    }
+                }
+            }
+        } finally {
+            releaseContainer();
         }
+    }
 
-        if ( mavenExecutionRequest.getUserSettingsFile() != null ) {
-            mavenExecutionRequest.setUserSettingsFile( new File( mavenRequest.getUserSettingsFile() ) );
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * The parent and imported poms are read once for the life of the embedder, the next project readings
+     * will see the changes made to them on disk only after this call.
+     * @since 3.16
+     */
+    public synchronized void invalidateCaches() {
+        this.repositoryCache = new DefaultRepositoryCache();
+        this.mavenExecutionRequest.setRepositoryCache( repositoryCache );
+    }
+
+    /**
+     * @return the cache shared by the repository sessions of the embedder
+     * @since 3.16
+     */
+    public RepositoryCache getRepositoryCache() {
+        return repositoryCache;
+    }
+
+    private void releaseContainer() {
+        if ( containerPool != null ) {
+            containerPool.release( plexusContainer );
+        } else {
+            MavenEmbedderUtils.disposePlexusContainer( plexusContainer );
         }
+    }
+
+    protected MavenExecutionRequest buildMavenExecutionRequest(MavenRequest mavenRequest)
+        throws MavenEmbedderException, ComponentLookupException  {
+        return applyMavenRequest( mavenRequest, buildSettingsExecutionRequest() );
+    }
+
+    /**
+     * the part of the execution request coming from the settings of the embedder
+     */
+    private MavenExecutionRequest buildSettingsExecutionRequest()
+        throws MavenEmbedderException, ComponentLookupException {
+        MavenExecutionRequest mavenExecutionRequest = new DefaultMavenExecutionRequest();
 
         try {
             lookup( MavenExecutionRequestPopulator.class ).populateFromSettings( mavenExecutionRequest,
@@ -165,6 +326,21 @@ public class MavenEmbedder
         ArtifactRepository localRepository = getLocalRepository();
         mavenExecutionRequest.setLocalRepository( localRepository );
         mavenExecutionRequest.setLocalRepositoryPath( localRepository.getBasedir() );
+        return mavenExecutionRequest;
+    }
+
+    private MavenExecutionRequest applyMavenRequest( MavenRequest mavenRequest,
+                                                     MavenExecutionRequest mavenExecutionRequest )
+        throws MavenEmbedderException, ComponentLookupException {
+
+        if ( mavenRequest.getGlobalSettingsFile() != null ) {
+            mavenExecutionRequest.setGlobalSettingsFile( new File( mavenRequest.getGlobalSettingsFile() ) );
+        }
+
+        if ( mavenExecutionRequest.getUserSettingsFile() != null ) {
+            mavenExecutionRequest.setUserSettingsFile( new File( mavenRequest.getUserSettingsFile() ) );
+        }
+
         mavenExecutionRequest.setOffline( mavenRequest.isOffline() );
 
         mavenExecutionRequest.setUpdateSnapshots( mavenRequest.isUpdateSnapshots() );
@@ -181,6 +357,38 @@ public class MavenEmbedder
             mavenExecutionRequest.getSystemProperties().putAll( mavenRequest.getSystemProperties() );
         }
         mavenExecutionRequest.getSystemProperties().putAll( getEnvVars() );
+        if ( mavenRequest.getLocalRepositoryIndexFile() != null ) {
+            // read by IndexedLocalRepositoryManager.Factory from the session configuration
+            IndexedLocalRepositoryManager.register( plexusContainer );
+            mavenExecutionRequest.getSystemProperties().put( LocalRepositoryIndex.CONFIG_PROP_INDEX_FILE,
+                                                             mavenRequest.getLocalRepositoryIndexFile() );
+        }
+        if ( mavenRequest.getLocalRepositoryBases() != null && !mavenRequest.getLocalRepositoryBases().isEmpty() ) {
+            // read by LayeredLocalRepositoryManager.Factory from the session configuration
+            LayeredLocalRepositoryManager.register( plexusContainer );
+            mavenExecutionRequest.getSystemProperties().put( LayeredLocalRepositoryManager.CONFIG_PROP_BASES,
+                                                             String.join( ",",
+                                                                          mavenRequest.getLocalRepositoryBases() ) );
+            mavenExecutionRequest.getSystemProperties().put( LayeredLocalRepositoryManager.CONFIG_PROP_LINK,
+                                                             Boolean.toString(
+                                                                 mavenRequest.isLinkLocalRepositoryBases() ) );
+        }
+        if ( mavenRequest.getLocalRepositoryAccessLogFile() != null ) {
+            try {
+                // fails if the log tracks another repository
+                LocalRepositoryAccessLog.open( new File( mavenRequest.getLocalRepositoryAccessLogFile() ),
+                                               mavenExecutionRequest.getLocalRepositoryPath() );
+            } catch ( IOException e ) {
+                throw new MavenEmbedderException( e.getMessage(), e );
+            }
+            // read by AccessTrackingLocalRepositoryManager.Factory from the session configuration
+            AccessTrackingLocalRepositoryManager.register( plexusContainer );
+            mavenExecutionRequest.getSystemProperties().put( LocalRepositoryAccessLog.CONFIG_PROP_ACCESS_LOG,
+                                                             mavenRequest.getLocalRepositoryAccessLogFile() );
+        }
+        if ( mavenRequest.getNamedLockFactory() != null ) {
+            NamedLocks.configure( mavenRequest, plexusContainer, mavenExecutionRequest.getSystemProperties() );
+        }
 
         if ( this.mavenHome != null ) {
             mavenExecutionRequest.getSystemProperties().put( "maven.home", this.mavenHome.getAbsolutePath() );
@@ -209,6 +417,38 @@ public class MavenEmbedder
         if ( mavenRequest.getPom() != null ) {
             mavenExecutionRequest.setPom( new File( mavenRequest.getPom() ) );
         }
+
+        if ( mavenRequest.getBaseDirectory() != null ) {
+            mavenExecutionRequest.setBaseDirectory( new File( mavenRequest.getBaseDirectory() ) );
+        }
+
+        mavenExecutionRequest.setRecursive( mavenRequest.isRecursive() )
+            .setShowErrors( mavenRequest.isShowErrors() )
+            .setNoSnapshotUpdates( mavenRequest.isNoSnapshotUpdates() );
+
+        if ( mavenRequest.getFailureBehavior() != null ) {
+            mavenExecutionRequest.setReactorFailureBehavior( mavenRequest.getFailureBehavior() );
+        }
+
+        if ( mavenRequest.getSelectedProjects() != null ) {
+            mavenExecutionRequest.setSelectedProjects( mavenRequest.getSelectedProjects() );
+        }
+
+        if ( mavenRequest.getResumeFromProject() != null ) {
+            mavenExecutionRequest.setResumeFrom( mavenRequest.getResumeFromProject() );
+        }
+
+        if ( mavenRequest.getMakeBehavior() != null ) {
+            mavenExecutionRequest.setMakeBehavior( mavenRequest.getMakeBehavior() );
+        }
+
+        if ( mavenRequest.getThreadCount() != null ) {
+            int threads = calculateDegreeOfConcurrency( mavenRequest.getThreadCount() );
+            if ( threads > 1 ) {
+                mavenExecutionRequest.setBuilderId( "multithreaded" );
+            }
+            mavenExecutionRequest.setDegreeOfConcurrency( threads );
+        }
         
         if (mavenRequest.getWorkspaceReader() != null) {
             mavenExecutionRequest.setWorkspaceReader( mavenRequest.getWorkspaceReader() );
@@ -224,7 +464,40 @@ public class MavenEmbedder
     
     
     
-    private Properties getEnvVars( ) {
+    /**
+     * same rules as <code>mvn -T</code>: a number of threads or a number of threads per core with a <code>C</code>
+     * suffix
+     */
+    static int calculateDegreeOfConcurrency( String threadCount )
+        throws MavenEmbedderException {
+        String value = threadCount.trim();
+        try {
+            if ( value.endsWith( "C" ) ) {
+                float coreMultiplier = Float.parseFloat( value.substring( 0, value.length() - 1 ) );
+                if ( coreMultiplier > 0 ) {
+                    return Math.max( 1, (int) ( coreMultiplier * Runtime.getRuntime().availableProcessors() ) );
+                }
+            } else {
+                int threads = Integer.parseInt( value );
+                if ( threads > 0 ) {
+                    return threads;
+                }
+            }
+        } catch ( NumberFormatException e ) {
+            throw new MavenEmbedderException( "Invalid threadCount value: '" + threadCount
+                                                  + "'. Supported are int and float values ending with C.", e );
+        }
+        throw new MavenEmbedderException( "Invalid threadCount value: '" + threadCount + "'. Value must be positive." );
+    }
+
+    /**
+     * the environment can't change for the life of the JVM
+     */
+    private static final Properties ENV_VARS = buildEnvVars();
+
+    private static final String ENV_VARS_DIGEST = SettingsCache.digest( ENV_VARS );
+
+    private static Properties buildEnvVars( ) {
         Properties envVars = new Properties();
         boolean caseSensitive = !Os.isFamily( Os.FAMILY_WINDOWS );
         for ( Map.Entry<String, String> entry : System.getenv().entrySet() )
@@ -234,21 +507,78 @@ public class MavenEmbedder
         }
         return envVars;
     }
-    
+
+    private Properties getEnvVars( ) {
+        return ENV_VARS;
+    }
+
+    /**
+     * The settings are built once and shared with the other embedders using the same settings files and properties,
+     * they are built again as soon as one of the settings files changes.
+     * @return a copy of the effective settings
+     */
     public Settings getSettings()
         throws MavenEmbedderException, ComponentLookupException {
+        return getCachedSettings().clone();
+    }
 
-        SettingsBuildingRequest settingsBuildingRequest = new DefaultSettingsBuildingRequest();
-        if ( this.mavenRequest.getGlobalSettingsFile() != null ) {
-            settingsBuildingRequest.setGlobalSettingsFile( new File( this.mavenRequest.getGlobalSettingsFile() ) );
+    /**
+     * @return the shared settings instance, must not be modified
+     */
+    private Settings getCachedSettings()
+        throws MavenEmbedderException, ComponentLookupException {
+        EmbedderEvents.SettingsBuilding event = new EmbedderEvents.SettingsBuilding();
+        event.begin();
+        SettingsCache.Key key = getSettingsKey();
+        SettingsBuilder settingsBuilder = lookup( SettingsBuilder.class );
+        boolean[] built = new boolean[1];
+        Settings settings = SettingsCache.INSTANCE.get( key, () -> {
+            built[0] = true;
+            long start = System.nanoTime();
+            try {
+                return buildSettings( settingsBuilder );
+            } finally {
+                EmbedderStats.getInstance().settingsParses.record( start );
+            }
+        } );
+        if ( built[0] ) {
+            EmbedderStats.getInstance().settingsCache.miss();
         } else {
-            settingsBuildingRequest.setGlobalSettingsFile( SettingsXmlConfigurationProcessor.DEFAULT_GLOBAL_SETTINGS_FILE );
+            EmbedderStats.getInstance().settingsCache.hit();
         }
-        if ( this.mavenRequest.getUserSettingsFile() != null ) {
-            settingsBuildingRequest.setUserSettingsFile( new File( this.mavenRequest.getUserSettingsFile() ) );
-        } else {
-            settingsBuildingRequest.setUserSettingsFile( SettingsXmlConfigurationProcessor.DEFAULT_USER_SETTINGS_FILE );
+        if ( event.shouldCommit() ) {
+            event.globalSettingsFile = getGlobalSettingsFile().getPath();
+            event.userSettingsFile = getUserSettingsFile().getPath();
+            event.cacheHit = !built[0];
+            event.commit();
         }
+        return settings;
+    }
+
+    private SettingsCache.Key getSettingsKey() {
+        return propertiesDigest.newKey( getGlobalSettingsFile(), getUserSettingsFile(),
+                                        this.mavenRequest.getUserProperties(), System.getProperties(),
+                                        this.mavenRequest.getSystemProperties() );
+    }
+
+    private File getGlobalSettingsFile() {
+        return this.mavenRequest.getGlobalSettingsFile() != null
+            ? new File( this.mavenRequest.getGlobalSettingsFile() )
+            : SettingsXmlConfigurationProcessor.DEFAULT_GLOBAL_SETTINGS_FILE;
+    }
+
+    private File getUserSettingsFile() {
+        return this.mavenRequest.getUserSettingsFile() != null
+            ? new File( this.mavenRequest.getUserSettingsFile() )
+            : SettingsXmlConfigurationProcessor.DEFAULT_USER_SETTINGS_FILE;
+    }
+
+    private Settings buildSettings( SettingsBuilder settingsBuilder )
+        throws MavenEmbedderException {
+
+        SettingsBuildingRequest settingsBuildingRequest = new DefaultSettingsBuildingRequest();
+        settingsBuildingRequest.setGlobalSettingsFile( getGlobalSettingsFile() );
+        settingsBuildingRequest.setUserSettingsFile( getUserSettingsFile() );
 
         settingsBuildingRequest.setUserProperties( this.mavenRequest.getUserProperties() );
         settingsBuildingRequest.getSystemProperties().putAll( System.getProperties() );
@@ -256,7 +586,7 @@ public class MavenEmbedder
         settingsBuildingRequest.getSystemProperties().putAll( getEnvVars() );
         
         try {
-            return lookup( SettingsBuilder.class ).build( settingsBuildingRequest ).getEffectiveSettings();
+            return settingsBuilder.build( settingsBuildingRequest ).getEffectiveSettings();
         } catch ( SettingsBuildingException e ) {
             throw new MavenEmbedderException( e.getMessage(), e );
         }
@@ -279,7 +609,7 @@ public class MavenEmbedder
         String path = null;
 
         try {
-            Settings settings = getSettings();
+            Settings settings = getCachedSettings();
             path = settings.getLocalRepository();
         } catch ( MavenEmbedderException | ComponentLookupException e ) {
             // ignore
@@ -300,22 +630,91 @@ public class MavenEmbedder
     // ----------------------------------------------------------------------
 
     /**
-     * @deprecated not sure if use but definitely doesn't work
+     * the readers and writers hold no state between two calls but are not thread safe
+     */
+    private static final ThreadLocal<MavenXpp3Reader> MODEL_READER = ThreadLocal.withInitial( MavenXpp3Reader::new );
+
+    private static final ThreadLocal<MavenXpp3Writer> MODEL_WRITER = ThreadLocal.withInitial( MavenXpp3Writer::new );
+
+    /**
+     * Read the raw model of a pom (no inheritance, no interpolation), the encoding is detected from the xml
+     * declaration.
      */
-    @SuppressFBWarnings({"UWF_UNWRITTEN_FIELD","NP_UNWRITTEN_FIELD","DM_DEFAULT_ENCODING","OBL_UNSATISFIED_OBLIGATION"})
     public Model readModel( File model )
         throws XmlPullParserException, FileNotFoundException, IOException {
-        return modelReader.read( new FileReader( model ) );
+        if ( !model.isFile() ) {
+            throw new FileNotFoundException( model.getPath() );
+        }
+        return readModel( model.toPath() );
+    }
+
+    /**
+     * @see #readModel(File)
+     * @since 3.16
+     */
+    public Model readModel( Path model )
+        throws XmlPullParserException, IOException {
+        try (InputStream inputStream = new BufferedInputStream( Files.newInputStream( model ) )) {
+            return readModel( inputStream );
+        }
+    }
+
+    /**
+     * @param model not closed by this method
+     * @see #readModel(File)
+     * @since 3.16
+     */
+    public Model readModel( InputStream model )
+        throws XmlPullParserException, IOException {
+        return MODEL_READER.get().read( model );
+    }
+
+    /**
+     * @param model read from its position to its limit, the position is not changed
+     * @see #readModel(File)
+     * @since 3.16
+     */
+    public Model readModel( ByteBuffer model )
+        throws XmlPullParserException, IOException {
+        if ( model.hasArray() ) {
+            return readModel( new ByteArrayInputStream( model.array(), model.arrayOffset() + model.position(),
+                                                        model.remaining() ) );
+        }
+        byte[] bytes = new byte[model.remaining()];
+        model.duplicate().get( bytes );
+        return readModel( new ByteArrayInputStream( bytes ) );
     }
 
     /**
-     * @deprecated not sure if use but definitely doesn't work
+     * @param writer not closed by this method
      */
-    @SuppressFBWarnings({"UWF_UNWRITTEN_FIELD","NP_UNWRITTEN_FIELD"})
     public void writeModel( Writer writer, Model model )
         throws IOException
     {
-        modelWriter.write( writer, model );
+        MODEL_WRITER.get().write( writer, model );
+    }
+
+    /**
+     * Write the model with its {@link Model#getModelEncoding() encoding}.
+     * @param outputStream not closed by this method
+     * @since 3.16
+     */
+    public void writeModel( OutputStream outputStream, Model model )
+        throws IOException
+    {
+        MODEL_WRITER.get().write( outputStream, model );
+    }
+
+    /**
+     * @see #writeModel(OutputStream, Model)
+     * @since 3.16
+     */
+    public void writeModel( Path path, Model model )
+        throws IOException
+    {
+        try (OutputStream outputStream = new BufferedOutputStream( Files.newOutputStream( path ) )) {
+            writeModel( outputStream, model );
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -332,73 +731,507 @@ public class MavenEmbedder
 
     public List<MavenProject> readProjects( File mavenProject, boolean recursive )
         throws ProjectBuildingException, MavenEmbedderException {
-        ClassLoader originalCl = Thread.currentThread().getContextClassLoader();
-        try {
-            List<ProjectBuildingResult> results = buildProjects( mavenProject, recursive );
-            List<MavenProject> projects = new ArrayList<>(results.size());
-            for (ProjectBuildingResult result : results) {
-                projects.add( result.getProject() );
-            }
-            return projects;
-        } finally {
-            Thread.currentThread().setContextClassLoader( originalCl );
+        List<ProjectBuildingResult> results = buildProjects( mavenProject, recursive );
+        List<MavenProject> projects = new ArrayList<>(results.size());
+        for (ProjectBuildingResult result : results) {
+            projects.add( result.getProject() );
         }
-    
+        return projects;
     }   
     
+    /**
+     * Can be called concurrently from several threads, each call works on its own copy of the project building
+     * request.
+     */
     public List<ProjectBuildingResult> buildProjects( File mavenProject, boolean recursive )
         throws ProjectBuildingException, MavenEmbedderException {
-        ClassLoader originalCl = Thread.currentThread().getContextClassLoader();
         try {
-            Thread.currentThread().setContextClassLoader( this.plexusContainer.getContainerRealm() );
             ProjectBuilder projectBuilder = lookup( ProjectBuilder.class );
-            ProjectBuildingRequest projectBuildingRequest = this.mavenExecutionRequest.getProjectBuildingRequest();
-                  
-            projectBuildingRequest.setValidationLevel( this.mavenRequest.getValidationLevel() );
-            
-            RepositorySystemSession repositorySystemSession = buildRepositorySystemSession();
-           
-            projectBuildingRequest.setRepositorySession( repositorySystemSession );
-                        
-            projectBuildingRequest.setProcessPlugins( this.mavenRequest.isProcessPlugins() );
-            
-            projectBuildingRequest.setResolveDependencies( this.mavenRequest.isResolveDependencies() );
-    
-            return projectBuilder.build( Collections.singletonList( mavenProject), recursive, projectBuildingRequest );
-
+            ProjectBuildingRequest projectBuildingRequest = newProjectBuildingRequest( buildRepositorySystemSession() );
+            return inContainer( mavenProject, recursive,
+                                () -> projectBuilder.build( Collections.singletonList( mavenProject ), recursive,
+                                                            projectBuildingRequest ) );
         } catch(ComponentLookupException e) {
             throw new MavenEmbedderException(e.getMessage(), e);
-        } finally {
-            Thread.currentThread().setContextClassLoader( originalCl );
         }
+    }
     
-    }   
-    
-    private RepositorySystemSession buildRepositorySystemSession() throws ComponentLookupException {
-        DefaultMaven defaultMaven = (DefaultMaven) plexusContainer.lookup( Maven.class );
-        return defaultMaven.newRepositorySession( mavenExecutionRequest );
+    /**
+     * Same as <code>readProject( pom ).getModel()</code>, but if {@link MavenRequest#getEffectiveModelCacheDirectory()}
+     * is set the model is kept on disk and the next calls (from this JVM or another one) return it without building
+     * the project, as long as the pom, its parents, its imported poms, the profiles, the properties, the environment
+     * and the settings don't change. Models with a profile activated by a file are not kept.
+     * @since 3.16
+     */
+    public Model readEffectiveModel( File pom )
+        throws ProjectBuildingException, MavenEmbedderException {
+        if ( effectiveModelCache == null ) {
+            return readProject( pom ).getModel();
+        }
+        EmbedderEvents.EffectiveModelReading event = new EmbedderEvents.EffectiveModelReading();
+        event.begin();
+        String key;
+        try {
+            key = EffectiveModelCache.newKey( pom, getEffectiveModelContext() );
+        } catch ( IOException e ) {
+            // let the project builder report it
+            return readProject( pom ).getModel();
+        }
+        Model model = effectiveModelCache.get( key );
+        if ( model != null ) {
+            EmbedderStats.getInstance().effectiveModelCache.hit();
+        } else {
+            EmbedderStats.getInstance().effectiveModelCache.miss();
+        }
+        if ( event.shouldCommit() ) {
+            event.pom = pom.getAbsolutePath();
+            event.cacheHit = model != null;
+            event.commit();
+        }
+        if ( model != null ) {
+            return model;
+        }
+
+        Set<File> inputs = Collections.synchronizedSet( new LinkedHashSet<>() );
+        ProjectBuilder projectBuilder;
+        DefaultRepositorySystemSession repositorySystemSession;
+        try {
+            projectBuilder = lookup( ProjectBuilder.class );
+            repositorySystemSession = new DefaultRepositorySystemSession( buildRepositorySystemSession() );
+        } catch ( ComponentLookupException e ) {
+            throw new MavenEmbedderException( e.getMessage(), e );
+        }
+        // models coming from the shared cache would not be seen as inputs
+        repositorySystemSession.setCache( new DefaultRepositoryCache() );
+        repositorySystemSession.setRepositoryListener(
+            new ChainedRepositoryListener( repositorySystemSession.getRepositoryListener(), new AbstractRepositoryListener() {
+                @Override
+                public void artifactResolved( RepositoryEvent event ) {
+                    if ( event.getFile() != null && "pom".equals( event.getArtifact().getExtension() ) ) {
+                        inputs.add( event.getFile() );
+                    }
+                }
+            } ) );
+
+        MavenProject project;
+        try {
+            project = buildProject( projectBuilder, pom, newProjectBuildingRequest( repositorySystemSession ) ).getProject();
+        } catch ( CompletionException e ) {
+            throw (ProjectBuildingException) e.getCause();
+        }
+        for ( MavenProject parent = project.getParent(); parent != null; parent = parent.getParent() ) {
+            if ( parent.getFile() != null ) {
+                inputs.add( parent.getFile() );
+            }
+        }
+        // whether an activation file exists is not an input the cache can check
+        if ( !usesFileActivation( project ) ) {
+            effectiveModelCache.put( key, inputs, project.getModel() );
+        }
+        return project.getModel();
     }
 
-    public List<MavenProject> collectProjects( File basedir, String[] includes, String[] excludes )
-        throws MojoExecutionException, MavenEmbedderException {
-        List<MavenProject> projects = new ArrayList<>();
+    private boolean usesFileActivation( MavenProject project )
+        throws MavenEmbedderException {
+        for ( MavenProject current = project; current != null; current = current.getParent() ) {
+            for ( Profile profile : current.getModel().getProfiles() ) {
+                if ( profile.getActivation() != null && profile.getActivation().getFile() != null ) {
+                    return true;
+                }
+            }
+        }
+        try {
+            for ( org.apache.maven.settings.Profile profile : getCachedSettings().getProfiles() ) {
+                if ( profile.getActivation() != null && profile.getActivation().getFile() != null ) {
+                    return true;
+                }
+            }
+        } catch ( ComponentLookupException e ) {
+            throw new MavenEmbedderException( e.getMessage(), e );
+        }
+        return false;
+    }
 
-        List<File> poms = getPomFiles( basedir, includes, excludes );
+    /**
+     * everything apart from the pom which changes the effective model
+     */
+    private String getEffectiveModelContext()
+        throws MavenEmbedderException {
+        StringBuilder context = new StringBuilder();
+        context.append( "maven=" ).append( DefaultMaven.class.getPackage().getImplementationVersion() );
+        context.append( "\nvalidation=" ).append( this.mavenRequest.getValidationLevel() );
+        context.append( "\nprocessPlugins=" ).append( this.mavenRequest.isProcessPlugins() );
+        context.append( "\nprofiles=" ).append( this.mavenRequest.getProfiles() );
+        context.append( "\nproperties=" ).append( getSettingsKey().getPropertiesDigest() );
+        context.append( "\nenv=" ).append( ENV_VARS_DIGEST );
+        try {
+            context.append( "\nsettings=" ).append( getSettingsDigest() );
+        } catch ( ComponentLookupException e ) {
+            throw new MavenEmbedderException( e.getMessage(), e );
+        }
+        return context.toString();
+    }
 
-        for ( File pom : poms ) {
+    private Settings digestedSettings;
+
+    private String settingsDigest;
+
+    /**
+     * digest of the effective settings, computed again only when the shared settings are rebuilt
+     */
+    private synchronized String getSettingsDigest()
+        throws MavenEmbedderException, ComponentLookupException {
+        Settings settings = getCachedSettings();
+        if ( settings != digestedSettings ) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
             try {
-                MavenProject p = readProject( pom );
+                new SettingsXpp3Writer().write( out, settings );
+            } catch ( IOException e ) {
+                throw new MavenEmbedderException( e.getMessage(), e );
+            }
+            settingsDigest = SettingsCache.toHex( SettingsCache.newDigest().digest( out.toByteArray() ) );
+            digestedSettings = settings;
+        }
+        return settingsDigest;
+    }
 
-                projects.add( p );
+    /**
+     * {@link #readProject(File)} on the {@link MavenRequest#getAsyncExecutor() async executor}.
+     * Cancelling the returned future or completing it with a timeout ({@link CompletableFuture#orTimeout})
+     * interrupts the reading if it has started, or prevents it from starting.
+     * @since 3.16
+     */
+    public CompletableFuture<MavenProject> readProjectAsync( File mavenProject ) {
+        return submit( () -> readProject( mavenProject ) );
+    }
 
-            } catch ( ProjectBuildingException e ) {
-                throw new MojoExecutionException( "Error loading " + pom, e );
+    /**
+     * {@link #buildProjects(File, boolean)} on the {@link MavenRequest#getAsyncExecutor() async executor}, see
+     * {@link #readProjectAsync(File)} for the cancellation.
+     * @since 3.16
+     */
+    public CompletableFuture<List<ProjectBuildingResult>> buildProjectsAsync( File mavenProject, boolean recursive ) {
+        return submit( () -> buildProjects( mavenProject, recursive ) );
+    }
+
+    /**
+     * {@link #buildProjects(List)} on the {@link MavenRequest#getAsyncExecutor() async executor}, see
+     * {@link #readProjectAsync(File)} for the cancellation.
+     * @since 3.16
+     */
+    public CompletableFuture<List<ProjectBuildingResult>> buildProjectsAsync( List<File> poms ) {
+        return submit( () -> buildProjects( poms ) );
+    }
+
+    private <T> CompletableFuture<T> submit( Callable<T> callable ) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        FutureTask<T> task = new FutureTask<T>( callable ) {
+            @Override
+            protected void done() {
+                if ( isCancelled() ) {
+                    future.cancel( false );
+                    return;
+                }
+                try {
+                    future.complete( get() );
+                } catch ( ExecutionException e ) {
+                    future.completeExceptionally( e.getCause() );
+                } catch ( InterruptedException e ) {
+                    // cannot happen, the task is done
+                    future.completeExceptionally( e );
+                }
+            }
+        };
+        // cancel(), orTimeout() or completeExceptionally() from the caller stop the work
+        future.whenComplete( ( result, failure ) -> {
+            if ( failure != null ) {
+                task.cancel( true );
             }
+        } );
+        try {
+            getAsyncExecutor().execute( task );
+        } catch ( RejectedExecutionException e ) {
+            future.completeExceptionally( e );
+        }
+        return future;
+    }
+
+    private synchronized Executor getAsyncExecutor() {
+        if ( this.mavenRequest.getAsyncExecutor() != null ) {
+            return this.mavenRequest.getAsyncExecutor();
+        }
+        if ( isClosed() ) {
+            throw new RejectedExecutionException( "embedder closed" );
+        }
+        if ( defaultAsyncExecutor == null ) {
+            defaultAsyncExecutor = newDefaultAsyncExecutor();
         }
+        return defaultAsyncExecutor;
+    }
+
+    /**
+     * virtual threads on java 21+, daemon threads otherwise
+     */
+    private static ExecutorService newDefaultAsyncExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        } catch ( ReflectiveOperationException e ) {
+            // before java 21
+        }
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newCachedThreadPool( runnable -> {
+            Thread thread = new Thread( runnable, "maven-embedder-async-" + threads.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
 
+    /**
+     * Read each pom on its own (modules are not followed), see {@link #buildProjects(List)}.
+     * @return the projects in the order of <code>poms</code>
+     * @since 3.16
+     */
+    public List<MavenProject> readProjects( List<File> poms )
+        throws ProjectBuildingException, MavenEmbedderException {
+        List<ProjectBuildingResult> results = buildProjects( poms );
+        List<MavenProject> projects = new ArrayList<>( results.size() );
+        for ( ProjectBuildingResult result : results ) {
+            projects.add( result.getProject() );
+        }
         return projects;
     }
 
+    /**
+     * Build each pom on its own (modules are not followed). All the poms share the same repository session so
+     * a parent or an imported pom is only read once. If {@link MavenRequest#getProjectBuildingExecutor()} is set
+     * the poms are built concurrently on it.
+     * @return the results in the order of <code>poms</code>
+     * @throws ProjectBuildingException once all the poms have been built if some of them failed, it contains
+     *                                  a result for each pom
+     * @since 3.16
+     */
+    public List<ProjectBuildingResult> buildProjects( List<File> poms )
+        throws ProjectBuildingException, MavenEmbedderException {
+        ProjectBuilder projectBuilder;
+        RepositorySystemSession repositorySystemSession;
+        try {
+            projectBuilder = lookup( ProjectBuilder.class );
+            repositorySystemSession = buildRepositorySystemSession();
+        } catch ( ComponentLookupException e ) {
+            throw new MavenEmbedderException( e.getMessage(), e );
+        }
+
+        Executor executor = this.mavenRequest.getProjectBuildingExecutor();
+        if ( executor == null ) {
+            executor = Runnable::run;
+        }
+
+        List<CompletableFuture<ProjectBuildingResult>> futures = new ArrayList<>( poms.size() );
+        for ( File pom : poms ) {
+            // one request per pom, the builder modifies it
+            ProjectBuildingRequest projectBuildingRequest = newProjectBuildingRequest( repositorySystemSession );
+            futures.add( CompletableFuture.supplyAsync( () -> buildProject( projectBuilder, pom, projectBuildingRequest ),
+                                                        executor ) );
+        }
+
+        List<ProjectBuildingResult> results = new ArrayList<>( poms.size() );
+        List<Throwable> failures = new ArrayList<>();
+        for ( int i = 0; i < poms.size(); i++ ) {
+            try {
+                results.add( futures.get( i ).join() );
+            } catch ( CompletionException e ) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                failures.add( cause );
+                results.add( toFailedResult( poms.get( i ), cause ) );
+            }
+        }
+
+        if ( !failures.isEmpty() ) {
+            ProjectBuildingException e = new ProjectBuildingException( results );
+            for ( Throwable failure : failures ) {
+                e.addSuppressed( failure );
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    private ProjectBuildingRequest newProjectBuildingRequest( RepositorySystemSession repositorySystemSession ) {
+        ProjectBuildingRequest projectBuildingRequest = new DefaultProjectBuildingRequest( this.projectBuildingRequest );
+        projectBuildingRequest.setValidationLevel( this.mavenRequest.getValidationLevel() );
+        projectBuildingRequest.setRepositorySession( repositorySystemSession );
+        projectBuildingRequest.setProcessPlugins( this.mavenRequest.isProcessPlugins() );
+        projectBuildingRequest.setResolveDependencies( this.mavenRequest.isResolveDependencies() );
+        return projectBuildingRequest;
+    }
+
+    private ProjectBuildingResult buildProject( ProjectBuilder projectBuilder, File pom,
+                                                ProjectBuildingRequest projectBuildingRequest ) {
+        try {
+            return inContainer( pom, false,
+                                () -> Collections.singletonList( projectBuilder.build( pom, projectBuildingRequest ) ) )
+                .get( 0 );
+        } catch ( ProjectBuildingException e ) {
+            throw new CompletionException( e );
+        }
+    }
+
+    private interface ProjectBuilding {
+        List<ProjectBuildingResult> build() throws ProjectBuildingException;
+    }
+
+    /**
+     * Run a build on the current thread with the container realm as context classloader and the session of this
+     * embedder in {@link LegacySupport} if the thread has none. LegacySupport clears the session it replaces for
+     * all the threads sharing it, so a session set by somebody else is left alone.
+     */
+    private List<ProjectBuildingResult> inContainer( File pom, boolean recursive, ProjectBuilding building )
+        throws ProjectBuildingException {
+        EmbedderEvents.ProjectBuilding event = new EmbedderEvents.ProjectBuilding();
+        event.begin();
+        long start = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        ClassLoader originalCl = thread.getContextClassLoader();
+        boolean setSession = legacySupport.getSession() == null;
+        List<ProjectBuildingResult> results = null;
+        try {
+            thread.setContextClassLoader( this.plexusContainer.getContainerRealm() );
+            if ( setSession ) {
+                legacySupport.setSession( mavenSession );
+            }
+            results = building.build();
+            return results;
+        } finally {
+            if ( setSession ) {
+                legacySupport.setSession( null );
+            }
+            thread.setContextClassLoader( originalCl );
+            EmbedderStats.getInstance().projectBuilds.record( start );
+            if ( event.shouldCommit() ) {
+                event.pom = pom.getAbsolutePath();
+                event.recursive = recursive;
+                event.resolveDependencies = this.mavenRequest.isResolveDependencies();
+                event.success = results != null;
+                if ( results != null ) {
+                    event.projectCount = results.size();
+                    for ( ProjectBuildingResult result : results ) {
+                        if ( result.getDependencyResolutionResult() != null ) {
+                            event.dependencyCount += result.getDependencyResolutionResult().getResolvedDependencies().size();
+                        }
+                    }
+                }
+                event.commit();
+            }
+        }
+    }
+
+    private static ProjectBuildingResult toFailedResult( File pom, Throwable failure ) {
+        if ( failure instanceof ProjectBuildingException ) {
+            List<ProjectBuildingResult> results = ( (ProjectBuildingException) failure ).getResults();
+            if ( results != null && results.size() == 1 ) {
+                return results.get( 0 );
+            }
+        }
+        List<ModelProblem> problems;
+        if ( failure.getCause() instanceof ModelBuildingException ) {
+            problems = ( (ModelBuildingException) failure.getCause() ).getProblems();
+        } else {
+            Exception exception = failure instanceof Exception ? (Exception) failure : new Exception( failure );
+            problems = Collections.singletonList(
+                new DefaultModelProblem( failure.getMessage(), ModelProblem.Severity.FATAL, null,
+                                         pom.getAbsolutePath(), -1, -1, null, exception ) );
+        }
+        String projectId = failure instanceof ProjectBuildingException
+            ? ( (ProjectBuildingException) failure ).getProjectId() : "";
+        return new FailedProjectBuildingResult( projectId, pom, problems );
+    }
+
+    /**
+     * result of a pom which failed to build, see {@link #buildProjects(List)}
+     */
+    private static final class FailedProjectBuildingResult
+        implements ProjectBuildingResult
+    {
+        private final String projectId;
+
+        private final File pomFile;
+
+        private final List<ModelProblem> problems;
+
+        FailedProjectBuildingResult( String projectId, File pomFile, List<ModelProblem> problems ) {
+            this.projectId = projectId == null ? "" : projectId;
+            this.pomFile = pomFile;
+            this.problems = problems;
+        }
+
+        @Override
+        public String getProjectId() {
+            return projectId;
+        }
+
+        @Override
+        public File getPomFile() {
+            return pomFile;
+        }
+
+        @Override
+        public MavenProject getProject() {
+            return null;
+        }
+
+        @Override
+        public List<ModelProblem> getProblems() {
+            return problems;
+        }
+
+        @Override
+        public DependencyResolutionResult getDependencyResolutionResult() {
+            return null;
+        }
+    }
+
+    RepositorySystemSession buildRepositorySystemSession() throws ComponentLookupException {
+        EmbedderEvents.RepositorySessionCreation event = new EmbedderEvents.RepositorySessionCreation();
+        event.begin();
+        DefaultMaven defaultMaven = (DefaultMaven) plexusContainer.lookup( Maven.class );
+        RepositorySystemSession repositorySystemSession = defaultMaven.newRepositorySession( mavenExecutionRequest );
+        if ( event.shouldCommit() ) {
+            event.localRepository = repositorySystemSession.getLocalRepository().getBasedir().getAbsolutePath();
+            event.offline = repositorySystemSession.isOffline();
+            event.commit();
+        }
+        return repositorySystemSession;
+    }
+
+    /**
+     * List the coordinates and modules of a pom and of its modules, recursively, without building them: no
+     * inheritance apart from the parent groupId and version, no interpolation, no profiles.
+     * @param root a pom or a directory containing a <code>pom.xml</code>
+     * @return the root project followed by its modules, depth first
+     * @since 3.16
+     */
+    public List<ScannedProject> scanProjects( File root )
+        throws MavenEmbedderException {
+        return ProjectScanner.scan( root );
+    }
+
+    public List<MavenProject> collectProjects( File basedir, String[] includes, String[] excludes )
+        throws MojoExecutionException, MavenEmbedderException {
+        List<File> poms = getPomFiles( basedir, includes, excludes );
+
+        try {
+            return readProjects( poms );
+        } catch ( ProjectBuildingException e ) {
+            List<File> failed = new ArrayList<>();
+            for ( ProjectBuildingResult result : e.getResults() ) {
+                if ( result.getProject() == null ) {
+                    failed.add( result.getPomFile() );
+                }
+            }
+            throw new MojoExecutionException( "Error loading " + failed, e );
+        }
+    }
+
     // ----------------------------------------------------------------------
     // Artifacts
     // ----------------------------------------------------------------------
@@ -426,22 +1259,126 @@ public class MavenEmbedder
         }
     }
 
+    /**
+     * Resolve an artifact and set its file, see {@link #resolve(Collection, List)}.
+     * @param remoteRepositories the repositories of the settings if <code>null</code>
+     * @param localRepository the local repository of the embedder if <code>null</code>
+     */
     public void resolve( Artifact artifact, List remoteRepositories, ArtifactRepository localRepository )
         throws ArtifactResolutionException, ArtifactNotFoundException {
-        // FIXME ?
+        @SuppressWarnings( "unchecked" )
+        List<ArtifactRepository> repositories = remoteRepositories;
+        ResolvedArtifact result;
+        try {
+            result = resolve( Collections.singletonList( artifact ), repositories, localRepository ).get( 0 );
+        } catch ( MavenEmbedderException e ) {
+            throw new ArtifactResolutionException( e.getMessage(), artifact, repositories, e );
+        }
+        if ( result.isResolved() ) {
+            return;
+        }
+        Exception cause = result.getExceptions().isEmpty() ? null : result.getExceptions().get( 0 );
+        if ( result.getExceptions().stream()
+            .allMatch( e -> e instanceof org.eclipse.aether.transfer.ArtifactNotFoundException ) ) {
+            throw new ArtifactNotFoundException( cause == null ? "Could not find " + artifact : cause.getMessage(),
+                                                 artifact );
+        }
+        throw new ArtifactResolutionException( cause.getMessage(), artifact, repositories, cause );
+    }
+
+    /**
+     * Resolve the artifacts in a single resolver call: the downloads from a repository run in parallel, on
+     * {@link MavenRequest#getResolveThreads()} threads, and an artifact which cannot be resolved doesn't stop the
+     * others. The file of each resolved artifact is set.
+     * @param artifacts created with {@link #createArtifact} or {@link #createArtifactWithClassifier}
+     * @param remoteRepositories the repositories of the settings if <code>null</code>
+     * @return a result per artifact, in the same order
+     * @since 3.16
+     */
+    public List<ResolvedArtifact> resolve( Collection<Artifact> artifacts, List<ArtifactRepository> remoteRepositories )
+        throws MavenEmbedderException {
+        return resolve( artifacts, remoteRepositories, null );
+    }
+
+    private List<ResolvedArtifact> resolve( Collection<Artifact> artifacts, List<ArtifactRepository> remoteRepositories,
+                                            ArtifactRepository localRepository )
+        throws MavenEmbedderException {
+        org.eclipse.aether.RepositorySystem repositorySystem;
+        DefaultRepositorySystemSession repositorySystemSession;
+        try {
+            repositorySystem = lookup( org.eclipse.aether.RepositorySystem.class );
+            repositorySystemSession = new DefaultRepositorySystemSession( buildRepositorySystemSession() );
+        } catch ( ComponentLookupException e ) {
+            throw new MavenEmbedderException( e.getMessage(), e );
+        }
+        if ( mavenRequest.getResolveThreads() > 0 ) {
+            repositorySystemSession.setConfigProperty( "aether.connector.basic.threads",
+                                                       mavenRequest.getResolveThreads() );
+        }
+        if ( localRepository != null ) {
+            repositorySystemSession.setLocalRepositoryManager( repositorySystem.newLocalRepositoryManager(
+                repositorySystemSession, new LocalRepository( localRepository.getBasedir() ) ) );
+        }
+        // mirrors, proxies and authentications of the settings
+        List<RemoteRepository> repositories = repositorySystem.newResolutionRepositories(
+            repositorySystemSession, RepositoryUtils.toRepos( remoteRepositories != null ? remoteRepositories
+                                                                  : mavenExecutionRequest.getRemoteRepositories() ) );
+
+        List<ArtifactRequest> requests = new ArrayList<>( artifacts.size() );
+        for ( Artifact artifact : artifacts ) {
+            requests.add( new ArtifactRequest( RepositoryUtils.toArtifact( artifact ), repositories, null ) );
+        }
+        List<ArtifactResult> results;
+        try {
+            results = repositorySystem.resolveArtifacts( repositorySystemSession, requests );
+        } catch ( org.eclipse.aether.resolution.ArtifactResolutionException e ) {
+            // the results of all the requests, resolved or not
+            results = e.getResults();
+        }
+
+        List<ResolvedArtifact> resolvedArtifacts = new ArrayList<>( results.size() );
+        int i = 0;
+        for ( Artifact artifact : artifacts ) {
+            ArtifactResult result = results.get( i++ );
+            if ( result.isResolved() ) {
+                artifact.setFile( result.getArtifact().getFile() );
+                artifact.setResolved( true );
+            }
+            resolvedArtifacts.add( new ResolvedArtifact( artifact, result.isResolved(),
+                                                         result.getRepository() == null ? null
+                                                             : result.getRepository().getId(),
+                                                         result.getExceptions() ) );
+        }
+        return resolvedArtifacts;
     }
 
     // ----------------------------------------------------------------------
     // Execution of phases/goals
     // ----------------------------------------------------------------------
 
+    /**
+     * In {@link MavenRequest#isSessionReuse() session reuse mode} the executions of this embedder run one at a time
+     * and keep the settings part of the request, the plugin and extension realms and the model cache from an
+     * execution to the next one, see {@link #executeReusingSession(Maven, MavenRequest)}.
+     */
     public MavenExecutionResult execute( MavenRequest mavenRequest )
         throws MavenEmbedderException {
+        EmbedderEvents.Execution event = new EmbedderEvents.Execution();
+        event.begin();
+        long start = System.nanoTime();
         ClassLoader original = Thread.currentThread().getContextClassLoader();
+        MavenExecutionResult result = null;
         try {
             Maven maven = lookup( Maven.class );
             Thread.currentThread().setContextClassLoader( this.plexusContainer.getContainerRealm() );
-            return maven.execute( buildMavenExecutionRequest( mavenRequest ) );
+            if ( this.mavenRequest.isSessionReuse() ) {
+                synchronized ( executionLock ) {
+                    result = executeReusingSession( maven, mavenRequest );
+                }
+            } else {
+                result = execute( maven, buildMavenExecutionRequest( mavenRequest ), mavenRequest );
+            }
+            return result;
         }
         catch ( MavenEmbedderException | ComponentLookupException e )
         {
@@ -449,7 +1386,102 @@ public class MavenEmbedder
         }
         finally {
             Thread.currentThread().setContextClassLoader( original );
+            EmbedderStats.getInstance().executions.record( start );
+            if ( event.shouldCommit() ) {
+                event.pom = mavenRequest.getPom();
+                event.goals = String.valueOf( mavenRequest.getGoals() );
+                event.sessionReuse = this.mavenRequest.isSessionReuse();
+                event.success = result != null && !result.hasExceptions();
+                if ( result != null && result.getTopologicallySortedProjects() != null ) {
+                    event.projectCount = result.getTopologicallySortedProjects().size();
+                }
+                event.commit();
+            }
+        }
+    }
+
+    private final Object executionLock = new Object();
+
+    /**
+     * settings the {@link #executionTemplate} has been built with
+     */
+    private Settings templateSettings;
+
+    private MavenExecutionRequest executionTemplate;
+
+    /**
+     * mtime of the poms (and of their parents) of the last execution
+     */
+    private Map<File, Long> executedPoms = Collections.emptyMap();
+
+    /**
+     * Only what has changed since the previous execution is built again:
+     * <ul>
+     * <li>settings changed: the settings part of the request is rebuilt and the plugin and extension realms, which
+     * depend on the repositories, are flushed</li>
+     * <li>a pom or a parent of the previous execution changed: the model cache and the project realms are
+     * flushed</li>
+     * </ul>
+     * The realms of a container from an {@link EmbedderContainerPool} are never flushed: the builds of the other
+     * embedders leasing it may be using them. The realm caches key their entries by repositories and artifacts, the
+     * stale entries are just not hit anymore and go away with the container.
+     */
+    private MavenExecutionResult executeReusingSession( Maven maven, MavenRequest mavenRequest )
+        throws MavenEmbedderException, ComponentLookupException {
+        Settings settings = getCachedSettings();
+        if ( settings != templateSettings ) {
+            if ( templateSettings != null && containerPool == null ) {
+                lookup( PluginRealmCache.class ).flush();
+                lookup( ExtensionRealmCache.class ).flush();
+                lookup( PluginArtifactsCache.class ).flush();
+                lookup( PluginDescriptorCache.class ).flush();
+            }
+            executionTemplate = buildSettingsExecutionRequest();
+            templateSettings = settings;
+        }
+
+        for ( Map.Entry<File, Long> pom : executedPoms.entrySet() ) {
+            if ( pom.getKey().lastModified() != pom.getValue() ) {
+                invalidateCaches();
+                if ( containerPool == null ) {
+                    lookup( ProjectRealmCache.class ).flush();
+                }
+                break;
+            }
+        }
+
+        MavenExecutionRequest mavenExecutionRequest =
+            applyMavenRequest( mavenRequest, DefaultMavenExecutionRequest.copy( executionTemplate ) );
+        mavenExecutionRequest.setRepositoryCache( repositoryCache );
+        MavenExecutionResult result = execute( maven, mavenExecutionRequest, mavenRequest );
+
+        Map<File, Long> poms = new HashMap<>();
+        if ( result.getTopologicallySortedProjects() != null ) {
+            for ( MavenProject project : result.getTopologicallySortedProjects() ) {
+                for ( MavenProject p = project; p != null; p = p.getParent() ) {
+                    if ( p.getFile() != null ) {
+                        poms.put( p.getFile(), p.getFile().lastModified() );
+                    }
+                }
+            }
+        }
+        executedPoms = poms;
+        return result;
+    }
+
+    /**
+     * @return a {@link TimedMavenExecutionResult} if {@link MavenRequest#isCollectExecutionTimings()}
+     */
+    private static MavenExecutionResult execute( Maven maven, MavenExecutionRequest mavenExecutionRequest,
+                                                 MavenRequest mavenRequest ) {
+        if ( !mavenRequest.isCollectExecutionTimings() ) {
+            return maven.execute( mavenExecutionRequest );
         }
+        ExecutionTimingListener timingListener =
+            new ExecutionTimingListener( mavenExecutionRequest.getExecutionListener() );
+        mavenExecutionRequest.setExecutionListener( timingListener );
+        MavenExecutionResult result = maven.execute( mavenExecutionRequest );
+        return new TimedMavenExecutionResult( result, timingListener.getTimings() );
     }
     // ----------------------------------------------------------------------
     // Local Repository
@@ -37,10 +37,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 
 /**
@@ -70,36 +71,32 @@ public class MavenEmbedderUtils
     @SuppressFBWarnings("DP_CREATE_CLASSLOADER_INSIDE_DO_PRIVILEGED")
     public static ClassRealm buildClassRealm(File mavenHome, ClassWorld world, ClassLoader parentClassLoader )
         throws MavenEmbedderException {
+        EmbedderEvents.ClassRealmCreation event = new EmbedderEvents.ClassRealmCreation();
+        event.begin();
         
-        if ( mavenHome == null ) {
-            throw new IllegalArgumentException( "mavenHome cannot be null" );
-        }
-        if ( !mavenHome.exists() ) {
-            throw new IllegalArgumentException( "mavenHome '" + mavenHome.getPath() + "' doesn't seem to exist on this node (or you don't have sufficient rights to access it)" );
-        }
-
         // list all jar under mavenHome/lib
 
-        File libDirectory = new File( mavenHome, "lib" );
-        if ( !libDirectory.exists() ) {
-            throw new IllegalArgumentException( mavenHome.getPath() + " doesn't have a 'lib' subdirectory - thus cannot be a valid maven installation!" );
-        }
+        File libDirectory = getLibDirectory( mavenHome );
 
         File[] jarFiles = libDirectory.listFiles( ( dir, name ) ->  name.endsWith( ".jar" ));
         
-        
-        AntClassLoader antClassLoader = new AntClassLoader( Thread.currentThread().getContextClassLoader(), false );
-        
-        if(jarFiles!=null) {
-            for ( File jarFile : jarFiles ) {
-                antClassLoader.addPathComponent( jarFile );
-            }
-        }
         if (world == null) {
             world = new ClassWorld();
         }
+
+        // only needed as parent, avoid opening the jars twice otherwise
+        ClassLoader parent = parentClassLoader;
+        if ( parent == null ) {
+            AntClassLoader antClassLoader = new AntClassLoader( Thread.currentThread().getContextClassLoader(), false );
+            if(jarFiles!=null) {
+                for ( File jarFile : jarFiles ) {
+                    antClassLoader.addPathComponent( jarFile );
+                }
+            }
+            parent = antClassLoader;
+        }
         
-        ClassRealm classRealm = new ClassRealm( world, "plexus.core", parentClassLoader == null ? antClassLoader : parentClassLoader );
+        ClassRealm classRealm = new ClassRealm( world, "plexus.core", parent );
 
         if(jarFiles!=null) {
             for ( File jarFile : jarFiles ) {
@@ -110,6 +107,11 @@ public class MavenEmbedderUtils
                 }
             }
         }
+        if ( event.shouldCommit() ) {
+            event.mavenHome = mavenHome.getAbsolutePath();
+            event.jarCount = jarFiles == null ? 0 : jarFiles.length;
+            event.commit();
+        }
         return classRealm;
     }
     
@@ -126,7 +128,7 @@ public class MavenEmbedderUtils
             .setClassPathScanning( mavenRequest.getContainerClassPathScanning() )
             .setComponentVisibility( mavenRequest.getContainerComponentVisibility() );
         
-        return buildPlexusContainer(mavenRequest,conf);
+        return buildPlexusContainer(mavenHome,mavenRequest,conf);
     }
 
     /**
@@ -156,11 +158,14 @@ public class MavenEmbedderUtils
 
         conf.setClassWorld( classWorld );
         
-        return buildPlexusContainer(mavenRequest,conf);
+        return buildPlexusContainer(null,mavenRequest,conf);
     }
 
-    private static PlexusContainer buildPlexusContainer(MavenRequest mavenRequest,ContainerConfiguration containerConfiguration )
+    private static PlexusContainer buildPlexusContainer(File mavenHome,MavenRequest mavenRequest,ContainerConfiguration containerConfiguration )
         throws MavenEmbedderException {
+        EmbedderEvents.ContainerCreation event = new EmbedderEvents.ContainerCreation();
+        event.begin();
+        long start = System.nanoTime();
         try
         {
             DefaultPlexusContainer plexusContainer = new DefaultPlexusContainer( containerConfiguration );
@@ -170,58 +175,158 @@ public class MavenEmbedderUtils
             if (mavenRequest.getLoggingLevel() > 0) {
                 plexusContainer.getLoggerManager().setThreshold( mavenRequest.getLoggingLevel() );
             }
+            EmbedderStats.getInstance().containerCreated( plexusContainer );
             return plexusContainer;
         } catch ( PlexusContainerException e ) {
             throw new MavenEmbedderException( e.getMessage(), e );
+        } finally {
+            EmbedderStats.getInstance().containerBuilds.record( start );
+            if ( event.shouldCommit() ) {
+                event.mavenHome = mavenHome == null ? null : mavenHome.getAbsolutePath();
+                event.pooled = mavenRequest.getContainerPool() != null;
+                event.commit();
+            }
+        }
+    }
+        
+    /**
+     * <p>
+     * dispose a container built with one of the <code>buildPlexusContainer</code> methods:
+     * the components are released and all the {@link ClassRealm}s (including the container one and its parents
+     * built by this class) are closed so the jar handles are released and the classes can be unloaded.
+     * </p>
+     * @param plexusContainer cannot be <code>null</code>
+     * @since 3.16
+     */
+    public static void disposePlexusContainer( PlexusContainer plexusContainer ) {
+        ClassRealm containerRealm = plexusContainer.getContainerRealm();
+        // dispose() detaches the parent realm so get it before
+        ClassRealm parentRealm = containerRealm.getParentRealm();
+        ClassWorld world = containerRealm.getWorld();
+
+        plexusContainer.dispose();
+        EmbedderStats.getInstance().containerDisposed( plexusContainer );
+
+        try {
+            world.close();
+        } catch ( IOException e ) {
+            // ignore
+        }
+        closeRealm( containerRealm );
+        if ( parentRealm != null ) {
+            closeRealm( parentRealm );
+        }
+    }
+
+    /**
+     * close the realm and the {@link AntClassLoader} used as parent by {@link #buildClassRealm(File, ClassWorld, ClassLoader)}
+     */
+    private static void closeRealm( ClassRealm realm ) {
+        try {
+            realm.close();
+        } catch ( IOException e ) {
+            // ignore
+        }
+        if ( realm.getParentClassLoader() instanceof AntClassLoader ) {
+            ( (AntClassLoader) realm.getParentClassLoader() ).cleanup();
         }
     }
         
     /**
+     * The information is read from the maven-core jar of <code>mavenHome/lib</code> without building any
+     * {@link ClassRealm}, and kept in memory (and in the file set with {@link #setMavenInformationCacheFile(File)})
+     * as long as the content of <code>mavenHome/lib</code> doesn't change.
      * @param mavenHome Maven Home directory
      * @return the maven version 
      * @throws MavenEmbedderException Operation failure
      */
     public static MavenInformation getMavenVersion(@Nonnull File mavenHome) throws MavenEmbedderException {
-        return getMavenVersion(mavenHome, null);
+        File libDirectory = getLibDirectory( mavenHome );
+        String[] jarNames = listJars( libDirectory );
+        MavenInformation information = MAVEN_INFORMATION_CACHE.get( libDirectory, jarNames );
+        if ( information == null ) {
+            information = readMavenVersion( mavenHome, libDirectory, jarNames, null );
+            MAVEN_INFORMATION_CACHE.put( libDirectory, jarNames, information );
+        }
+        return information;
     }
     
     /*package*/ static MavenInformation getMavenVersion(@Nonnull File mavenHome, 
             @CheckForNull MavenEmbedderCallable preopertiesPreloadHook) throws MavenEmbedderException {
-        
-        MavenInformation information = null;
-        ClassLoader original = null;
-        //ClassRealm realm = null;
-        try (ClassRealm realm = buildClassRealm( mavenHome, null, null )) {
-            //realm = buildClassRealm( mavenHome, null, null );
-            if (debug) {
-                debugMavenVersion(realm);
+        File libDirectory = getLibDirectory( mavenHome );
+        return readMavenVersion( mavenHome, libDirectory, listJars( libDirectory ), preopertiesPreloadHook );
+    }
+
+    /**
+     * @param cacheFile file used to keep the result of {@link #getMavenVersion(File)} across restarts,
+     *                  <code>null</code> to only cache in memory. Default value is the system property
+     *                  <code>hudson.maven.MavenEmbedderUtils.versionCacheFile</code>
+     * @since 3.16
+     */
+    public static void setMavenInformationCacheFile(@CheckForNull File cacheFile) {
+        MAVEN_INFORMATION_CACHE.setCacheFile( cacheFile );
+    }
+
+    private static File getLibDirectory( File mavenHome ) {
+        if ( mavenHome == null ) {
+            throw new IllegalArgumentException( "mavenHome cannot be null" );
+        }
+        if ( !mavenHome.exists() ) {
+            throw new IllegalArgumentException( "mavenHome '" + mavenHome.getPath() + "' doesn't seem to exist on this node (or you don't have sufficient rights to access it)" );
+        }
+        File libDirectory = new File( mavenHome, "lib" );
+        if ( !libDirectory.exists() ) {
+            throw new IllegalArgumentException( mavenHome.getPath() + " doesn't have a 'lib' subdirectory - thus cannot be a valid maven installation!" );
+        }
+        return libDirectory;
+    }
+
+    private static String[] listJars( File libDirectory ) {
+        String[] jarNames = libDirectory.list( ( dir, name ) -> name.endsWith( ".jar" ) );
+        return jarNames == null ? new String[0] : jarNames;
+    }
+
+    /**
+     * look for the pom.properties of maven-core in the maven-core jar first, then in the other jars
+     * (maven 2 ships an uber jar)
+     */
+    private static MavenInformation readMavenVersion( File mavenHome, File libDirectory, String[] jarNames,
+                                                      MavenEmbedderCallable preopertiesPreloadHook )
+        throws MavenEmbedderException {
+        List<String> candidates = new ArrayList<>( jarNames.length );
+        for ( String jarName : jarNames ) {
+            if ( jarName.startsWith( "maven-core-" ) ) {
+                candidates.add( 0, jarName );
+            } else {
+                candidates.add( jarName );
             }
-            original = Thread.currentThread().getContextClassLoader();
-        
-            Thread.currentThread().setContextClassLoader( realm );
-            // TODO is this really intending to use findResource rather than getResource? Cf. https://github.com/sonatype/plexus-classworlds/pull/8
-            URL resource = realm.findResource( POM_PROPERTIES_PATH );
-            if (resource == null) {
-                throw new MavenEmbedderException("Couldn't find maven version information in '" + mavenHome.getPath()
-                        + "'. Are you sure that this is a valid maven home?");
+        }
+        for ( String jarName : candidates ) {
+            File jarFile = new File( libDirectory, jarName );
+            if (debug) {
+                System.out.println("look for " + POM_PROPERTIES_PATH + " in " + jarFile );
             }
-            URLConnection uc = resource.openConnection();
-            uc.setUseCaches(false);
-            try(InputStream istream = uc.getInputStream()) {
-                if (preopertiesPreloadHook != null) {
-                    preopertiesPreloadHook.call();
+            // each call has its own ZipFile, no shared JarURLConnection cache
+            try (ZipFile zipFile = new ZipFile( jarFile )) {
+                ZipEntry entry = zipFile.getEntry( POM_PROPERTIES_PATH );
+                if ( entry == null ) {
+                    continue;
                 }
-                Properties properties = new Properties();
-                properties.load( istream );
-                information = new MavenInformation( properties.getProperty( "version" ) , resource.toExternalForm() ); 
+                try (InputStream istream = zipFile.getInputStream( entry )) {
+                    if (preopertiesPreloadHook != null) {
+                        preopertiesPreloadHook.call();
+                    }
+                    Properties properties = new Properties();
+                    properties.load( istream );
+                    String resourcePath = "jar:" + jarFile.toURI().toURL().toExternalForm() + "!/" + POM_PROPERTIES_PATH;
+                    return new MavenInformation( properties.getProperty( "version" ), resourcePath );
+                }
+            } catch ( IOException e ) {
+                throw new MavenEmbedderException( e.getMessage(), e );
             }
-        } catch ( IOException e ) {
-            throw new MavenEmbedderException( e.getMessage(), e );
-        } finally {
-            Thread.currentThread().setContextClassLoader( original );
         }
-
-        return information;
+        throw new MavenEmbedderException("Couldn't find maven version information in '" + mavenHome.getPath()
+                + "'. Are you sure that this is a valid maven home?");
     }
 
     public static boolean isAtLeastMavenVersion(File mavenHome, String version)  throws MavenEmbedderException {
@@ -230,20 +335,10 @@ public class MavenEmbedderUtils
         return found.compareTo( testedOne ) >= 0;
     }
     
-    private static void debugMavenVersion(ClassRealm realm ) {
-        try {
-            // TODO as above, consider getResources
-            @SuppressWarnings("unchecked")
-            Enumeration<URL> urls = realm.findResources( POM_PROPERTIES_PATH );
-            System.out.println("urls for " + POM_PROPERTIES_PATH );
-            while(urls.hasMoreElements()) {
-                System.out.println("url " + urls.nextElement().toExternalForm());
-            }
-        } catch (IOException e) {
-            System.out.println("Ignore IOException during searching " + POM_PROPERTIES_PATH + ":" + e.getMessage());
-        }
-    }
-    
     public static final boolean debug = Boolean.getBoolean( "hudson.maven.MavenEmbedderUtils.debug" );
 
+    private static final MavenInformationCache MAVEN_INFORMATION_CACHE = new MavenInformationCache(
+        System.getProperty( "hudson.maven.MavenEmbedderUtils.versionCacheFile" ) == null ? null
+            : new File( System.getProperty( "hudson.maven.MavenEmbedderUtils.versionCacheFile" ) ) );
+
 }
@@ -0,0 +1,183 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the {@link MavenInformation} of maven homes, optionally in a properties file so the information
+ * survives restarts. An entry is valid as long as the mtime and the listing of <code>mavenHome/lib</code>
+ * don't change.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class MavenInformationCache
+{
+
+    private static final char SEPARATOR = '|';
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile File cacheFile;
+
+    private volatile boolean cacheFileLoaded;
+
+    MavenInformationCache( File cacheFile ) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @param libDirectory <code>mavenHome/lib</code>
+     * @param jarNames the current listing of libDirectory
+     * @return the cached information or <code>null</code>
+     */
+    MavenInformation get( File libDirectory, String[] jarNames ) {
+        if ( !cacheFileLoaded ) {
+            loadCacheFile();
+        }
+        Entry entry = entries.get( libDirectory.getAbsolutePath() );
+        if ( entry != null && entry.matches( libDirectory.lastModified(), listingHash( jarNames ) ) ) {
+            return entry.information;
+        }
+        return null;
+    }
+
+    void put( File libDirectory, String[] jarNames, MavenInformation information ) {
+        entries.put( libDirectory.getAbsolutePath(),
+                     new Entry( libDirectory.lastModified(), listingHash( jarNames ), information ) );
+        storeCacheFile();
+    }
+
+    /**
+     * merge the content of the new file with the in memory entries and write them back
+     */
+    synchronized void setCacheFile( File cacheFile ) {
+        this.cacheFile = cacheFile;
+        this.cacheFileLoaded = false;
+        loadCacheFile();
+        if ( !entries.isEmpty() ) {
+            storeCacheFile();
+        }
+    }
+
+    private static String listingHash( String[] jarNames ) {
+        String[] sorted = jarNames.clone();
+        Arrays.sort( sorted );
+        return Integer.toHexString( Arrays.hashCode( sorted ) ) + '-' + sorted.length;
+    }
+
+    private synchronized void loadCacheFile() {
+        if ( cacheFileLoaded || cacheFile == null ) {
+            return;
+        }
+        cacheFileLoaded = true;
+        if ( !cacheFile.isFile() ) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream( cacheFile.toPath() )) {
+            properties.load( in );
+        } catch ( IOException | IllegalArgumentException e ) {
+            // unreadable cache, will be rewritten
+            return;
+        }
+        for ( String home : properties.stringPropertyNames() ) {
+            Entry entry = Entry.parse( properties.getProperty( home ) );
+            if ( entry != null ) {
+                entries.putIfAbsent( home, entry );
+            }
+        }
+    }
+
+    private synchronized void storeCacheFile() {
+        File file = cacheFile;
+        if ( file == null ) {
+            return;
+        }
+        Properties properties = new Properties();
+        for ( Map.Entry<String, Entry> entry : entries.entrySet() ) {
+            properties.setProperty( entry.getKey(), entry.getValue().format() );
+        }
+        try {
+            Path target = file.toPath().toAbsolutePath();
+            Files.createDirectories( target.getParent() );
+            // never leave a truncated file for the other JVMs
+            Path tmp = Files.createTempFile( target.getParent(), target.getFileName().toString(), ".tmp" );
+            try {
+                try (OutputStream out = Files.newOutputStream( tmp )) {
+                    properties.store( out, "maven installations information" );
+                }
+                Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            } finally {
+                Files.deleteIfExists( tmp );
+            }
+        } catch ( IOException e ) {
+            // the cache file is only an optimization
+            if ( MavenEmbedderUtils.debug ) {
+                System.out.println( "cannot store " + file + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long libLastModified;
+
+        private final String listingHash;
+
+        private final MavenInformation information;
+
+        Entry( long libLastModified, String listingHash, MavenInformation information ) {
+            this.libLastModified = libLastModified;
+            this.listingHash = listingHash;
+            this.information = information;
+        }
+
+        boolean matches( long libLastModified, String listingHash ) {
+            return this.libLastModified == libLastModified && this.listingHash.equals( listingHash );
+        }
+
+        String format() {
+            return "" + libLastModified + SEPARATOR + listingHash + SEPARATOR + information.getVersion() + SEPARATOR
+                + information.getVersionResourcePath();
+        }
+
+        static Entry parse( String value ) {
+            String[] parts = value.split( "\\|", 4 );
+            if ( parts.length != 4 ) {
+                return null;
+            }
+            try {
+                return new Entry( Long.parseLong( parts[0] ), parts[1], new MavenInformation( parts[2], parts[3] ) );
+            } catch ( NumberFormatException e ) {
+                return null;
+            }
+        }
+    }
+}
@@ -19,9 +19,11 @@ package hudson.maven;
  * under the License.
  */
 
+import java.io.File;
 import java.net.URL;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 
 import org.apache.maven.execution.ExecutionListener;
 import org.apache.maven.execution.MavenExecutionRequest;
@@ -64,9 +66,15 @@ public class MavenRequest
     
     private String makeBehavior;
     
+    /**
+     * number of threads of the reactor, <code>2</code> or <code>1.5C</code> for 1.5 thread per core
+     */
     private String threadCount;
     
-    private boolean recursive;
+    /**
+     * <code>false</code> to build only the pom and not its modules (like <code>-N</code>)
+     */
+    private boolean recursive = true;
     
     private String pom;
     
@@ -135,6 +143,105 @@ public class MavenRequest
      * @since 3.3
      */    
     private String containerClassPathScanning = PlexusConstants.SCANNING_INDEX;
+
+    /**
+     * if set the {@link MavenEmbedder} will get its container from this pool
+     * @since 3.16
+     */
+    private EmbedderContainerPool containerPool;
+
+    /**
+     * if set the poms read with {@link MavenEmbedder#readProjects(List)} (and collectProjects) are built
+     * concurrently on this executor (a {@link java.util.concurrent.ForkJoinPool} or a virtual threads executor)
+     * @since 3.16
+     */
+    private Executor projectBuildingExecutor;
+
+    /**
+     * runs the {@link MavenEmbedder} async methods, if not set the embedder uses virtual threads when
+     * available (java 21+) or a pool of daemon threads
+     * @since 3.16
+     */
+    private Executor asyncExecutor;
+
+    /**
+     * if <code>true</code> the successive {@link MavenEmbedder#execute(MavenRequest)} of an embedder keep the plugin
+     * and extension realms and the model cache warm, only what changed is invalidated
+     * @since 3.16
+     */
+    private boolean sessionReuse;
+
+    /**
+     * if <code>true</code> {@link MavenEmbedder#execute(MavenRequest)} returns a {@link TimedMavenExecutionResult}
+     * with the wall and cpu time per project, phase and mojo
+     * @since 3.16
+     */
+    private boolean collectExecutionTimings;
+
+    /**
+     * if set {@link MavenEmbedder#readEffectiveModel(File)} keeps the effective models in this directory
+     * @since 3.16
+     */
+    private String effectiveModelCacheDirectory;
+
+    /**
+     * maximum size in bytes of {@link #effectiveModelCacheDirectory}
+     * @since 3.16
+     */
+    private long effectiveModelCacheMaxSize = 64L * 1024 * 1024;
+
+    /**
+     * if set the repository sessions look the artifacts up in this {@link LocalRepositoryIndex} of the local
+     * repository before touching the file system
+     * @since 3.16
+     */
+    private String localRepositoryIndexFile;
+
+    /**
+     * resolver named lock factory synchronizing the embedders sharing the local repository: <code>file-lock</code>
+     * for several JVMs, <code>rwlock-local</code> for the embedders of a single JVM, see {@link NamedLocks}
+     * @since 3.16
+     */
+    private String namedLockFactory;
+
+    /**
+     * resolver name mapper of the locks, <code>file-gav</code> by default with <code>file-lock</code>
+     * @since 3.16
+     */
+    private String namedLockNameMapper;
+
+    /**
+     * how long in seconds to wait for a lock, the resolver default if <code>0</code>
+     * @since 3.16
+     */
+    private long namedLockTimeout;
+
+    /**
+     * read-only local repositories looked up in order after the local repository, which only gets the writes
+     * @since 3.16
+     */
+    private List<String> localRepositoryBases;
+
+    /**
+     * if <code>true</code> the artifacts found in {@link #localRepositoryBases} are hard linked into the local
+     * repository, when the file system allows it
+     * @since 3.16
+     */
+    private boolean linkLocalRepositoryBases;
+
+    /**
+     * if set the repository sessions record the artifacts they use in this {@link LocalRepositoryAccessLog}, which
+     * evicts the least recently used ones
+     * @since 3.16
+     */
+    private String localRepositoryAccessLogFile;
+
+    /**
+     * number of parallel downloads from a repository in {@link MavenEmbedder#resolve(java.util.Collection, List)},
+     * the resolver default if <code>0</code>
+     * @since 3.16
+     */
+    private int resolveThreads;
     
     public MavenRequest() {
         // no op
@@ -467,4 +574,169 @@ public class MavenRequest
         this.containerClassPathScanning = containerClassPathScanning;
     }
 
+    public EmbedderContainerPool getContainerPool()
+    {
+        return containerPool;
+    }
+
+    public MavenRequest setContainerPool( EmbedderContainerPool containerPool )
+    {
+        this.containerPool = containerPool;
+        return this;
+    }
+
+    public Executor getProjectBuildingExecutor()
+    {
+        return projectBuildingExecutor;
+    }
+
+    public MavenRequest setProjectBuildingExecutor( Executor projectBuildingExecutor )
+    {
+        this.projectBuildingExecutor = projectBuildingExecutor;
+        return this;
+    }
+
+    public String getEffectiveModelCacheDirectory()
+    {
+        return effectiveModelCacheDirectory;
+    }
+
+    public MavenRequest setEffectiveModelCacheDirectory( String effectiveModelCacheDirectory )
+    {
+        this.effectiveModelCacheDirectory = effectiveModelCacheDirectory;
+        return this;
+    }
+
+    public long getEffectiveModelCacheMaxSize()
+    {
+        return effectiveModelCacheMaxSize;
+    }
+
+    public MavenRequest setEffectiveModelCacheMaxSize( long effectiveModelCacheMaxSize )
+    {
+        this.effectiveModelCacheMaxSize = effectiveModelCacheMaxSize;
+        return this;
+    }
+
+    public Executor getAsyncExecutor()
+    {
+        return asyncExecutor;
+    }
+
+    public MavenRequest setAsyncExecutor( Executor asyncExecutor )
+    {
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    public boolean isSessionReuse()
+    {
+        return sessionReuse;
+    }
+
+    public MavenRequest setSessionReuse( boolean sessionReuse )
+    {
+        this.sessionReuse = sessionReuse;
+        return this;
+    }
+
+    public boolean isCollectExecutionTimings()
+    {
+        return collectExecutionTimings;
+    }
+
+    public MavenRequest setCollectExecutionTimings( boolean collectExecutionTimings )
+    {
+        this.collectExecutionTimings = collectExecutionTimings;
+        return this;
+    }
+
+    public String getLocalRepositoryIndexFile()
+    {
+        return localRepositoryIndexFile;
+    }
+
+    public MavenRequest setLocalRepositoryIndexFile( String localRepositoryIndexFile )
+    {
+        this.localRepositoryIndexFile = localRepositoryIndexFile;
+        return this;
+    }
+
+    public String getNamedLockFactory()
+    {
+        return namedLockFactory;
+    }
+
+    public MavenRequest setNamedLockFactory( String namedLockFactory )
+    {
+        this.namedLockFactory = namedLockFactory;
+        return this;
+    }
+
+    public String getNamedLockNameMapper()
+    {
+        return namedLockNameMapper;
+    }
+
+    public MavenRequest setNamedLockNameMapper( String namedLockNameMapper )
+    {
+        this.namedLockNameMapper = namedLockNameMapper;
+        return this;
+    }
+
+    public long getNamedLockTimeout()
+    {
+        return namedLockTimeout;
+    }
+
+    public MavenRequest setNamedLockTimeout( long namedLockTimeout )
+    {
+        this.namedLockTimeout = namedLockTimeout;
+        return this;
+    }
+
+    public List<String> getLocalRepositoryBases()
+    {
+        return localRepositoryBases;
+    }
+
+    public MavenRequest setLocalRepositoryBases( List<String> localRepositoryBases )
+    {
+        this.localRepositoryBases = localRepositoryBases;
+        return this;
+    }
+
+    public boolean isLinkLocalRepositoryBases()
+    {
+        return linkLocalRepositoryBases;
+    }
+
+    public MavenRequest setLinkLocalRepositoryBases( boolean linkLocalRepositoryBases )
+    {
+        this.linkLocalRepositoryBases = linkLocalRepositoryBases;
+        return this;
+    }
+
+    public String getLocalRepositoryAccessLogFile()
+    {
+        return localRepositoryAccessLogFile;
+    }
+
+    public MavenRequest setLocalRepositoryAccessLogFile( String localRepositoryAccessLogFile )
+    {
+        this.localRepositoryAccessLogFile = localRepositoryAccessLogFile;
+        return this;
+    }
+
+    public int getResolveThreads()
+    {
+        return resolveThreads;
+    }
+
+    public MavenRequest setResolveThreads( int resolveThreads )
+    {
+        this.resolveThreads = resolveThreads;
+        return this;
+    }
+
 }
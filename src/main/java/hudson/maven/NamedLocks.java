@@ -0,0 +1,199 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.plexus.PlexusContainer;
+import org.eclipse.aether.named.NamedLock;
+import org.eclipse.aether.named.NamedLockFactory;
+import org.eclipse.aether.named.providers.FileLockNamedLockFactory;
+import org.eclipse.aether.named.providers.LocalReadWriteLockNamedLockFactory;
+import org.eclipse.aether.named.providers.LocalSemaphoreNamedLockFactory;
+import org.eclipse.aether.named.support.FileLockNamedLock;
+import org.eclipse.aether.named.support.NamedLockFactorySupport;
+import org.eclipse.aether.named.support.NamedLockSupport;
+
+/**
+ * The resolver named lock factories are components of the container, so the embedders of a JVM which don't share
+ * their container don't see each other locks (<code>rwlock-local</code>) or compete for the same lock files through
+ * different channels (<code>file-lock</code>). This registers in each container factories shared by the whole
+ * JVM, selected with {@link MavenRequest#setNamedLockFactory(String)}:
+ * <ul>
+ * <li><code>file-lock</code>: file locks between the JVMs, one channel per lock file and in memory locks between the
+ * threads of this JVM. Unlike the resolver factory the lock files are kept.</li>
+ * <li><code>rwlock-local</code>, <code>semaphore-local</code>: in memory locks between the embedders of this JVM</li>
+ * </ul>
+ * Any other name is handed to the resolver as is.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class NamedLocks
+{
+    static final String FACTORY_KEY = "aether.syncContext.named.factory";
+
+    static final String NAME_MAPPER_KEY = "aether.syncContext.named.nameMapper";
+
+    static final String TIME_KEY = "aether.syncContext.named.time";
+
+    static final String TIME_UNIT_KEY = "aether.syncContext.named.time.unit";
+
+    /**
+     * hint prefix of the shared factories in the container
+     */
+    private static final String PREFIX = "hudson-";
+
+    private static final Map<String, NamedLockFactory> SHARED = new LinkedHashMap<>();
+
+    static {
+        SHARED.put( FileLockNamedLockFactory.NAME, new SharedFactory( new KeptFileLockNamedLockFactory() ) );
+        SHARED.put( LocalReadWriteLockNamedLockFactory.NAME,
+                    new SharedFactory( new LocalReadWriteLockNamedLockFactory() ) );
+        SHARED.put( LocalSemaphoreNamedLockFactory.NAME, new SharedFactory( new LocalSemaphoreNamedLockFactory() ) );
+    }
+
+    private NamedLocks() {
+        // no op
+    }
+
+    /**
+     * Put the resolver configuration of the request in <code>configProperties</code> and add the shared factories
+     * to the container if needed.
+     */
+    static void configure( MavenRequest mavenRequest, PlexusContainer plexusContainer, Properties configProperties )
+        throws MavenEmbedderException {
+        String factory = mavenRequest.getNamedLockFactory();
+        String nameMapper = mavenRequest.getNamedLockNameMapper();
+        if ( FileLockNamedLockFactory.NAME.equals( factory ) ) {
+            if ( nameMapper == null ) {
+                // lock files in the .locks directory of the local repository
+                nameMapper = "file-gav";
+            } else if ( !nameMapper.startsWith( "file-" ) ) {
+                throw new MavenEmbedderException( "the file-lock factory needs a file name mapper, not " + nameMapper );
+            }
+        }
+        if ( SHARED.containsKey( factory ) ) {
+            register( plexusContainer );
+            configProperties.setProperty( FACTORY_KEY, PREFIX + factory );
+        } else {
+            configProperties.setProperty( FACTORY_KEY, factory );
+        }
+        if ( nameMapper != null ) {
+            configProperties.setProperty( NAME_MAPPER_KEY, nameMapper );
+        }
+        if ( mavenRequest.getNamedLockTimeout() > 0 ) {
+            configProperties.setProperty( TIME_KEY, Long.toString( mavenRequest.getNamedLockTimeout() ) );
+            configProperties.setProperty( TIME_UNIT_KEY, "SECONDS" );
+        }
+    }
+
+    private static void register( PlexusContainer plexusContainer ) {
+        synchronized ( plexusContainer ) {
+            for ( Map.Entry<String, NamedLockFactory> factory : SHARED.entrySet() ) {
+                if ( !plexusContainer.hasComponent( NamedLockFactory.class, PREFIX + factory.getKey() ) ) {
+                    plexusContainer.addComponent( factory.getValue(), NamedLockFactory.class,
+                                                  PREFIX + factory.getKey() );
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link FileLockNamedLockFactory} deletes a lock file once unlocked: another JVM which opened it just before
+     * locks the deleted file while a third one locks the new file, and both think they own the lock
+     */
+    private static final class KeptFileLockNamedLockFactory
+        extends NamedLockFactorySupport
+    {
+        private final ConcurrentMap<String, FileChannel> fileChannels = new ConcurrentHashMap<>();
+
+        @Override
+        protected NamedLockSupport createLock( String name ) {
+            FileChannel fileChannel = fileChannels.computeIfAbsent( name, n -> {
+                Path path = Paths.get( n );
+                try {
+                    Files.createDirectories( path.getParent() );
+                    return FileChannel.open( path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                             StandardOpenOption.CREATE );
+                } catch ( IOException e ) {
+                    throw new UncheckedIOException( "Cannot open lock file " + n, e );
+                }
+            } );
+            return new FileLockNamedLock( name, fileChannel, this );
+        }
+
+        @Override
+        protected void destroyLock( String name ) {
+            FileChannel fileChannel = fileChannels.remove( name );
+            if ( fileChannel != null ) {
+                try {
+                    fileChannel.close();
+                } catch ( IOException e ) {
+                    throw new UncheckedIOException( "Cannot close lock file " + name, e );
+                }
+            }
+        }
+    }
+
+    /**
+     * lives as long as the JVM: the shutdown of a repository system (when its container is disposed) must not
+     * release the locks of the other embedders
+     */
+    private static final class SharedFactory
+        implements NamedLockFactory
+    {
+        private final NamedLockFactory delegate;
+
+        SharedFactory( NamedLockFactory delegate ) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public NamedLock getLock( String name ) {
+            return delegate.getLock( name );
+        }
+
+        @Override
+        public void shutdown() {
+            // no op
+        }
+
+        @Override
+        public <E extends Throwable> E onFailure( E failure ) {
+            return delegate.onFailure( failure );
+        }
+
+        @Override
+        public String toString() {
+            return "shared " + delegate;
+        }
+    }
+}
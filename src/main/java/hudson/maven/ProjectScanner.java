@@ -0,0 +1,225 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Reads the coordinates and the modules of poms with a pull parser, skipping everything else, no
+ * {@link org.apache.maven.model.Model} is built.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class ProjectScanner
+{
+
+    private ProjectScanner() {
+        // static helper
+    }
+
+    /**
+     * @param root a pom or a directory containing a <code>pom.xml</code>
+     * @return the root project followed by its modules, depth first in the declaration order. Missing modules
+     *         are skipped and a pom reached twice is only returned once.
+     */
+    static List<ScannedProject> scan( File root )
+        throws MavenEmbedderException {
+        List<ScannedProject> projects = new ArrayList<>();
+        scan( toPomFile( root ), projects, new HashSet<>() );
+        return projects;
+    }
+
+    private static void scan( File pom, List<ScannedProject> projects, Set<File> visited )
+        throws MavenEmbedderException {
+        File canonical;
+        try {
+            canonical = pom.getCanonicalFile();
+        } catch ( IOException e ) {
+            canonical = pom.getAbsoluteFile();
+        }
+        if ( !visited.add( canonical ) ) {
+            return;
+        }
+        ScannedProject project = read( pom );
+        projects.add( project );
+        for ( String module : project.getModules() ) {
+            File modulePom = toPomFile( new File( pom.getParentFile(), module ) );
+            if ( modulePom.isFile() ) {
+                scan( modulePom, projects, visited );
+            }
+        }
+    }
+
+    private static File toPomFile( File file ) {
+        return file.isDirectory() ? new File( file, "pom.xml" ) : file;
+    }
+
+    static ScannedProject read( File pom )
+        throws MavenEmbedderException {
+        try (Reader reader = ReaderFactory.newXmlReader( pom )) {
+            XmlPullParser parser = new MXParser();
+            parser.setInput( reader );
+            return parse( pom.getAbsoluteFile(), parser );
+        } catch ( IOException | XmlPullParserException e ) {
+            throw new MavenEmbedderException( "Cannot read " + pom + ": " + e.getMessage(), e );
+        }
+    }
+
+    private static ScannedProject parse( File pom, XmlPullParser parser )
+        throws IOException, XmlPullParserException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String packaging = "jar";
+        List<String> modules = new ArrayList<>();
+        String parentGroupId = null;
+        String parentArtifactId = null;
+        String parentVersion = null;
+        String parentRelativePath = null;
+        boolean hasParent = false;
+
+        parser.nextTag();
+        parser.require( XmlPullParser.START_TAG, null, "project" );
+        while ( parser.nextTag() == XmlPullParser.START_TAG ) {
+            switch ( parser.getName() ) {
+                case "groupId":
+                    groupId = text( parser );
+                    break;
+                case "artifactId":
+                    artifactId = text( parser );
+                    break;
+                case "version":
+                    version = text( parser );
+                    break;
+                case "packaging":
+                    packaging = text( parser );
+                    break;
+                case "modules":
+                    while ( parser.nextTag() == XmlPullParser.START_TAG ) {
+                        if ( "module".equals( parser.getName() ) ) {
+                            modules.add( text( parser ) );
+                        } else {
+                            skip( parser );
+                        }
+                    }
+                    break;
+                case "parent":
+                    hasParent = true;
+                    while ( parser.nextTag() == XmlPullParser.START_TAG ) {
+                        switch ( parser.getName() ) {
+                            case "groupId":
+                                parentGroupId = text( parser );
+                                break;
+                            case "artifactId":
+                                parentArtifactId = text( parser );
+                                break;
+                            case "version":
+                                parentVersion = text( parser );
+                                break;
+                            case "relativePath":
+                                parentRelativePath = text( parser );
+                                break;
+                            default:
+                                skip( parser );
+                        }
+                    }
+                    break;
+                default:
+                    skip( parser );
+            }
+        }
+
+        if ( hasParent ) {
+            if ( groupId == null ) {
+                groupId = parentGroupId;
+            }
+            if ( version == null ) {
+                version = parentVersion;
+            }
+            if ( parentRelativePath == null ) {
+                parentRelativePath = "../pom.xml";
+            }
+        }
+        return new ScannedProject( pom, groupId, artifactId, version, packaging, modules, parentGroupId,
+                                   parentArtifactId, parentVersion, parentRelativePath );
+    }
+
+    /**
+     * @return the trimmed text of the current element, the parser is left on its end tag
+     */
+    private static String text( XmlPullParser parser )
+        throws IOException, XmlPullParserException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while ( depth > 0 ) {
+            switch ( parser.next() ) {
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.TEXT:
+                    if ( depth == 1 ) {
+                        text.append( parser.getText() );
+                    }
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException( "unexpected end of document", parser, null );
+                default:
+                    break;
+            }
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * skip the current element, the parser is left on its end tag
+     */
+    private static void skip( XmlPullParser parser )
+        throws IOException, XmlPullParserException {
+        int depth = 1;
+        while ( depth > 0 ) {
+            switch ( parser.next() ) {
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException( "unexpected end of document", parser, null );
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -19,16 +19,21 @@ package hudson.maven;
  * under the License.
  */
 
+import java.io.Closeable;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.model.Build;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.repository.WorkspaceReader;
@@ -38,176 +43,441 @@ import org.eclipse.aether.repository.WorkspaceRepository;
  * NOTE : <b>this class is not designed for external use so it can change without any prior notice</b>
  * class coming from ASF sources 
  * http://svn.apache.org/repos/asf/maven/maven-3/trunk/maven-core/src/main/java/org/apache/maven/ReactorReader.java
- * FIXME simplify more !!
+ * The projects are indexed by groupId, artifactId and version, and the artifacts of each project by extension and
+ * classifier, so a lookup is a few hash probes without building any key. Projects can be added and removed
+ * concurrently, from parallel module reads for instance.
+ * By default the artifacts point to <code>workspaceRoot/artifactId</code>. If built with
+ * <code>resolveBuildOutputs</code> they point to what the build of the project produced: the artifact file, the
+ * packaged file in the build directory or, for jars, <code>target/classes</code> and <code>target/test-classes</code>
+ * (<code>tests</code> classifier). The file checks are cached until the file system changes, the reader must then be
+ * {@link #close() closed}.
  * @author Olivier Lamy
  * @since 1.1
  */
 public class ReactorReader
-    implements WorkspaceReader
+    implements WorkspaceReader, Closeable
 {
-    private Map<String, MavenProject> projectsByGAV;
+    private static final String REPOSITORY_ID = "reactor";
 
-    private Map<String, List<MavenProject>> projectsByGA;
+    /**
+     * groupId -> artifactId -> projects
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, GroupArtifact>> index;
+
+    /**
+     * <code>groupId:artifactId:version</code> of the projects, the key of the {@link #getRepository() repository}
+     */
+    private final Set<String> projectKeys;
 
+    /**
+     * built from {@link #projectKeys} on demand, <code>null</code> after a change. Guarded by this.
+     */
     private WorkspaceRepository repository;
 
-    private File workspaceRoot;
+    private final File workspaceRoot;
+
+    /**
+     * <code>null</code> unless the build outputs are resolved
+     */
+    private final FileStatusCache fileStatusCache;
 
+    /**
+     * @param reactorProjects the projects by <code>groupId:artifactId:version</code>, the map is copied
+     */
     public ReactorReader( Map<String, MavenProject> reactorProjects, File workspaceRoot )
     {
-        projectsByGAV = reactorProjects;
+        this( reactorProjects, workspaceRoot, false );
+    }
+
+    /**
+     * @param reactorProjects the projects by <code>groupId:artifactId:version</code>, the map is copied
+     * @param resolveBuildOutputs <code>true</code> to resolve the artifacts to the outputs of the projects
+     * @since 3.16
+     */
+    public ReactorReader( Map<String, MavenProject> reactorProjects, File workspaceRoot, boolean resolveBuildOutputs )
+    {
         this.workspaceRoot = workspaceRoot;
-        projectsByGA = new HashMap<>( reactorProjects.size() * 2 );
+        this.fileStatusCache = resolveBuildOutputs ? new FileStatusCache() : null;
+
+        // group first so each groupId/artifactId gets its versions in one go
+        Map<String, Map<String, Map<String, ProjectArtifacts>>> grouped = new HashMap<>();
         for ( MavenProject project : reactorProjects.values() )
         {
-            String key = ArtifactUtils.versionlessKey( project.getGroupId(), project.getArtifactId() );
-
-            List<MavenProject> projects = projectsByGA.computeIfAbsent( key, k -> new ArrayList<>( 1 ) );
-
-            projects.add( project );
+            grouped.computeIfAbsent( project.getGroupId(), g -> new HashMap<>() )
+                .computeIfAbsent( project.getArtifactId(), a -> new LinkedHashMap<>( 2 ) )
+                .put( project.getVersion(), new ProjectArtifacts( project, workspaceRoot ) );
+        }
+        index = new ConcurrentHashMap<>( Math.max( 16, grouped.size() * 2 ) );
+        for ( Map.Entry<String, Map<String, Map<String, ProjectArtifacts>>> groupId : grouped.entrySet() )
+        {
+            ConcurrentMap<String, GroupArtifact> artifactIds =
+                new ConcurrentHashMap<>( Math.max( 16, groupId.getValue().size() * 2 ) );
+            for ( Map.Entry<String, Map<String, ProjectArtifacts>> artifactId : groupId.getValue().entrySet() )
+            {
+                artifactIds.put( artifactId.getKey(), new GroupArtifact( artifactId.getValue() ) );
+            }
+            index.put( groupId.getKey(), artifactIds );
         }
 
-        repository = new WorkspaceRepository( "reactor", new HashSet<>( projectsByGAV.keySet() ) );
+        projectKeys = ConcurrentHashMap.newKeySet( Math.max( 16, reactorProjects.size() * 2 ) );
+        projectKeys.addAll( reactorProjects.keySet() );
     }
 
-    private File find( MavenProject project, Artifact artifact )
+    private GroupArtifact groupArtifact( String groupId, String artifactId )
     {
-        if ( "pom".equals( artifact.getExtension() ) )
-        {
-            return project.getFile();
-        }
+        return index.computeIfAbsent( groupId, g -> new ConcurrentHashMap<>() )
+            .computeIfAbsent( artifactId, a -> new GroupArtifact( Collections.emptyMap() ) );
+    }
 
-        org.apache.maven.artifact.Artifact matchingArtifact = findMatchingArtifact( project, artifact );
-        if ( matchingArtifact != null )
+    /**
+     * @return <code>null</code> if no project has this groupId and artifactId
+     */
+    private GroupArtifact findGroupArtifact( String groupId, String artifactId )
+    {
+        Map<String, GroupArtifact> artifactIds = index.get( groupId );
+        return artifactIds == null ? null : artifactIds.get( artifactId );
+    }
+
+    public File findArtifact( Artifact artifact )
+    {
+        GroupArtifact groupArtifact = findGroupArtifact( artifact.getGroupId(), artifact.getArtifactId() );
+        if ( groupArtifact == null )
         {
-            return matchingArtifact.getFile();
+            return null;
         }
-        return null;
+        ProjectArtifacts project = groupArtifact.versions.get( artifact.getVersion() );
+        return project == null ? null : project.find( artifact, fileStatusCache );
     }
 
-    /**
-     * Tries to resolve the specified artifact from the artifacts of the given project.
-     * 
-     * @param project The project to try to resolve the artifact from, must not be <code>null</code>.
-     * @param requestedArtifact The artifact to resolve, must not be <code>null</code>.
-     * @return The matching artifact from the project or <code>null</code> if not found.
-     */
-    private org.apache.maven.artifact.Artifact findMatchingArtifact( MavenProject project, Artifact requestedArtifact )
+    public List<String> findVersions( Artifact artifact )
     {
-        String requestedRepositoryConflictId = getConflictId( requestedArtifact );
+        GroupArtifact groupArtifact = findGroupArtifact( artifact.getGroupId(), artifact.getArtifactId() );
+        if ( groupArtifact == null )
+        {
+            return Collections.emptyList();
+        }
 
-        org.apache.maven.artifact.Artifact mainArtifact = project.getArtifact();
-        if ( requestedRepositoryConflictId.equals( getConflictId( mainArtifact ) ) )
+        Map<String, ProjectArtifacts> projects = groupArtifact.versions;
+        if ( projects.isEmpty() )
         {
-            mainArtifact.setFile( new File( workspaceRoot, project.getArtifactId() ) );
-            return mainArtifact;
+            return Collections.emptyList();
         }
 
-        Collection<org.apache.maven.artifact.Artifact> attachedArtifacts = project.getAttachedArtifacts();
-        if ( attachedArtifacts != null && !attachedArtifacts.isEmpty() )
+        List<String> versions = new ArrayList<>( projects.size() );
+
+        for ( ProjectArtifacts project : projects.values() )
         {
-            for ( org.apache.maven.artifact.Artifact attachedArtifact : attachedArtifacts )
+            if ( project.find( artifact, fileStatusCache ) != null )
             {
-                if ( requestedRepositoryConflictId.equals( getConflictId( attachedArtifact ) ) )
-                {
-                    attachedArtifact.setFile( new File( workspaceRoot, project.getArtifactId() ) );
-                    return attachedArtifact;
-                }
+                versions.add( project.project.getVersion() );
             }
         }
 
-        return null;
+        return Collections.unmodifiableList( versions );
+    }
+    
+    /**
+     * Add a project or replace the project with the same groupId, artifactId and version, the other versions
+     * are kept. Can be called concurrently with the lookups and the other changes.
+     */
+    public void addProject(MavenProject mavenProject) {
+        GroupArtifact groupArtifact = groupArtifact( mavenProject.getGroupId(), mavenProject.getArtifactId() );
+        // the key follows the index for a concurrent remove of the same version
+        synchronized ( groupArtifact )
+        {
+            groupArtifact.put( mavenProject.getVersion(), new ProjectArtifacts( mavenProject, workspaceRoot ) );
+            projectKeys.add( projectKey( mavenProject ) );
+        }
+        invalidateRepository();
     }
 
     /**
-     * Gets the repository conflict id of the specified artifact. Unlike the dependency conflict id, the repository
-     * conflict id uses the artifact file extension instead of the artifact type. Hence, the repository conflict id more
-     * closely reflects the identity of artifacts as perceived by a repository.
-     * 
-     * @param artifact The artifact, must not be <code>null</code>.
-     * @return The repository conflict id, never <code>null</code>.
+     * Remove the project with the groupId, artifactId and version of this one.
+     * @return <code>false</code> if there was no such project
+     * @since 3.16
      */
-    private String getConflictId( org.apache.maven.artifact.Artifact artifact )
+    public boolean removeProject( MavenProject mavenProject )
     {
-        StringBuilder buffer = new StringBuilder( 128 );
-        buffer.append( artifact.getGroupId() );
-        buffer.append( ':' ).append( artifact.getArtifactId() );
-        if ( artifact.getArtifactHandler() != null )
+        GroupArtifact groupArtifact = findGroupArtifact( mavenProject.getGroupId(), mavenProject.getArtifactId() );
+        if ( groupArtifact == null )
         {
-            buffer.append( ':' ).append( artifact.getArtifactHandler().getExtension() );
+            return false;
         }
-        else
+        synchronized ( groupArtifact )
         {
-            buffer.append( ':' ).append( artifact.getType() );
+            if ( !groupArtifact.remove( mavenProject.getVersion() ) )
+            {
+                return false;
+            }
+            projectKeys.remove( projectKey( mavenProject ) );
         }
-        if ( artifact.hasClassifier() )
+        invalidateRepository();
+        return true;
+    }
+
+    private static String projectKey( MavenProject mavenProject )
+    {
+        return mavenProject.getGroupId() + ':' + mavenProject.getArtifactId() + ':' + mavenProject.getVersion();
+    }
+
+    /**
+     * after the keys have changed, so a repository built concurrently is not kept
+     */
+    private synchronized void invalidateRepository()
+    {
+        repository = null;
+    }
+
+    /**
+     * @return a repository whose key is the set of the current projects, the same instance as long as no project is
+     *         added or removed
+     */
+    public synchronized WorkspaceRepository getRepository()
+    {
+        if ( repository == null )
         {
-            buffer.append( ':' ).append( artifact.getClassifier() );
+            repository = new WorkspaceRepository( REPOSITORY_ID, new HashSet<>( projectKeys ) );
         }
-        return buffer.toString();
+        return repository;
     }
 
-    private String getConflictId( Artifact artifact )
+    /**
+     * @return <code>null</code> unless the build outputs are resolved, for the tests
+     */
+    FileStatusCache getFileStatusCache()
     {
-        StringBuilder buffer = new StringBuilder( 128 );
-        buffer.append( artifact.getGroupId() );
-        buffer.append( ':' ).append( artifact.getArtifactId() );
-        buffer.append( ':' ).append( artifact.getExtension() );
-        if ( artifact.getClassifier().length() > 0 )
+        return fileStatusCache;
+    }
+
+    /**
+     * release the watch service used by the build outputs mode, the file checks are not cached anymore. Can be
+     * called several times.
+     * @since 3.16
+     */
+    @Override
+    public void close()
+    {
+        if ( fileStatusCache != null )
         {
-            buffer.append( ':' ).append( artifact.getClassifier() );
+            fileStatusCache.close();
         }
-        return buffer.toString();
     }
 
-    public File findArtifact( Artifact artifact )
+    /**
+     * The versions of a groupId and artifactId, copied on write: the lookups read an immutable map.
+     */
+    private static final class GroupArtifact
     {
-        String projectKey = artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion();
+        private volatile Map<String, ProjectArtifacts> versions;
 
-        MavenProject project = projectsByGAV.get( projectKey );
+        GroupArtifact( Map<String, ProjectArtifacts> versions )
+        {
+            this.versions = Collections.unmodifiableMap( versions );
+        }
 
-        if ( project != null )
+        synchronized void put( String version, ProjectArtifacts project )
         {
-            return find( project, artifact );
+            Map<String, ProjectArtifacts> copy = new LinkedHashMap<>( versions );
+            copy.put( version, project );
+            versions = Collections.unmodifiableMap( copy );
         }
 
-        return null;
+        synchronized boolean remove( String version )
+        {
+            if ( !versions.containsKey( version ) )
+            {
+                return false;
+            }
+            Map<String, ProjectArtifacts> copy = new LinkedHashMap<>( versions );
+            copy.remove( version );
+            versions = Collections.unmodifiableMap( copy );
+            return true;
+        }
     }
 
-    public List<String> findVersions( Artifact artifact )
+    /**
+     * The artifacts of a project by extension and classifier. The index is built on first use and built again when
+     * the main artifact is replaced or artifacts are attached, like during a build.
+     */
+    private static final class ProjectArtifacts
     {
-        String key = artifact.getGroupId() + ':' + artifact.getArtifactId();
+        private final MavenProject project;
 
-        List<MavenProject> projects = projectsByGA.get( key );
-        if ( projects == null || projects.isEmpty() )
+        private final File workspaceFile;
+
+        private volatile ArtifactIndex artifactIndex;
+
+        ProjectArtifacts( MavenProject project, File workspaceRoot )
         {
-            return Collections.emptyList();
+            this.project = project;
+            this.workspaceFile = new File( workspaceRoot, project.getArtifactId() );
         }
 
-        List<String> versions = new ArrayList<>();
+        /**
+         * @param fileStatusCache <code>null</code> to point to the workspace file
+         */
+        File find( Artifact artifact, FileStatusCache fileStatusCache )
+        {
+            if ( "pom".equals( artifact.getExtension() ) )
+            {
+                return project.getFile();
+            }
+
+            IndexedArtifact matchingArtifact = getArtifactIndex().find( artifact.getExtension(), artifact.getClassifier() );
+            if ( matchingArtifact == null )
+            {
+                return null;
+            }
+            if ( fileStatusCache != null )
+            {
+                return findBuildOutput( matchingArtifact, fileStatusCache );
+            }
+            matchingArtifact.artifact.setFile( workspaceFile );
+            return matchingArtifact.artifact.getFile();
+        }
 
-        for ( MavenProject project : projects )
+        private File findBuildOutput( IndexedArtifact matchingArtifact, FileStatusCache fileStatusCache )
         {
-            if ( find( project, artifact ) != null )
+            // set once packaged
+            File file = matchingArtifact.artifact.getFile();
+            if ( file != null && fileStatusCache.exists( file ) )
+            {
+                return file;
+            }
+            File[] outputs = matchingArtifact.outputs;
+            if ( outputs == null )
             {
-                versions.add( project.getVersion() );
+                outputs = getBuildOutputs( matchingArtifact );
+                matchingArtifact.outputs = outputs;
             }
+            for ( File output : outputs )
+            {
+                if ( fileStatusCache.exists( output ) )
+                {
+                    return output;
+                }
+            }
+            return null;
         }
 
-        return Collections.unmodifiableList( versions );
+        /**
+         * the packaged file then, for jars, the output directory
+         */
+        private File[] getBuildOutputs( IndexedArtifact matchingArtifact )
+        {
+            Build build = project.getBuild();
+            if ( build == null || build.getDirectory() == null )
+            {
+                return new File[0];
+            }
+            List<File> outputs = new ArrayList<>( 2 );
+            String name = build.getFinalName() != null ? build.getFinalName()
+                            : project.getArtifactId() + '-' + project.getVersion();
+            if ( !matchingArtifact.classifier.isEmpty() )
+            {
+                name += '-' + matchingArtifact.classifier;
+            }
+            outputs.add( new File( build.getDirectory(), name + '.' + matchingArtifact.extension ) );
+            if ( "jar".equals( matchingArtifact.extension ) )
+            {
+                if ( matchingArtifact.classifier.isEmpty() && build.getOutputDirectory() != null )
+                {
+                    outputs.add( new File( build.getOutputDirectory() ) );
+                }
+                else if ( "tests".equals( matchingArtifact.classifier ) && build.getTestOutputDirectory() != null )
+                {
+                    outputs.add( new File( build.getTestOutputDirectory() ) );
+                }
+            }
+            return outputs.toArray( new File[0] );
+        }
+
+        private ArtifactIndex getArtifactIndex()
+        {
+            ArtifactIndex current = artifactIndex;
+            org.apache.maven.artifact.Artifact mainArtifact = project.getArtifact();
+            List<org.apache.maven.artifact.Artifact> attachedArtifacts = project.getAttachedArtifacts();
+            int attachedCount = attachedArtifacts == null ? 0 : attachedArtifacts.size();
+            if ( current == null || current.mainArtifact != mainArtifact || current.attachedCount != attachedCount )
+            {
+                current = new ArtifactIndex( project, mainArtifact, attachedArtifacts );
+                artifactIndex = current;
+            }
+            return current;
+        }
     }
-    
-    public void addProject(MavenProject mavenProject) {
-        String key = mavenProject.getGroupId() + ':' + mavenProject.getArtifactId();
-        this.projectsByGA.put( key, Collections.singletonList( mavenProject ) );
-        
-        String projectKey = mavenProject.getGroupId() + ':' + mavenProject.getArtifactId() + ':' + mavenProject.getVersion();
-        
-        this.projectsByGAV.put( projectKey, mavenProject );
+
+    /**
+     * Immutable once built. Only the artifacts with the groupId and artifactId of the project are indexed, like the
+     * repository conflict id comparison it replaces. The main artifact wins over the attached ones, and the first
+     * attached artifact wins over the next ones.
+     */
+    private static final class ArtifactIndex
+    {
+        private final org.apache.maven.artifact.Artifact mainArtifact;
+
+        private final int attachedCount;
+
+        /**
+         * extension -> classifier ("" for none) -> artifact
+         */
+        private final Map<String, Map<String, IndexedArtifact>> artifacts = new HashMap<>( 4 );
+
+        ArtifactIndex( MavenProject project, org.apache.maven.artifact.Artifact mainArtifact,
+                       Collection<org.apache.maven.artifact.Artifact> attachedArtifacts )
+        {
+            this.mainArtifact = mainArtifact;
+            this.attachedCount = attachedArtifacts == null ? 0 : attachedArtifacts.size();
+            add( project, mainArtifact );
+            if ( attachedArtifacts != null )
+            {
+                for ( org.apache.maven.artifact.Artifact attachedArtifact : attachedArtifacts )
+                {
+                    add( project, attachedArtifact );
+                }
+            }
+        }
+
+        private void add( MavenProject project, org.apache.maven.artifact.Artifact artifact )
+        {
+            if ( artifact == null || !project.getGroupId().equals( artifact.getGroupId() )
+                || !project.getArtifactId().equals( artifact.getArtifactId() ) )
+            {
+                return;
+            }
+            // the repository conflict id uses the artifact file extension instead of the artifact type
+            String extension = artifact.getArtifactHandler() != null ? artifact.getArtifactHandler().getExtension()
+                            : artifact.getType();
+            String classifier = artifact.hasClassifier() ? artifact.getClassifier() : "";
+            artifacts.computeIfAbsent( extension, e -> new HashMap<>( 2 ) )
+                .putIfAbsent( classifier, new IndexedArtifact( artifact, extension, classifier ) );
+        }
+
+        IndexedArtifact find( String extension, String classifier )
+        {
+            Map<String, IndexedArtifact> byClassifier = artifacts.get( extension );
+            return byClassifier == null ? null : byClassifier.get( classifier );
+        }
     }
 
-    public WorkspaceRepository getRepository()
+    private static final class IndexedArtifact
     {
-        return repository;
+        private final org.apache.maven.artifact.Artifact artifact;
+
+        private final String extension;
+
+        private final String classifier;
+
+        /**
+         * candidate build outputs, computed on first use
+         */
+        private volatile File[] outputs;
+
+        IndexedArtifact( org.apache.maven.artifact.Artifact artifact, String extension, String classifier )
+        {
+            this.artifact = artifact;
+            this.extension = extension;
+            this.classifier = classifier;
+        }
     }
 }
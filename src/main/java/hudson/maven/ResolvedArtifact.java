@@ -0,0 +1,86 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Outcome of the resolution of an artifact by {@link MavenEmbedder#resolve(java.util.Collection, List)}.
+ * @since 3.16
+ */
+public final class ResolvedArtifact
+{
+    private final Artifact artifact;
+
+    private final boolean resolved;
+
+    private final String repositoryId;
+
+    private final List<Exception> exceptions;
+
+    ResolvedArtifact( Artifact artifact, boolean resolved, String repositoryId, List<Exception> exceptions ) {
+        this.artifact = artifact;
+        this.resolved = resolved;
+        this.repositoryId = repositoryId;
+        this.exceptions = Collections.unmodifiableList( exceptions );
+    }
+
+    /**
+     * @return the requested artifact, with its file if it is resolved
+     */
+    public Artifact getArtifact() {
+        return artifact;
+    }
+
+    /**
+     * @return the file of the artifact in the local repository, <code>null</code> if it is not resolved
+     */
+    public File getFile() {
+        return resolved ? artifact.getFile() : null;
+    }
+
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    /**
+     * @return the id of the repository the artifact comes from, <code>null</code> if it is not resolved
+     */
+    public String getRepositoryId() {
+        return repositoryId;
+    }
+
+    /**
+     * @return why the artifact is not resolved, or the problems met in the repositories tried before the one which
+     *         had it
+     */
+    public List<Exception> getExceptions() {
+        return exceptions;
+    }
+
+    @Override
+    public String toString() {
+        return artifact + ( resolved ? " resolved from " + repositoryId : " not resolved " + exceptions );
+    }
+}
@@ -0,0 +1,136 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Coordinates of a pom as written in the file, see {@link MavenEmbedder#scanProjects(File)}.
+ * The groupId and the version are inherited from the parent element if missing, nothing else is inherited
+ * nor interpolated.
+ * @since 3.16
+ */
+public final class ScannedProject
+{
+    private final File pomFile;
+
+    private final String groupId;
+
+    private final String artifactId;
+
+    private final String version;
+
+    private final String packaging;
+
+    private final List<String> modules;
+
+    private final String parentGroupId;
+
+    private final String parentArtifactId;
+
+    private final String parentVersion;
+
+    private final String parentRelativePath;
+
+    ScannedProject( File pomFile, String groupId, String artifactId, String version, String packaging,
+                    List<String> modules, String parentGroupId, String parentArtifactId, String parentVersion,
+                    String parentRelativePath ) {
+        this.pomFile = pomFile;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.packaging = packaging;
+        this.modules = Collections.unmodifiableList( modules );
+        this.parentGroupId = parentGroupId;
+        this.parentArtifactId = parentArtifactId;
+        this.parentVersion = parentVersion;
+        this.parentRelativePath = parentRelativePath;
+    }
+
+    public File getPomFile() {
+        return pomFile;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return <code>jar</code> if not set
+     */
+    public String getPackaging() {
+        return packaging;
+    }
+
+    /**
+     * @return the modules of the <code>modules</code> element, the ones declared in profiles are ignored
+     */
+    public List<String> getModules() {
+        return modules;
+    }
+
+    /**
+     * @return <code>null</code> if the pom has no parent
+     */
+    public String getParentGroupId() {
+        return parentGroupId;
+    }
+
+    public String getParentArtifactId() {
+        return parentArtifactId;
+    }
+
+    public String getParentVersion() {
+        return parentVersion;
+    }
+
+    /**
+     * @return <code>../pom.xml</code> if the pom has a parent without relativePath
+     */
+    public String getParentRelativePath() {
+        return parentRelativePath;
+    }
+
+    public boolean hasParent() {
+        return parentArtifactId != null;
+    }
+
+    /**
+     * @return <code>groupId:artifactId:version</code>
+     */
+    public String getId() {
+        return groupId + ':' + artifactId + ':' + version;
+    }
+
+    @Override
+    public String toString() {
+        return getId() + " (" + pomFile + ")";
+    }
+}
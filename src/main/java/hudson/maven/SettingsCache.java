@@ -0,0 +1,279 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.settings.Settings;
+
+/**
+ * JVM wide cache of the effective {@link Settings}, shared by all the {@link MavenEmbedder}s.
+ * An entry is keyed by the global and user settings paths and a digest of the properties used for the
+ * interpolation, it is rebuilt as soon as the mtime or the size of one of the settings files changes. The least
+ * recently used entries are dropped past {@value #MAX_ENTRIES} entries.
+ * <b>this class is not designed for external use</b>
+ * @since 3.16
+ */
+final class SettingsCache
+{
+
+    static final SettingsCache INSTANCE = new SettingsCache();
+
+    /**
+     * the digest changes each time somebody touches the system properties, don't keep them all
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    /**
+     * access ordered so the first entry is always the least recently used one, guarded by itself
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+
+    private SettingsCache() {
+        // only the shared instance
+    }
+
+    /**
+     * @param key see {@link #newKey(File, File, Properties, Properties...)}
+     * @param builder used on a miss or when one of the files has changed
+     * @return the cached settings, callers must not modify it
+     */
+    Settings get( Key key, SettingsFactory builder )
+        throws MavenEmbedderException {
+        Entry entry;
+        synchronized ( entries ) {
+            entry = entries.get( key );
+        }
+        if ( entry != null && entry.isUpToDate() ) {
+            return entry.settings;
+        }
+        Stamp global = new Stamp( key.globalSettingsFile );
+        Stamp user = new Stamp( key.userSettingsFile );
+        Settings settings = builder.build();
+        synchronized ( entries ) {
+            entries.put( key, new Entry( global, user, settings ) );
+            Iterator<Key> it = entries.keySet().iterator();
+            while ( entries.size() > MAX_ENTRIES && it.hasNext() ) {
+                it.next();
+                it.remove();
+            }
+        }
+        return settings;
+    }
+
+    void clear() {
+        synchronized ( entries ) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @param systemProperties in the order they are merged
+     */
+    static Key newKey( File globalSettingsFile, File userSettingsFile, Properties userProperties,
+                       Properties... systemProperties ) {
+        return new Key( globalSettingsFile, userSettingsFile, digest( userProperties, systemProperties ) );
+    }
+
+    static String digest( Properties userProperties, Properties... systemProperties ) {
+        MessageDigest digest = newDigest();
+        update( digest, userProperties );
+        for ( Properties properties : systemProperties ) {
+            // separator so properties can't move from a set to another
+            digest.update( (byte) 0 );
+            update( digest, properties );
+        }
+        return toHex( digest.digest() );
+    }
+
+    private static void update( MessageDigest digest, Properties properties ) {
+        if ( properties == null ) {
+            return;
+        }
+        // properties are not ordered
+        Map<String, String> sorted = new TreeMap<>();
+        for ( String name : properties.stringPropertyNames() ) {
+            sorted.put( name, properties.getProperty( name ) );
+        }
+        for ( Map.Entry<String, String> entry : sorted.entrySet() ) {
+            digest.update( entry.getKey().getBytes( StandardCharsets.UTF_8 ) );
+            digest.update( (byte) '=' );
+            digest.update( entry.getValue().getBytes( StandardCharsets.UTF_8 ) );
+            digest.update( (byte) '\n' );
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance( "SHA-256" );
+        } catch ( NoSuchAlgorithmException e ) {
+            // mandatory algorithm for every java platform
+            throw new IllegalStateException( e );
+        }
+    }
+
+    static String toHex( byte[] bytes ) {
+        StringBuilder sb = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes ) {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The digest of the properties of a {@link Key}, computed again only when the properties changed: comparing them
+     * with a copy is much cheaper than sorting and hashing them on each lookup. The defaults of the properties are
+     * not compared.
+     */
+    static final class PropertiesDigest {
+        /**
+         * copies of the user properties then the system properties, guarded by this
+         */
+        private List<Map<Object, Object>> snapshot;
+
+        private String digest;
+
+        /**
+         * @see SettingsCache#newKey(File, File, Properties, Properties...)
+         */
+        synchronized Key newKey( File globalSettingsFile, File userSettingsFile, Properties userProperties,
+                                 Properties... systemProperties ) {
+            List<Properties> properties = new ArrayList<>( systemProperties.length + 1 );
+            properties.add( userProperties );
+            for ( Properties p : systemProperties ) {
+                properties.add( p );
+            }
+            if ( !matches( properties ) ) {
+                digest = digest( userProperties, systemProperties );
+                snapshot = new ArrayList<>( properties.size() );
+                for ( Properties p : properties ) {
+                    snapshot.add( p == null ? null : new HashMap<>( p ) );
+                }
+            }
+            return new Key( globalSettingsFile, userSettingsFile, digest );
+        }
+
+        private boolean matches( List<Properties> properties ) {
+            if ( snapshot == null ) {
+                return false;
+            }
+            for ( int i = 0; i < properties.size(); i++ ) {
+                Properties p = properties.get( i );
+                Map<Object, Object> copy = snapshot.get( i );
+                if ( p == null ? copy != null : copy == null || !p.equals( copy ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    interface SettingsFactory {
+        Settings build() throws MavenEmbedderException;
+    }
+
+    static final class Key {
+        private final File globalSettingsFile;
+
+        private final File userSettingsFile;
+
+        private final String propertiesDigest;
+
+        Key( File globalSettingsFile, File userSettingsFile, String propertiesDigest ) {
+            this.globalSettingsFile = globalSettingsFile.getAbsoluteFile();
+            this.userSettingsFile = userSettingsFile.getAbsoluteFile();
+            this.propertiesDigest = propertiesDigest;
+        }
+
+        String getPropertiesDigest() {
+            return propertiesDigest;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+            Key key = (Key) o;
+            return globalSettingsFile.equals( key.globalSettingsFile )
+                && userSettingsFile.equals( key.userSettingsFile )
+                && propertiesDigest.equals( key.propertiesDigest );
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash( globalSettingsFile, userSettingsFile, propertiesDigest );
+        }
+    }
+
+    /**
+     * mtime and size of a settings file, both 0 if the file doesn't exist
+     */
+    private static final class Stamp {
+        private final File file;
+
+        private final long lastModified;
+
+        private final long length;
+
+        Stamp( File file ) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        boolean isUpToDate() {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+
+    private static final class Entry {
+        private final Stamp global;
+
+        private final Stamp user;
+
+        private final Settings settings;
+
+        Entry( Stamp global, Stamp user, Settings settings ) {
+            this.global = global;
+            this.user = user;
+            this.settings = settings;
+        }
+
+        boolean isUpToDate() {
+            return global.isUpToDate() && user.isUpToDate();
+        }
+    }
+}
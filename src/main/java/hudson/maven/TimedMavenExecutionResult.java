@@ -0,0 +1,108 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.apache.maven.execution.BuildSummary;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.apache.maven.project.DependencyResolutionResult;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * {@link MavenExecutionResult} returned by {@link MavenEmbedder#execute(MavenRequest)} when
+ * {@link MavenRequest#isCollectExecutionTimings()}.
+ * @since 3.16
+ */
+public class TimedMavenExecutionResult
+    implements MavenExecutionResult
+{
+    private final MavenExecutionResult delegate;
+
+    private final ExecutionTimings timings;
+
+    public TimedMavenExecutionResult( MavenExecutionResult delegate, ExecutionTimings timings ) {
+        this.delegate = delegate;
+        this.timings = timings;
+    }
+
+    public ExecutionTimings getTimings() {
+        return timings;
+    }
+
+    @Override
+    public MavenExecutionResult setProject( MavenProject project ) {
+        delegate.setProject( project );
+        return this;
+    }
+
+    @Override
+    public MavenProject getProject() {
+        return delegate.getProject();
+    }
+
+    @Override
+    public MavenExecutionResult setTopologicallySortedProjects( List<MavenProject> projects ) {
+        delegate.setTopologicallySortedProjects( projects );
+        return this;
+    }
+
+    @Override
+    public List<MavenProject> getTopologicallySortedProjects() {
+        return delegate.getTopologicallySortedProjects();
+    }
+
+    @Override
+    public MavenExecutionResult setDependencyResolutionResult( DependencyResolutionResult result ) {
+        delegate.setDependencyResolutionResult( result );
+        return this;
+    }
+
+    @Override
+    public DependencyResolutionResult getDependencyResolutionResult() {
+        return delegate.getDependencyResolutionResult();
+    }
+
+    @Override
+    public List<Throwable> getExceptions() {
+        return delegate.getExceptions();
+    }
+
+    @Override
+    public MavenExecutionResult addException( Throwable e ) {
+        delegate.addException( e );
+        return this;
+    }
+
+    @Override
+    public boolean hasExceptions() {
+        return delegate.hasExceptions();
+    }
+
+    @Override
+    public BuildSummary getBuildSummary( MavenProject project ) {
+        return delegate.getBuildSummary( project );
+    }
+
+    @Override
+    public void addBuildSummary( BuildSummary summary ) {
+        delegate.addBuildSummary( summary );
+    }
+}
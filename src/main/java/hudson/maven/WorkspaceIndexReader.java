@@ -0,0 +1,706 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.WorkspaceReader;
+import org.eclipse.aether.repository.WorkspaceRepository;
+
+/**
+ * {@link WorkspaceReader} finding the projects checked out under some workspace roots, to be set with
+ * {@link MavenRequest#setWorkspaceReader(WorkspaceReader)}. The poms found under the roots are indexed by
+ * <code>groupId:artifactId:version</code> in a file shared by the JVMs of the node and memory mapped, a lookup is
+ * a hash probe in the mapped file.
+ * <p>
+ * {@link #refresh()} (done on creation) updates the index without scanning the roots again: only the directories
+ * whose modification time changed are listed and only the poms whose modification time changed are read. The
+ * refresh is done under a lock on <code>&lt;index file&gt;.lock</code>, it starts from the index file if another
+ * JVM wrote it since and writes it before releasing the lock. The lookups use the index of the last refresh.
+ * Readers with other workspace roots can share the index file: it holds the directories of all of them, a
+ * directory is only removed from it once it no longer exists, and a reader only finds the poms under its roots.
+ * The directories named <code>src</code> or <code>target</code> and the hidden ones are not searched, the
+ * coordinates are read like {@link MavenEmbedder#scanProjects(File)} does (no interpolation).
+ * <p>
+ * An artifact is resolved to the pom for the <code>pom</code> extension, otherwise to the first existing of
+ * <code>target/artifactId-version[-classifier].extension</code> and, for jars, <code>target/classes</code>
+ * (or <code>target/test-classes</code> for the <code>tests</code> classifier). The reader must be closed.
+ * @since 3.16
+ */
+public class WorkspaceIndexReader
+    implements WorkspaceReader, Closeable
+{
+    private static final int MAGIC = 0x484d5749;
+
+    private static final int FORMAT_VERSION = 2;
+
+    // header: magic, version, gav slots, ga slots, records offset, sources offset
+    private static final int HEADER_SIZE = 6 * 4;
+
+    // record: gav hash, ga hash, next record of the same groupId/artifactId, then the strings
+    private static final int RECORD_STRINGS = 3 * 4;
+
+    public static final int DEFAULT_MAX_DEPTH = 4;
+
+    /**
+     * the index files refreshed in this JVM: the file lock is taken by a single channel at a time
+     */
+    private static final ConcurrentMap<File, Object> REFRESHING = new ConcurrentHashMap<>();
+
+    private final File indexFile;
+
+    private final List<File> workspaceRoots;
+
+    private final int maxDepth;
+
+    private final WorkspaceRepository repository;
+
+    private final FileStatusCache fileStatusCache = new FileStatusCache();
+
+    /**
+     * the mapped index, read with absolute gets only so it can be shared by the threads
+     */
+    private volatile ByteBuffer index;
+
+    /**
+     * identity of the index file the maps were loaded from or written to, guarded by this
+     */
+    private List<Object> indexKey;
+
+    /**
+     * the directories listed, by path, guarded by this
+     */
+    private final Map<String, Directory> directories = new HashMap<>();
+
+    /**
+     * the poms found, by path, guarded by this
+     */
+    private final Map<String, Pom> poms = new HashMap<>();
+
+    /**
+     * poms read since the creation, for the tests
+     */
+    int readPoms;
+
+    public WorkspaceIndexReader( File indexFile, List<File> workspaceRoots )
+        throws MavenEmbedderException {
+        this( indexFile, workspaceRoots, DEFAULT_MAX_DEPTH );
+    }
+
+    /**
+     * @param indexFile created if needed, can be shared by several JVMs
+     * @param maxDepth how deep under the roots the poms are searched
+     */
+    public WorkspaceIndexReader( File indexFile, List<File> workspaceRoots, int maxDepth )
+        throws MavenEmbedderException {
+        this.indexFile = indexFile;
+        this.workspaceRoots = new ArrayList<>( workspaceRoots.size() );
+        for ( File root : workspaceRoots ) {
+            this.workspaceRoots.add( root.getAbsoluteFile() );
+        }
+        this.maxDepth = maxDepth;
+        this.repository = new WorkspaceRepository( "workspace-index", indexFile.getAbsolutePath() );
+        refresh();
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @return number of indexed projects under the roots of this reader
+     */
+    public synchronized int size() {
+        int size = 0;
+        for ( Pom pom : poms.values() ) {
+            if ( pom.isIndexed() && isUnderRoot( pom.path ) ) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Take into account the index file written by another JVM and the poms added, changed or removed since, and
+     * write the index file again if something changed.
+     */
+    public synchronized void refresh()
+        throws MavenEmbedderException {
+        File file = indexFile.getAbsoluteFile();
+        synchronized ( REFRESHING.computeIfAbsent( file, f -> new Object() ) ) {
+            try {
+                Files.createDirectories( file.getParentFile().toPath() );
+                try (FileChannel channel = FileChannel.open( new File( file.getPath() + ".lock" ).toPath(),
+                                                             StandardOpenOption.CREATE, StandardOpenOption.WRITE )) {
+                    FileLock lock = channel.lock();
+                    try {
+                        update();
+                    } finally {
+                        lock.release();
+                    }
+                }
+            } catch ( IOException e ) {
+                throw new MavenEmbedderException( "Cannot lock " + indexFile + ": " + e.getMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * called with the index file locked
+     */
+    private void update()
+        throws MavenEmbedderException {
+        List<Object> key = indexKey();
+        if ( key == null || !key.equals( indexKey ) ) {
+            load( key );
+        }
+        // missing or damaged
+        boolean changed = indexKey == null;
+        List<Directory> toList = new ArrayList<>();
+
+        for ( File root : workspaceRoots ) {
+            if ( !directories.containsKey( root.getPath() ) && root.isDirectory() ) {
+                toList.add( new Directory( root.getPath(), 0, 0 ) );
+            }
+        }
+        for ( Directory directory : new ArrayList<>( directories.values() ) ) {
+            File file = new File( directory.path );
+            // the directories of the other roots sharing the file are kept up to date too
+            if ( !file.isDirectory() ) {
+                directories.remove( directory.path );
+                changed = true;
+            } else if ( file.lastModified() != directory.lastModified ) {
+                toList.add( directory );
+            }
+        }
+
+        List<File> newPoms = new ArrayList<>();
+        while ( !toList.isEmpty() ) {
+            Directory directory = toList.remove( toList.size() - 1 );
+            File dir = new File( directory.path );
+            directory.lastModified = dir.lastModified();
+            directories.put( directory.path, directory );
+            changed = true;
+            File[] children = dir.listFiles();
+            if ( children == null ) {
+                continue;
+            }
+            for ( File child : children ) {
+                String name = child.getName();
+                if ( "pom.xml".equals( name ) ) {
+                    if ( !poms.containsKey( child.getPath() ) && child.isFile() ) {
+                        newPoms.add( child );
+                    }
+                } else if ( directory.depth < maxDepth && !name.startsWith( "." ) && !"src".equals( name )
+                    && !"target".equals( name ) && !directories.containsKey( child.getPath() ) && child.isDirectory() ) {
+                    toList.add( new Directory( child.getPath(), 0, directory.depth + 1 ) );
+                }
+            }
+        }
+
+        for ( Pom pom : new ArrayList<>( poms.values() ) ) {
+            File file = new File( pom.path );
+            if ( !directories.containsKey( file.getParent() ) || !file.isFile() ) {
+                poms.remove( pom.path );
+                changed = true;
+            } else if ( file.lastModified() != pom.lastModified ) {
+                poms.put( pom.path, readPom( file ) );
+                changed = true;
+            }
+        }
+        for ( File file : newPoms ) {
+            poms.put( file.getPath(), readPom( file ) );
+            changed = true;
+        }
+
+        if ( changed || index == null ) {
+            write();
+        }
+    }
+
+    private boolean isUnderRoot( String path ) {
+        for ( File root : workspaceRoots ) {
+            String rootPath = root.getPath();
+            if ( path.startsWith( rootPath ) && ( path.length() == rootPath.length()
+                || path.charAt( rootPath.length() ) == File.separatorChar ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Pom readPom( File file ) {
+        readPoms++;
+        long lastModified = file.lastModified();
+        try {
+            ScannedProject project = ProjectScanner.read( file );
+            return new Pom( file.getPath(), lastModified, project.getGroupId(), project.getArtifactId(),
+                            project.getVersion() );
+        } catch ( MavenEmbedderException e ) {
+            // not read again until it changes
+            return new Pom( file.getPath(), lastModified, null, null, null );
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Lookups
+    // ----------------------------------------------------------------------
+
+    @Override
+    public WorkspaceRepository getRepository() {
+        return repository;
+    }
+
+    @Override
+    public File findArtifact( Artifact artifact ) {
+        ByteBuffer buffer = index;
+        int record = findRecord( buffer, artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion() );
+        return record == 0 ? null : resolve( buffer, record, artifact );
+    }
+
+    /**
+     * @return whether the pom of the record is under the roots of this reader
+     */
+    private boolean isVisible( ByteBuffer buffer, int record ) {
+        int position = skip( buffer, skip( buffer, skip( buffer, record + RECORD_STRINGS ) ) );
+        return isUnderRoot( readString( buffer, position ) );
+    }
+
+    @Override
+    public List<String> findVersions( Artifact artifact ) {
+        ByteBuffer buffer = index;
+        int gaSlots = buffer.getInt( 12 );
+        int gaTable = HEADER_SIZE + 4 * buffer.getInt( 8 );
+        int hash = hash( hash( hash( 0, artifact.getGroupId() ), ':' ), artifact.getArtifactId() );
+        int record = 0;
+        for ( int i = spread( hash ) & ( gaSlots - 1 ); ; i = ( i + 1 ) & ( gaSlots - 1 ) ) {
+            int candidate = buffer.getInt( gaTable + 4 * i );
+            if ( candidate == 0 ) {
+                return Collections.emptyList();
+            }
+            if ( buffer.getInt( candidate + 4 ) == hash && matchesGa( buffer, candidate, artifact.getGroupId(),
+                                                                       artifact.getArtifactId() ) ) {
+                record = candidate;
+                break;
+            }
+        }
+        List<String> versions = new ArrayList<>( 1 );
+        for ( ; record != 0; record = buffer.getInt( record + 8 ) ) {
+            if ( isVisible( buffer, record ) && resolve( buffer, record, artifact ) != null ) {
+                String version = readString( buffer, skip( buffer, skip( buffer, record + RECORD_STRINGS ) ) );
+                // a version can be under several roots sharing the index
+                if ( !versions.contains( version ) ) {
+                    versions.add( version );
+                }
+            }
+        }
+        return Collections.unmodifiableList( versions );
+    }
+
+    /**
+     * @return offset of the first record under the roots of this reader, <code>0</code> if not found
+     */
+    private int findRecord( ByteBuffer buffer, String groupId, String artifactId, String version ) {
+        int gavSlots = buffer.getInt( 8 );
+        int hash = hash( hash( hash( hash( hash( 0, groupId ), ':' ), artifactId ), ':' ), version );
+        for ( int i = spread( hash ) & ( gavSlots - 1 ); ; i = ( i + 1 ) & ( gavSlots - 1 ) ) {
+            int record = buffer.getInt( HEADER_SIZE + 4 * i );
+            if ( record == 0 ) {
+                return 0;
+            }
+            if ( buffer.getInt( record ) == hash && matchesGa( buffer, record, groupId, artifactId )
+                && matches( buffer, skip( buffer, skip( buffer, record + RECORD_STRINGS ) ), version )
+                && isVisible( buffer, record ) ) {
+                return record;
+            }
+        }
+    }
+
+    private static boolean matchesGa( ByteBuffer buffer, int record, String groupId, String artifactId ) {
+        int position = record + RECORD_STRINGS;
+        return matches( buffer, position, groupId ) && matches( buffer, skip( buffer, position ), artifactId );
+    }
+
+    private File resolve( ByteBuffer buffer, int record, Artifact artifact ) {
+        int position = record + RECORD_STRINGS;
+        position = skip( buffer, position );
+        String artifactId = readString( buffer, position );
+        position = skip( buffer, position );
+        String version = readString( buffer, position );
+        File pom = new File( readString( buffer, skip( buffer, position ) ) );
+        if ( "pom".equals( artifact.getExtension() ) ) {
+            return fileStatusCache.exists( pom ) ? pom : null;
+        }
+        File target = new File( pom.getParentFile(), "target" );
+        String classifier = artifact.getClassifier();
+        File packaged = new File( target, artifactId + '-' + version + ( classifier.isEmpty() ? "" : '-' + classifier )
+            + '.' + artifact.getExtension() );
+        if ( fileStatusCache.exists( packaged ) ) {
+            return packaged;
+        }
+        if ( "jar".equals( artifact.getExtension() ) ) {
+            File classes = classifier.isEmpty() ? new File( target, "classes" )
+                            : "tests".equals( classifier ) ? new File( target, "test-classes" ) : null;
+            if ( classes != null && fileStatusCache.exists( classes ) ) {
+                return classes;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        fileStatusCache.close();
+    }
+
+    // ----------------------------------------------------------------------
+    // Index file
+    // ----------------------------------------------------------------------
+
+    private static int hash( int hash, String value ) {
+        for ( int i = 0; i < value.length(); i++ ) {
+            hash = 31 * hash + value.charAt( i );
+        }
+        return hash;
+    }
+
+    private static int hash( int hash, char c ) {
+        return 31 * hash + c;
+    }
+
+    private static int spread( int hash ) {
+        return hash ^ ( hash >>> 16 );
+    }
+
+    /**
+     * strings are an int length followed by the chars
+     */
+    private static boolean matches( ByteBuffer buffer, int position, String value ) {
+        int length = buffer.getInt( position );
+        if ( length != value.length() ) {
+            return false;
+        }
+        for ( int i = 0; i < length; i++ ) {
+            if ( buffer.getChar( position + 4 + 2 * i ) != value.charAt( i ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skip( ByteBuffer buffer, int position ) {
+        return position + 4 + 2 * buffer.getInt( position );
+    }
+
+    private static String readString( ByteBuffer buffer, int position ) {
+        char[] chars = new char[buffer.getInt( position )];
+        for ( int i = 0; i < chars.length; i++ ) {
+            chars[i] = buffer.getChar( position + 4 + 2 * i );
+        }
+        return new String( chars );
+    }
+
+    private static void writeString( DataOutputStream out, String value )
+        throws IOException {
+        out.writeInt( value.length() );
+        out.writeChars( value );
+    }
+
+    /**
+     * @return the file key, modification time and size of the index file, <code>null</code> if it is missing
+     */
+    private List<Object> indexKey() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes( indexFile.toPath(), BasicFileAttributes.class );
+            return Arrays.asList( attributes.fileKey(), attributes.lastModifiedTime(), attributes.size() );
+        } catch ( IOException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * read the index file in place of the maps, if it is damaged the roots will be scanned
+     */
+    private void load( List<Object> key ) {
+        indexKey = null;
+        if ( key == null ) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = map();
+            if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != FORMAT_VERSION ) {
+                return;
+            }
+            int position = buffer.getInt( 20 );
+            int directoryCount = buffer.getInt( position );
+            position += 4;
+            Map<String, Directory> loadedDirectories = new HashMap<>();
+            for ( int i = 0; i < directoryCount; i++ ) {
+                String path = readString( buffer, position );
+                position = skip( buffer, position );
+                loadedDirectories.put( path, new Directory( path, buffer.getLong( position ),
+                                                            buffer.getInt( position + 8 ) ) );
+                position += 12;
+            }
+            int pomCount = buffer.getInt( position );
+            position += 4;
+            Map<String, Pom> loadedPoms = new HashMap<>();
+            for ( int i = 0; i < pomCount; i++ ) {
+                String path = readString( buffer, position );
+                position = skip( buffer, position );
+                long lastModified = buffer.getLong( position );
+                position += 8;
+                if ( buffer.get( position++ ) == 1 ) {
+                    String groupId = readString( buffer, position );
+                    position = skip( buffer, position );
+                    String artifactId = readString( buffer, position );
+                    position = skip( buffer, position );
+                    String version = readString( buffer, position );
+                    position = skip( buffer, position );
+                    loadedPoms.put( path, new Pom( path, lastModified, groupId, artifactId, version ) );
+                } else {
+                    loadedPoms.put( path, new Pom( path, lastModified, null, null, null ) );
+                }
+            }
+            directories.clear();
+            directories.putAll( loadedDirectories );
+            poms.clear();
+            poms.putAll( loadedPoms );
+            index = buffer;
+            indexKey = key;
+        } catch ( IOException | IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException e ) {
+            // damaged, built again
+            directories.clear();
+            poms.clear();
+        }
+    }
+
+    private ByteBuffer map()
+        throws IOException {
+        try (FileChannel channel = FileChannel.open( indexFile.toPath(), StandardOpenOption.READ )) {
+            return channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+    }
+
+    private void write()
+        throws MavenEmbedderException {
+        // sorted by path so the first pom of a duplicated version is probed first whatever the listing order,
+        // the duplicates are kept for the readers with other roots
+        Map<String, List<Pom>> byGa = new LinkedHashMap<>();
+        int indexed = 0;
+        for ( Pom pom : new TreeMap<>( poms ).values() ) {
+            if ( pom.isIndexed() ) {
+                byGa.computeIfAbsent( pom.groupId + ':' + pom.artifactId, ga -> new ArrayList<>() ).add( pom );
+                indexed++;
+            }
+        }
+        int gavSlots = tableSize( indexed );
+        int gaSlots = tableSize( byGa.size() );
+        int recordsOffset = HEADER_SIZE + 4 * gavSlots + 4 * gaSlots;
+
+        try {
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream records = new DataOutputStream( recordBytes );
+            int[] gavTable = new int[gavSlots];
+            int[] gaTable = new int[gaSlots];
+            // position in the records of the "next" field to patch with the offset of the following version
+            List<int[]> links = new ArrayList<>();
+            for ( List<Pom> versions : byGa.values() ) {
+                int gaHash = hash( hash( hash( 0, versions.get( 0 ).groupId ), ':' ), versions.get( 0 ).artifactId );
+                put( gaTable, gaHash, recordsOffset + records.size() );
+                int previous = -1;
+                for ( Pom pom : versions ) {
+                    int offset = recordsOffset + records.size();
+                    if ( previous >= 0 ) {
+                        links.add( new int[]{ previous + 8, offset } );
+                    }
+                    previous = offset;
+                    int gavHash = hash( hash( gaHash, ':' ), pom.version );
+                    put( gavTable, gavHash, offset );
+                    records.writeInt( gavHash );
+                    records.writeInt( gaHash );
+                    records.writeInt( 0 );
+                    writeString( records, pom.groupId );
+                    writeString( records, pom.artifactId );
+                    writeString( records, pom.version );
+                    writeString( records, pom.path );
+                }
+            }
+            records.flush();
+
+            ByteArrayOutputStream sourceBytes = new ByteArrayOutputStream();
+            DataOutputStream sources = new DataOutputStream( sourceBytes );
+            sources.writeInt( directories.size() );
+            for ( Directory directory : directories.values() ) {
+                writeString( sources, directory.path );
+                sources.writeLong( directory.lastModified );
+                sources.writeInt( directory.depth );
+            }
+            sources.writeInt( poms.size() );
+            for ( Pom pom : poms.values() ) {
+                writeString( sources, pom.path );
+                sources.writeLong( pom.lastModified );
+                if ( pom.isIndexed() ) {
+                    sources.writeByte( 1 );
+                    writeString( sources, pom.groupId );
+                    writeString( sources, pom.artifactId );
+                    writeString( sources, pom.version );
+                } else {
+                    sources.writeByte( 0 );
+                }
+            }
+            sources.flush();
+
+            ByteBuffer buffer = ByteBuffer.allocate( recordsOffset + recordBytes.size() + sourceBytes.size() );
+            buffer.putInt( MAGIC ).putInt( FORMAT_VERSION ).putInt( gavSlots ).putInt( gaSlots );
+            buffer.putInt( recordsOffset ).putInt( recordsOffset + recordBytes.size() );
+            for ( int slot : gavTable ) {
+                buffer.putInt( slot );
+            }
+            for ( int slot : gaTable ) {
+                buffer.putInt( slot );
+            }
+            buffer.put( recordBytes.toByteArray() );
+            buffer.put( sourceBytes.toByteArray() );
+            for ( int[] link : links ) {
+                buffer.putInt( link[0], link[1] );
+            }
+            buffer.flip();
+
+            index = store( buffer );
+        } catch ( IOException e ) {
+            throw new MavenEmbedderException( "Cannot write " + indexFile + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * write the index atomically and map it, the index stays in memory if the file cannot be replaced
+     */
+    private ByteBuffer store( ByteBuffer buffer )
+        throws IOException {
+        File directory = indexFile.getAbsoluteFile().getParentFile();
+        Files.createDirectories( directory.toPath() );
+        Path tmp = Files.createTempFile( directory.toPath(), indexFile.getName(), ".tmp" );
+        try {
+            Files.write( tmp, buffer.array() );
+            try {
+                Files.move( tmp, indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            } catch ( IOException e ) {
+                // mapped by another process on some platforms
+                Files.move( tmp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+            ByteBuffer mapped = map();
+            indexKey = indexKey();
+            return mapped;
+        } catch ( IOException e ) {
+            indexKey = null;
+            return buffer.asReadOnlyBuffer();
+        } finally {
+            Files.deleteIfExists( tmp );
+        }
+    }
+
+    private static int tableSize( int entries ) {
+        int size = 16;
+        while ( size < entries * 2 ) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static void put( int[] table, int hash, int offset ) {
+        int i = spread( hash ) & ( table.length - 1 );
+        while ( table[i] != 0 ) {
+            i = ( i + 1 ) & ( table.length - 1 );
+        }
+        table[i] = offset;
+    }
+
+    private static final class Directory
+    {
+        private final String path;
+
+        private long lastModified;
+
+        private final int depth;
+
+        Directory( String path, long lastModified, int depth ) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.depth = depth;
+        }
+    }
+
+    private static final class Pom
+    {
+        private final String path;
+
+        private final long lastModified;
+
+        /**
+         * <code>null</code> if the pom cannot be read
+         */
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String version;
+
+        Pom( String path, long lastModified, String groupId, String artifactId, String version ) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+        }
+
+        /**
+         * not indexed if the coordinates are missing or use properties
+         */
+        boolean isIndexed() {
+            return groupId != null && artifactId != null && version != null
+                && !( groupId + artifactId + version ).contains( "${" );
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link ReactorReader#findArtifact(Artifact)} against the previous lookup building the GAV key and the repository
+ * conflict ids on each call. Not run by the build, run it from the IDE or with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=hudson.maven.ReactorReaderBenchmark</code>,
+ * adding <code>-prof gc</code> to the options shows the allocations per lookup.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ReactorReaderBenchmark
+{
+    private static final File ROOT = new File( "target/reactor" );
+
+    @Param( { "50", "500" } )
+    public int projectCount;
+
+    private Map<String, MavenProject> projects;
+
+    private ReactorReader reactorReader;
+
+    private Artifact[] requests;
+
+    @Setup
+    public void setup() {
+        projects = new HashMap<>();
+        for ( int i = 0; i < projectCount; i++ ) {
+            MavenProject project = TestReactorReader.newProject( "org.test.group" + ( i % 10 ), "module-" + i, "1.0-SNAPSHOT" );
+            project.addAttachedArtifact( TestReactorReader.newArtifact( project.getGroupId(), project.getArtifactId(),
+                                                                        project.getVersion(), "java-source", "sources" ) );
+            project.addAttachedArtifact( TestReactorReader.newArtifact( project.getGroupId(), project.getArtifactId(),
+                                                                        project.getVersion(), "javadoc", "javadoc" ) );
+            project.addAttachedArtifact( TestReactorReader.newArtifact( project.getGroupId(), project.getArtifactId(),
+                                                                        project.getVersion(), "test-jar", "tests" ) );
+            projects.put( project.getGroupId() + ':' + project.getArtifactId() + ':' + project.getVersion(), project );
+        }
+        reactorReader = new ReactorReader( projects, ROOT );
+
+        // main artifacts, last attached artifacts and misses
+        requests = new Artifact[64];
+        for ( int i = 0; i < requests.length; i++ ) {
+            int module = ( i * 7 ) % projectCount;
+            String ga = "org.test.group" + ( module % 10 ) + ":module-" + module;
+            switch ( i % 3 ) {
+                case 0:
+                    requests[i] = new DefaultArtifact( ga + ":jar:1.0-SNAPSHOT" );
+                    break;
+                case 1:
+                    requests[i] = new DefaultArtifact( ga + ":jar:tests:1.0-SNAPSHOT" );
+                    break;
+                default:
+                    requests[i] = new DefaultArtifact( ga + ":jar:1.0" );
+            }
+        }
+    }
+
+    @Benchmark
+    public void indexed( Blackhole blackhole ) {
+        for ( Artifact request : requests ) {
+            blackhole.consume( reactorReader.findArtifact( request ) );
+        }
+    }
+
+    @Benchmark
+    public void keyBuilding( Blackhole blackhole ) {
+        for ( Artifact request : requests ) {
+            blackhole.consume( findByKeys( request ) );
+        }
+    }
+
+    /**
+     * the lookup replaced by the index
+     */
+    private File findByKeys( Artifact artifact ) {
+        MavenProject project =
+            projects.get( artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion() );
+        if ( project == null ) {
+            return null;
+        }
+        if ( "pom".equals( artifact.getExtension() ) ) {
+            return project.getFile();
+        }
+        String requested = conflictId( artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(),
+                                       artifact.getClassifier() );
+        org.apache.maven.artifact.Artifact main = project.getArtifact();
+        if ( requested.equals( conflictId( main ) ) ) {
+            main.setFile( new File( ROOT, project.getArtifactId() ) );
+            return main.getFile();
+        }
+        for ( org.apache.maven.artifact.Artifact attached : project.getAttachedArtifacts() ) {
+            if ( requested.equals( conflictId( attached ) ) ) {
+                attached.setFile( new File( ROOT, project.getArtifactId() ) );
+                return attached.getFile();
+            }
+        }
+        return null;
+    }
+
+    private static String conflictId( org.apache.maven.artifact.Artifact artifact ) {
+        return conflictId( artifact.getGroupId(), artifact.getArtifactId(),
+                           artifact.getArtifactHandler().getExtension(),
+                           artifact.hasClassifier() ? artifact.getClassifier() : "" );
+    }
+
+    private static String conflictId( String groupId, String artifactId, String extension, String classifier ) {
+        StringBuilder buffer = new StringBuilder( 128 );
+        buffer.append( groupId ).append( ':' ).append( artifactId ).append( ':' ).append( extension );
+        if ( classifier.length() > 0 ) {
+            buffer.append( ':' ).append( classifier );
+        }
+        return buffer.toString();
+    }
+
+    public static void main( String[] args ) throws Exception {
+        new Runner( new OptionsBuilder().include( ReactorReaderBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
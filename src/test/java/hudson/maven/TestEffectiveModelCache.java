@@ -0,0 +1,169 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.apache.maven.model.Model;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestEffectiveModelCache {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static Model newModel( String artifactId ) {
+        Model model = new Model();
+        model.setModelVersion( "4.0.0" );
+        model.setGroupId( "test" );
+        model.setArtifactId( artifactId );
+        model.setVersion( "1.0" );
+        return model;
+    }
+
+    private File writeParent( File dir, String value ) throws Exception {
+        File pom = new File( dir, "pom.xml" );
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion>"
+            + "<groupId>test</groupId><artifactId>parent</artifactId><version>1.0</version>"
+            + "<packaging>pom</packaging><properties><shared>" + value + "</shared></properties></project>" )
+            .getBytes( StandardCharsets.UTF_8 ) );
+        return pom;
+    }
+
+    @Test
+    public void testChangedInputIsAMiss() throws Exception {
+        EffectiveModelCache cache = new EffectiveModelCache( tmp.newFolder(), Long.MAX_VALUE );
+        File input = writeParent( tmp.newFolder(), "first" );
+        cache.put( "key", Collections.singleton( input ), newModel( "child" ) );
+        assertEquals( "child", cache.get( "key" ).getArtifactId() );
+        assertNull( cache.get( "other" ) );
+
+        writeParent( input.getParentFile(), "second" );
+        assertNull( cache.get( "key" ) );
+    }
+
+    @Test
+    public void testDamagedEntryIsAMiss() throws Exception {
+        File directory = tmp.newFolder();
+        EffectiveModelCache cache = new EffectiveModelCache( directory, Long.MAX_VALUE );
+        cache.put( "key", Collections.emptySet(), newModel( "child" ) );
+        File entry = new File( directory, "key.model" );
+        try (RandomAccessFile file = new RandomAccessFile( entry, "rw" )) {
+            file.seek( file.length() - 10 );
+            file.write( 'X' );
+        }
+        assertNull( cache.get( "key" ) );
+        assertTrue( !entry.exists() );
+
+        cache.put( "key", Collections.emptySet(), newModel( "child" ) );
+        try (RandomAccessFile file = new RandomAccessFile( entry, "rw" )) {
+            file.setLength( file.length() / 2 );
+        }
+        assertNull( cache.get( "key" ) );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        File directory = tmp.newFolder();
+        EffectiveModelCache probe = new EffectiveModelCache( directory, Long.MAX_VALUE );
+        probe.put( "probe", Collections.emptySet(), newModel( "a" ) );
+        long entrySize = new File( directory, "probe.model" ).length();
+        new File( directory, "probe.model" ).delete();
+
+        EffectiveModelCache cache = new EffectiveModelCache( directory, entrySize * 2 + entrySize / 2 );
+        cache.put( "a", Collections.emptySet(), newModel( "a" ) );
+        cache.put( "b", Collections.emptySet(), newModel( "b" ) );
+        new File( directory, "a.model" ).setLastModified( System.currentTimeMillis() - 60000 );
+        new File( directory, "b.model" ).setLastModified( System.currentTimeMillis() - 30000 );
+        // a is used again so b is the oldest
+        assertNotNull( cache.get( "a" ) );
+        cache.put( "c", Collections.emptySet(), newModel( "c" ) );
+
+        assertNotNull( cache.get( "a" ) );
+        assertNull( cache.get( "b" ) );
+        assertNotNull( cache.get( "c" ) );
+    }
+
+    @Test
+    public void testReadEffectiveModel() throws Exception {
+        File root = tmp.newFolder();
+        writeParent( root, "first" );
+        File child = new File( root, "child" );
+        child.mkdirs();
+        File pom = new File( child, "pom.xml" );
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion>"
+            + "<parent><groupId>test</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+            + "<artifactId>child</artifactId></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+        File directory = tmp.newFolder();
+
+        for ( String value : new String[]{ "first", "first", "second" } ) {
+            writeParent( root, value );
+            MavenRequest mavenRequest = new MavenRequest();
+            mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+            mavenRequest.setEffectiveModelCacheDirectory( directory.getAbsolutePath() );
+            try (MavenEmbedder mavenEmbedder =
+                     new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+                Model model = mavenEmbedder.readEffectiveModel( pom );
+                assertEquals( value, model.getProperties().getProperty( "shared" ) );
+                assertEquals( "test", model.getGroupId() );
+            }
+            assertEquals( 1, directory.list().length );
+        }
+    }
+
+    @Test
+    public void testFileActivationIsNotCached() throws Exception {
+        File root = tmp.newFolder();
+        File pom = new File( root, "pom.xml" );
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion>"
+            + "<groupId>test</groupId><artifactId>activated</artifactId><version>1.0</version>"
+            + "<profiles><profile><id>marker</id>"
+            + "<activation><file><exists>${basedir}/marker</exists></file></activation>"
+            + "<properties><marked>true</marked></properties></profile></profiles>"
+            + "</project>" ).getBytes( StandardCharsets.UTF_8 ) );
+        File directory = tmp.newFolder();
+
+        for ( boolean marked : new boolean[]{ false, true } ) {
+            if ( marked ) {
+                new File( root, "marker" ).createNewFile();
+            }
+            MavenRequest mavenRequest = new MavenRequest();
+            mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+            mavenRequest.setEffectiveModelCacheDirectory( directory.getAbsolutePath() );
+            try (MavenEmbedder mavenEmbedder =
+                     new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+                Model model = mavenEmbedder.readEffectiveModel( pom );
+                assertEquals( marked ? "true" : null, model.getProperties().getProperty( "marked" ) );
+            }
+            assertEquals( 0, directory.list().length );
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.PlexusConstants;
+import org.codehaus.plexus.PlexusContainer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestEmbedderContainerPool {
+
+    private MavenRequest newRequest( EmbedderContainerPool pool ) {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        mavenRequest.setContainerPool( pool );
+        return mavenRequest;
+    }
+
+    @Test
+    public void testSameInputsShareContainer() throws Exception {
+        EmbedderContainerPool pool = new EmbedderContainerPool();
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+        MavenEmbedder first = new MavenEmbedder( cl, newRequest( pool ) );
+        MavenEmbedder second = new MavenEmbedder( cl, newRequest( pool ) );
+        assertSame( first.getPlexusContainer(), second.getPlexusContainer() );
+        assertEquals( 1, pool.size() );
+
+        MavenProject project = second.readProject( new File( "src/test/projects-tests/one-module/pom.xml" ) );
+        assertEquals( "my-app", project.getArtifactId() );
+
+        MavenRequest otherScanning = newRequest( pool );
+        otherScanning.setContainerClassPathScanning( PlexusConstants.SCANNING_OFF );
+        PlexusContainer other = pool.acquire( cl, null, otherScanning );
+        assertNotSame( first.getPlexusContainer(), other );
+        assertEquals( 2, pool.size() );
+
+        first.close();
+        second.close();
+        pool.release( other );
+        pool.dispose();
+        assertEquals( 0, pool.size() );
+    }
+
+    @Test
+    public void testCloseReleasesContainer() throws Exception {
+        EmbedderContainerPool pool = new EmbedderContainerPool( 4, 1 );
+        MavenEmbedder embedder = new MavenEmbedder( Thread.currentThread().getContextClassLoader(), newRequest( pool ) );
+        Thread.sleep( 10 );
+        pool.evictIdle();
+        // still leased
+        assertEquals( 1, pool.size() );
+
+        embedder.close();
+        embedder.close();
+        Thread.sleep( 10 );
+        pool.evictIdle();
+        assertEquals( 0, pool.size() );
+        pool.dispose();
+    }
+
+    @Test
+    public void testBoundedSize() throws Exception {
+        EmbedderContainerPool pool = new EmbedderContainerPool( 1, 0 );
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+        PlexusContainer first = pool.acquire( cl, null, newRequest( pool ) );
+        pool.release( first );
+
+        MavenRequest otherScanning = newRequest( pool );
+        otherScanning.setContainerClassPathScanning( PlexusConstants.SCANNING_OFF );
+        PlexusContainer second = pool.acquire( cl, null, otherScanning );
+        assertEquals( 1, pool.size() );
+
+        // first has been evicted so a new one is built
+        PlexusContainer third = pool.acquire( cl, null, newRequest( pool ) );
+        assertNotSame( first, third );
+        assertEquals( 1, pool.size() );
+
+        pool.release( second );
+        pool.release( third );
+        pool.dispose();
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        EmbedderContainerPool pool = new EmbedderContainerPool( 2, 1 );
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+        PlexusContainer container = pool.acquire( cl, null, newRequest( pool ) );
+        Thread.sleep( 10 );
+        // leased containers are never idle
+        pool.evictIdle();
+        assertEquals( 1, pool.size() );
+
+        pool.release( container );
+        Thread.sleep( 10 );
+        pool.evictIdle();
+        assertEquals( 0, pool.size() );
+    }
+}
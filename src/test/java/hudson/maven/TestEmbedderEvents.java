@@ -0,0 +1,129 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestEmbedderEvents {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final List<String> EVENTS =
+        Arrays.asList( "hudson.maven.ContainerCreation", "hudson.maven.SettingsBuilding",
+                       "hudson.maven.RepositorySessionCreation", "hudson.maven.ProjectBuilding",
+                       "hudson.maven.Execution" );
+
+    private List<RecordedEvent> events( List<RecordedEvent> events, String name ) {
+        return events.stream().filter( e -> e.getEventType().getName().equals( name ) ).collect( Collectors.toList() );
+    }
+
+    @Test
+    public void testEventsAreRecorded() throws Exception {
+        File pom = new File( "src/test/projects-tests/several-modules-in-directory/pom.xml" ).getAbsoluteFile();
+        Path dump = new File( tmp.getRoot(), "embedder.jfr" ).toPath();
+
+        try (Recording recording = new Recording()) {
+            for ( String event : EVENTS ) {
+                recording.enable( event );
+            }
+            recording.start();
+
+            MavenRequest mavenRequest = new MavenRequest();
+            mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+            mavenRequest.setPom( pom.getPath() );
+            mavenRequest.setBaseDirectory( pom.getParent() );
+            mavenRequest.setGoals( Collections.singletonList( "validate" ) );
+            mavenRequest.setOffline( true );
+            try (MavenEmbedder mavenEmbedder =
+                     new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+                mavenEmbedder.readProjects( pom, true );
+                MavenExecutionResult result = mavenEmbedder.execute( mavenRequest );
+                assertEquals( Collections.emptyList(), result.getExceptions() );
+            }
+
+            recording.stop();
+            recording.dump( dump );
+        }
+
+        List<RecordedEvent> recorded = RecordingFile.readAllEvents( dump );
+        for ( String event : EVENTS ) {
+            assertFalse( event, events( recorded, event ).isEmpty() );
+        }
+
+        RecordedEvent containerCreation = events( recorded, "hudson.maven.ContainerCreation" ).get( 0 );
+        assertFalse( containerCreation.getBoolean( "pooled" ) );
+
+        // built once then shared
+        List<RecordedEvent> settings = events( recorded, "hudson.maven.SettingsBuilding" );
+        assertTrue( settings.size() > 1 );
+        assertTrue( settings.get( settings.size() - 1 ).getBoolean( "cacheHit" ) );
+
+        RecordedEvent projectBuilding = events( recorded, "hudson.maven.ProjectBuilding" ).get( 0 );
+        assertEquals( pom.getPath(), projectBuilding.getString( "pom" ) );
+        assertTrue( projectBuilding.getBoolean( "recursive" ) );
+        assertTrue( projectBuilding.getBoolean( "success" ) );
+        assertTrue( projectBuilding.getInt( "projectCount" ) > 1 );
+
+        RecordedEvent execution = events( recorded, "hudson.maven.Execution" ).get( 0 );
+        assertEquals( pom.getPath(), execution.getString( "pom" ) );
+        assertEquals( "[validate]", execution.getString( "goals" ) );
+        assertEquals( projectBuilding.getInt( "projectCount" ), execution.getInt( "projectCount" ) );
+        assertTrue( execution.getBoolean( "success" ) );
+    }
+
+    @Test
+    public void testEventsAreDisabledByDefault() throws Exception {
+        Path dump = new File( tmp.getRoot(), "default.jfr" ).toPath();
+        try (Recording recording = new Recording( Configuration.getConfiguration( "default" ) )) {
+            recording.start();
+            MavenRequest mavenRequest = new MavenRequest();
+            mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+            try (MavenEmbedder mavenEmbedder =
+                     new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+                mavenEmbedder.getSettings();
+            }
+            recording.stop();
+            recording.dump( dump );
+        }
+
+        for ( RecordedEvent event : RecordingFile.readAllEvents( dump ) ) {
+            assertFalse( event.getEventType().getName(), event.getEventType().getName().startsWith( "hudson.maven." ) );
+        }
+    }
+}
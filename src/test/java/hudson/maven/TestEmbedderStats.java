@@ -0,0 +1,87 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestEmbedderStats {
+
+    @Test
+    public void testStatsThroughJmx() throws Exception {
+        int liveContainers;
+        EmbedderStats stats = EmbedderStats.getInstance();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName( EmbedderStatsMXBean.OBJECT_NAME );
+        assertTrue( server.isRegistered( name ) );
+
+        server.invoke( name, "reset", null, null );
+        int liveEmbedders = stats.getLiveEmbedderCount();
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        // a maven home realm, its jars make the retained size
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( new File( System.getProperty( "maven.home" ) ), mavenRequest )) {
+            mavenEmbedder.readProject( new File( "src/test/projects-tests/one-module/pom.xml" ) );
+            mavenEmbedder.readProject( new File( "src/test/projects-tests/one-module/pom.xml" ) );
+
+            assertEquals( liveEmbedders + 1, server.getAttribute( name, "LiveEmbedderCount" ) );
+            // containers of embedders never closed by other tests go away with the GC
+            liveContainers = (Integer) server.getAttribute( name, "LiveContainerCount" );
+            assertTrue( liveContainers > 0 );
+            assertTrue( (Integer) server.getAttribute( name, "LiveClassRealmCount" ) > 0 );
+            assertTrue( (Long) server.getAttribute( name, "LiveRealmJarBytes" ) > 0 );
+
+            CompositeData containerBuilds = (CompositeData) server.getAttribute( name, "ContainerBuilds" );
+            assertEquals( 1L, containerBuilds.get( "count" ) );
+
+            CompositeData projectBuilds = (CompositeData) server.getAttribute( name, "ProjectBuilds" );
+            assertEquals( 2L, projectBuilds.get( "count" ) );
+            long[] histogram = (long[]) projectBuilds.get( "histogram" );
+            assertEquals( stats.getLatencyBucketsMillis().length + 1, histogram.length );
+            long sum = 0;
+            for ( long bucket : histogram ) {
+                sum += bucket;
+            }
+            assertEquals( 2L, sum );
+
+            CompositeData settingsCache = (CompositeData) server.getAttribute( name, "SettingsCache" );
+            assertTrue( (Long) settingsCache.get( "hits" ) > 0 );
+            assertTrue( (Double) settingsCache.get( "hitRatio" ) > 0 );
+        }
+        assertEquals( liveEmbedders, stats.getLiveEmbedderCount() );
+        assertTrue( stats.getLiveContainerCount() < liveContainers );
+
+        server.invoke( name, "reset", null, null );
+        assertEquals( 0, stats.getProjectBuilds().getCount() );
+        assertEquals( 0, stats.getSettingsCache().getHits() );
+        assertEquals( 0, stats.getContainerBuilds().getHistogram()[0] );
+    }
+}
@@ -0,0 +1,146 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestExecutionTimingListener {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private void writePom( File dir, String artifactId, String modules ) throws Exception {
+        dir.mkdirs();
+        Files.write( new File( dir, "pom.xml" ).toPath(), ( "<project><modelVersion>4.0.0</modelVersion>"
+            + "<groupId>test</groupId><artifactId>" + artifactId + "</artifactId><version>1.0</version>"
+            + "<packaging>pom</packaging>" + modules + "</project>" ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void testTimingsPerProjectPhaseAndMojo() throws Exception {
+        File root = tmp.newFolder();
+        writePom( root, "root", "<modules><module>a</module><module>b</module></modules>" );
+        writePom( new File( root, "a" ), "a", "" );
+        writePom( new File( root, "b" ), "b", "" );
+
+        AtomicInteger mojoEvents = new AtomicInteger();
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        mavenRequest.setPom( new File( root, "pom.xml" ).getAbsolutePath() );
+        mavenRequest.setBaseDirectory( root.getAbsolutePath() );
+        mavenRequest.setGoals( Collections.singletonList( "clean" ) );
+        mavenRequest.setOffline( true );
+        mavenRequest.setCollectExecutionTimings( true );
+        mavenRequest.setExecutionListener( new AbstractExecutionListener() {
+            @Override
+            public void mojoSucceeded( ExecutionEvent event ) {
+                mojoEvents.incrementAndGet();
+            }
+        } );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            MavenExecutionResult result = mavenEmbedder.execute( mavenRequest );
+            assertEquals( Collections.emptyList(), result.getExceptions() );
+            assertTrue( result instanceof TimedMavenExecutionResult );
+            assertEquals( 3, result.getTopologicallySortedProjects().size() );
+
+            ExecutionTimings timings = ( (TimedMavenExecutionResult) result ).getTimings();
+            // the delegate still gets the events
+            assertEquals( 3, mojoEvents.get() );
+            assertTrue( timings.getWallTime() > 0 );
+            assertEquals( 3, timings.getProjects().size() );
+            // in the reactor order
+            for ( int i = 0; i < 3; i++ ) {
+                assertEquals( result.getTopologicallySortedProjects().get( i ).getArtifactId(),
+                              timings.getProjects().get( i ).getId().split( ":" )[1] );
+            }
+            for ( ExecutionTimings.ProjectTiming project : timings.getProjects() ) {
+                assertEquals( "SUCCESS", project.getResult() );
+                assertTrue( project.getWallTime() > 0 );
+                assertTrue( project.getWallTime() <= timings.getWallTime() );
+                assertEquals( 1, project.getPhases().size() );
+                assertEquals( "clean", project.getPhases().get( 0 ).getPhase() );
+                assertEquals( 1, project.getMojos().size() );
+                ExecutionTimings.MojoTiming mojo = project.getMojos().get( 0 );
+                assertTrue( mojo.getPlugin().startsWith( "org.apache.maven.plugins:maven-clean-plugin:" ) );
+                assertEquals( "clean", mojo.getGoal() );
+                assertEquals( "default-clean", mojo.getExecutionId() );
+                assertEquals( "SUCCESS", mojo.getResult() );
+                assertTrue( mojo.getWallTime() > 0 );
+                assertTrue( mojo.getWallTime() <= project.getWallTime() );
+                assertEquals( mojo.getCpuTime(), project.getCpuTime() );
+            }
+
+            String json = timings.toJson();
+            assertTrue( json, json.startsWith( "{\"wallNanos\":" + timings.getWallTime() + ",\"projects\":[{" ) );
+            assertTrue( json, json.contains( "\"id\":\"test:a:1.0\",\"result\":\"SUCCESS\"" ) );
+            assertTrue( json, json.contains( "\"goal\":\"clean\",\"executionId\":\"default-clean\"" ) );
+
+            // not collected unless asked
+            mavenRequest.setCollectExecutionTimings( false );
+            assertFalse( mavenEmbedder.execute( mavenRequest ) instanceof TimedMavenExecutionResult );
+        }
+    }
+
+    @Test
+    public void testMojoInvokedDirectly() throws Exception {
+        File root = tmp.newFolder();
+        writePom( root, "root", "" );
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        mavenRequest.setPom( new File( root, "pom.xml" ).getAbsolutePath() );
+        mavenRequest.setBaseDirectory( root.getAbsolutePath() );
+        mavenRequest.setGoals( Arrays.asList( "clean", "clean:clean" ) );
+        mavenRequest.setOffline( true );
+        mavenRequest.setCollectExecutionTimings( true );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            MavenExecutionResult result = mavenEmbedder.execute( mavenRequest );
+            assertEquals( Collections.emptyList(), result.getExceptions() );
+
+            ExecutionTimings.ProjectTiming project =
+                ( (TimedMavenExecutionResult) result ).getTimings().getProjects().get( 0 );
+            assertEquals( 2, project.getPhases().size() );
+            assertEquals( "clean", project.getPhases().get( 0 ).getPhase() );
+            assertEquals( ExecutionTimings.DIRECT_PHASE, project.getPhases().get( 1 ).getPhase() );
+            assertEquals( 2, project.getMojos().size() );
+            assertEquals( "clean", project.getMojos().get( 0 ).getPhase() );
+            assertEquals( ExecutionTimings.DIRECT_PHASE, project.getMojos().get( 1 ).getPhase() );
+            assertEquals( "default-cli", project.getMojos().get( 1 ).getExecutionId() );
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.installation.InstallRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLayeredLocalRepository {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testLookupsFallThroughTheBases() throws Exception {
+        File base = tmp.newFolder( "base" );
+        File overlay = tmp.newFolder( "overlay" );
+        writeParent( base, "base" );
+        File pom = writeChild( tmp.newFolder( "project" ) );
+
+        try (MavenEmbedder mavenEmbedder = newEmbedder( overlay, base, false )) {
+            MavenProject project = mavenEmbedder.readProject( pom );
+            assertEquals( "base", project.getProperties().getProperty( "parent" ) );
+            assertTrue( project.getProjectBuildingRequest().getRepositorySession().getLocalRepositoryManager()
+                            instanceof LayeredLocalRepositoryManager );
+            assertFalse( new File( overlay, "test/parent" ).exists() );
+
+            // the writes go to the overlay
+            RepositorySystemSession session = mavenEmbedder.buildRepositorySystemSession();
+            File jar = tmp.newFile( "installed.jar" );
+            mavenEmbedder.lookup( RepositorySystem.class ).install( session, new InstallRequest().addArtifact(
+                new DefaultArtifact( "test:installed:1.0" ).setFile( jar ) ) );
+            assertTrue( new File( overlay, "test/installed/1.0/installed-1.0.jar" ).exists() );
+            assertFalse( new File( base, "test/installed" ).exists() );
+
+            // the overlay comes first
+            writeParent( overlay, "overlay" );
+            mavenEmbedder.invalidateCaches();
+            assertEquals( "overlay", mavenEmbedder.readProject( pom ).getProperties().getProperty( "parent" ) );
+        }
+    }
+
+    @Test
+    public void testBasesLinkedIntoTheOverlay() throws Exception {
+        File base = tmp.newFolder( "base" );
+        File overlay = tmp.newFolder( "overlay" );
+        File basePom = writeParent( base, "base" );
+        File pom = writeChild( tmp.newFolder( "project" ) );
+
+        try (MavenEmbedder mavenEmbedder = newEmbedder( overlay, base, true )) {
+            assertEquals( "base", mavenEmbedder.readProject( pom ).getProperties().getProperty( "parent" ) );
+            File overlayPom = new File( overlay, "test/parent/1.0/parent-1.0.pom" );
+            assertTrue( overlayPom.exists() );
+            assertTrue( Files.isSameFile( basePom.toPath(), overlayPom.toPath() ) );
+
+            // found in the overlay from now on
+            mavenEmbedder.invalidateCaches();
+            assertEquals( "base", mavenEmbedder.readProject( pom ).getProperties().getProperty( "parent" ) );
+        }
+    }
+
+    private static MavenEmbedder newEmbedder( File overlay, File base, boolean link ) throws Exception {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( overlay.getAbsolutePath() );
+        mavenRequest.setLocalRepositoryBases( Collections.singletonList( base.getAbsolutePath() ) );
+        mavenRequest.setLinkLocalRepositoryBases( link );
+        mavenRequest.setOffline( true );
+        return new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest );
+    }
+
+    private static File writeParent( File repository, String value ) throws Exception {
+        File pom = new File( repository, "test/parent/1.0/parent-1.0.pom" );
+        pom.getParentFile().mkdirs();
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><groupId>test</groupId>"
+            + "<artifactId>parent</artifactId><version>1.0</version><packaging>pom</packaging>"
+            + "<properties><parent>" + value + "</parent></properties></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+        return pom;
+    }
+
+    private static File writeChild( File directory ) throws Exception {
+        File pom = new File( directory, "pom.xml" );
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><parent><groupId>test</groupId>"
+            + "<artifactId>parent</artifactId><version>1.0</version><relativePath/></parent>"
+            + "<artifactId>child</artifactId></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+        return pom;
+    }
+}
@@ -0,0 +1,144 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestLocalRepositoryAccessLog {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testEviction() throws Exception {
+        File repository = tmp.newFolder( "repository" );
+        long now = System.currentTimeMillis();
+        File a = write( repository, "org/foo/a/1.0/a-1.0.jar", now - 3 * 3600 * 1000 );
+        File b = write( repository, "org/foo/b/1.0/b-1.0.jar", now - 2 * 3600 * 1000 );
+        File c = write( repository, "org/foo/c/1.0/c-1.0.jar", now - 3600 * 1000 );
+        File metadata = write( repository, "org/foo/a/maven-metadata-local.xml", now - 4 * 3600 * 1000 );
+        File logFile = new File( tmp.getRoot(), "access.log" );
+
+        try (LocalRepositoryAccessLog log = LocalRepositoryAccessLog.open( logFile, repository )) {
+            // the oldest on disk is the most recently used
+            log.access( a, null );
+            assertEquals( 1000, log.evict( 2000 ) );
+            assertTrue( a.exists() );
+            assertFalse( b.getParentFile().exists() );
+            assertTrue( c.exists() );
+            assertTrue( metadata.exists() );
+
+            // used by a live session
+            LocalRepositoryAccessLog.Pins pins = log.newPins();
+            log.access( c, pins );
+            assertEquals( 1000, log.evict( 0 ) );
+            assertFalse( a.exists() );
+            assertTrue( c.exists() );
+            assertTrue( pins.directories.contains( "org/foo/c/1.0" ) );
+
+            List<String> lines = Files.readAllLines( logFile.toPath() );
+            assertEquals( 1, lines.size() );
+            assertTrue( lines.get( 0 ).endsWith( " org/foo/c/1.0" ) );
+
+            try {
+                LocalRepositoryAccessLog.open( logFile, tmp.newFolder( "other" ) );
+                fail( "tracks another repository" );
+            } catch ( IOException e ) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLookupRacingWithEviction() throws Exception {
+        File repository = tmp.newFolder( "repository" );
+        File a = write( repository, "org/foo/a/1.0/a-1.0.jar", System.currentTimeMillis() );
+        File b = write( repository, "org/foo/b/1.0/b-1.0.jar", System.currentTimeMillis() );
+
+        try (LocalRepositoryAccessLog log =
+                 LocalRepositoryAccessLog.open( new File( tmp.getRoot(), "access.log" ), repository )) {
+            LocalRepositoryAccessLog.Pins pins = log.newPins();
+            // a found by a lookup, evicted before the session pins it
+            long deletions = log.deletions();
+            assertTrue( log.access( b, pins, deletions ) );
+            assertEquals( 1000, log.evict( 0 ) );
+            assertFalse( a.exists() );
+            assertFalse( log.access( a, pins, deletions ) );
+            // b was pinned before the eviction
+            assertTrue( b.exists() );
+            assertTrue( log.access( b, pins, deletions ) );
+        }
+    }
+
+    @Test
+    public void testEmbedderRecordsAccesses() throws Exception {
+        File repository = tmp.newFolder( "repository" );
+        File parent = new File( repository, "test/parent/1.0/parent-1.0.pom" );
+        parent.getParentFile().mkdirs();
+        Files.write( parent.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><groupId>test</groupId>"
+            + "<artifactId>parent</artifactId><version>1.0</version><packaging>pom</packaging></project>" )
+            .getBytes( StandardCharsets.UTF_8 ) );
+        File pom = new File( tmp.newFolder( "project" ), "pom.xml" );
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><parent><groupId>test</groupId>"
+            + "<artifactId>parent</artifactId><version>1.0</version><relativePath/></parent>"
+            + "<artifactId>child</artifactId></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+        File logFile = new File( tmp.getRoot(), "access.log" );
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( repository.getAbsolutePath() );
+        mavenRequest.setLocalRepositoryAccessLogFile( logFile.getAbsolutePath() );
+        mavenRequest.setOffline( true );
+        try (LocalRepositoryAccessLog log = LocalRepositoryAccessLog.open( logFile, repository )) {
+            try (MavenEmbedder mavenEmbedder =
+                     new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+                MavenProject project = mavenEmbedder.readProject( pom );
+                assertTrue( project.getProjectBuildingRequest().getRepositorySession().getLocalRepositoryManager()
+                                instanceof AccessTrackingLocalRepositoryManager );
+
+                // the session of the project is alive
+                log.evict( 0 );
+                assertTrue( parent.exists() );
+            }
+            assertTrue( Files.readAllLines( logFile.toPath() ).get( 0 ).endsWith( " test/parent/1.0" ) );
+        }
+    }
+
+    private static File write( File repository, String path, long lastModified ) throws Exception {
+        File file = new File( repository, path );
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), new byte[1000] );
+        file.setLastModified( lastModified );
+        return file;
+    }
+}
@@ -0,0 +1,223 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuildingException;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestLocalRepositoryIndex {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testIndex() throws Exception {
+        File repository = tmp.newFolder( "repository" );
+        write( repository, "org/foo/bar/1.0/bar-1.0.jar" );
+        write( repository, "org/foo/bar/1.0/bar-1.0-sources.jar" );
+        write( repository, "org/foo/bar/1.0/bar-1.0.jar.lastUpdated" );
+        write( repository, "org/foo/bar/1.0-SNAPSHOT/bar-1.0-20240101.120000-3.tar.gz" );
+        write( repository, "org/foo/bar/maven-metadata-central.xml" );
+        File index = new File( tmp.getRoot(), "index" );
+
+        try (LocalRepositoryIndex localRepositoryIndex = LocalRepositoryIndex.open( index, repository )) {
+            assertEquals( 3, localRepositoryIndex.size() );
+            assertTrue( localRepositoryIndex.mayContain( new DefaultArtifact( "org.foo:bar:1.0" ) ) );
+            assertTrue( localRepositoryIndex.mayContain( new DefaultArtifact( "org.foo:bar:jar:sources:1.0" ) ) );
+            assertTrue( localRepositoryIndex.mayContain(
+                new DefaultArtifact( "org.foo:bar:tar.gz:1.0-20240101.120000-3" ) ) );
+            assertFalse( localRepositoryIndex.mayContain( new DefaultArtifact( "org.foo:bar:pom:1.0" ) ) );
+            assertFalse( localRepositoryIndex.mayContain( new DefaultArtifact( "org.foo:bar:2.0" ) ) );
+            assertTrue( localRepositoryIndex.verify().isEmpty() );
+
+            File pom = write( repository, "org/foo/bar/1.0/bar-1.0.pom" );
+            assertEquals( 1, localRepositoryIndex.verify().size() );
+            localRepositoryIndex.add( new DefaultArtifact( "org.foo:bar:pom:1.0" ), pom );
+            assertTrue( localRepositoryIndex.mayContain( new DefaultArtifact( "org.foo:bar:pom:1.0" ) ) );
+            assertTrue( localRepositoryIndex.verify().isEmpty() );
+
+            // grows the table past its initial capacity
+            for ( int i = 0; i < 5000; i++ ) {
+                localRepositoryIndex.add( new DefaultArtifact( "org.foo:bar:" + i ), pom );
+            }
+            assertEquals( 5004, localRepositoryIndex.size() );
+            assertTrue( localRepositoryIndex.mayContain( new DefaultArtifact( "org.foo:bar:4999" ) ) );
+            assertEquals( "5000 indexed artifacts are not in the repository",
+                          localRepositoryIndex.verify().get( 0 ) );
+
+            localRepositoryIndex.rebuild();
+            assertEquals( 4, localRepositoryIndex.size() );
+            assertTrue( localRepositoryIndex.verify().isEmpty() );
+        }
+
+        // read back from the file
+        try (LocalRepositoryIndex localRepositoryIndex = LocalRepositoryIndex.open( index, repository )) {
+            assertEquals( 4, localRepositoryIndex.size() );
+            assertTrue( localRepositoryIndex.mayContain( new DefaultArtifact( "org.foo:bar:pom:1.0" ) ) );
+            try {
+                LocalRepositoryIndex.open( index, tmp.newFolder( "other" ) );
+                fail( "indexes another repository" );
+            } catch ( IOException e ) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testEmbedderUsesIndex() throws Exception {
+        File repository = tmp.newFolder( "repository" );
+        writeParent( repository, "1.0" );
+        File pom = new File( tmp.newFolder( "project" ), "pom.xml" );
+        File index = new File( tmp.getRoot(), "index" );
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( repository.getAbsolutePath() );
+        mavenRequest.setLocalRepositoryIndexFile( index.getAbsolutePath() );
+        mavenRequest.setOffline( true );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            writeChild( pom, "1.0" );
+            MavenProject project = mavenEmbedder.readProject( pom );
+            assertEquals( "indexed", project.getProperties().getProperty( "parent" ) );
+            assertTrue( project.getProjectBuildingRequest().getRepositorySession().getLocalRepositoryManager()
+                            instanceof IndexedLocalRepositoryManager );
+
+            // written behind the back of the index: found on disk and added to the index
+            LocalRepositoryIndex localRepositoryIndex = LocalRepositoryIndex.open( index, repository );
+            writeParent( repository, "2.0" );
+            writeChild( pom, "2.0" );
+            assertFalse( localRepositoryIndex.mayContain( new DefaultArtifact( "test:parent:pom:2.0" ) ) );
+            mavenEmbedder.invalidateCaches();
+            assertEquals( "indexed", mavenEmbedder.readProject( pom ).getProperties().getProperty( "parent" ) );
+            assertTrue( localRepositoryIndex.mayContain( new DefaultArtifact( "test:parent:pom:2.0" ) ) );
+
+            // still missing
+            writeChild( pom, "3.0" );
+            mavenEmbedder.invalidateCaches();
+            try {
+                mavenEmbedder.readProject( pom );
+                fail( "the parent is not in the repository" );
+            } catch ( ProjectBuildingException e ) {
+                // expected
+            }
+        } finally {
+            LocalRepositoryIndex.open( index, repository ).close();
+        }
+    }
+
+    @Test
+    public void testIndexedAvailability() throws Exception {
+        File repository = tmp.newFolder( "repository" );
+        File jar = write( repository, "org/foo/bar/1.0/bar-1.0.jar" );
+        Files.write( new File( jar.getParentFile(), "_remote.repositories" ).toPath(),
+                     "bar-1.0.jar>central=\n".getBytes( StandardCharsets.UTF_8 ) );
+        File installed = write( repository, "org/foo/baz/1.0/baz-1.0.jar" );
+        Files.write( new File( installed.getParentFile(), "_remote.repositories" ).toPath(),
+                     "baz-1.0.jar>=\n".getBytes( StandardCharsets.UTF_8 ) );
+        File logFile = new File( tmp.getRoot(), "access.log" );
+        RemoteRepository central = new RemoteRepository.Builder( "central", "default", "http://central" ).build();
+        RemoteRepository other = new RemoteRepository.Builder( "other", "default", "http://other" ).build();
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( repository.getAbsolutePath() );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest );
+             LocalRepositoryIndex index = LocalRepositoryIndex.open( new File( tmp.getRoot(), "index" ), repository );
+             LocalRepositoryAccessLog log = LocalRepositoryAccessLog.open( logFile, repository )) {
+            DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+            LocalRepositoryManager manager = new IndexedLocalRepositoryManager(
+                mavenEmbedder.lookup( LocalRepositoryManagerFactory.class, "enhanced" )
+                    .newInstance( session, new LocalRepository( repository ) ), index );
+            DefaultArtifact bar = new DefaultArtifact( "org.foo:bar:1.0" );
+            DefaultArtifact baz = new DefaultArtifact( "org.foo:baz:1.0" );
+
+            // answered by the index alone: still there for it once deleted behind its back
+            assertTrue( jar.delete() && installed.delete() );
+            LocalArtifactResult result = manager.find( session, new LocalArtifactRequest(
+                bar, Arrays.asList( other, central ), null ) );
+            assertTrue( result.isAvailable() );
+            assertEquals( central, result.getRepository() );
+            assertEquals( jar, result.getFile() );
+            result = manager.find( session, new LocalArtifactRequest( baz, Collections.emptyList(), null ) );
+            assertTrue( result.isAvailable() );
+            assertEquals( null, result.getRepository() );
+
+            // not from this repository according to the index, checked on disk
+            write( repository, "org/foo/bar/1.0/bar-1.0.jar" );
+            result = manager.find( session, new LocalArtifactRequest(
+                bar, Collections.singletonList( other ), null ) );
+            assertFalse( result.isAvailable() );
+            assertEquals( jar, result.getFile() );
+
+            // the eviction keeps the index accurate
+            log.evict( 0 );
+            assertFalse( jar.exists() );
+            assertFalse( index.mayContain( bar ) );
+            result = manager.find( session, new LocalArtifactRequest(
+                bar, Collections.singletonList( central ), null ) );
+            assertFalse( result.isAvailable() );
+            assertEquals( null, result.getFile() );
+        }
+    }
+
+    private static void writeParent( File repository, String version ) throws Exception {
+        File pom = new File( repository, "test/parent/" + version + "/parent-" + version + ".pom" );
+        pom.getParentFile().mkdirs();
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><groupId>test</groupId>"
+            + "<artifactId>parent</artifactId><version>" + version + "</version><packaging>pom</packaging>"
+            + "<properties><parent>indexed</parent></properties></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private static void writeChild( File pom, String parentVersion ) throws Exception {
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><parent><groupId>test</groupId>"
+            + "<artifactId>parent</artifactId><version>" + parentVersion + "</version><relativePath/></parent>"
+            + "<artifactId>child</artifactId></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private static File write( File repository, String path ) throws Exception {
+        File file = new File( repository, path );
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), path.getBytes( StandardCharsets.UTF_8 ) );
+        return file;
+    }
+}
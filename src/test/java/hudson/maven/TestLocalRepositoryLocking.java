@@ -0,0 +1,189 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SyncContext;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Embedders of this JVM (each with its own container) and of other JVMs write and read the same artifacts of a
+ * local repository. The writers write the files in place, in several chunks, under an exclusive lock and the readers
+ * check them under a shared lock: a torn artifact means the locks don't work.
+ */
+public class TestLocalRepositoryLocking {
+
+    private static final int ARTIFACTS = 3;
+
+    private static final int OPERATIONS = 60;
+
+    private static final int SIZE = 128 * 1024;
+
+    private static final int CHUNKS = 16;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSharedLocalRepository() throws Exception {
+        File repository = tmp.newFolder( "repository" );
+
+        List<Process> processes = new ArrayList<>();
+        List<File> logs = new ArrayList<>();
+        String java = new File( System.getProperty( "java.home" ), "bin/java" ).getPath();
+        for ( int i = 0; i < 2; i++ ) {
+            File log = new File( tmp.getRoot(), "process-" + i + ".log" );
+            logs.add( log );
+            processes.add( new ProcessBuilder( java, "-cp", System.getProperty( "java.class.path" ),
+                                               TestLocalRepositoryLocking.class.getName(),
+                                               repository.getAbsolutePath(), "process-" + i )
+                               .redirectErrorStream( true ).redirectOutput( log ).start() );
+        }
+
+        List<MavenEmbedder> embedders = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool( 6 );
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for ( int i = 0; i < 3; i++ ) {
+                MavenEmbedder embedder = newEmbedder( repository );
+                embedders.add( embedder );
+                for ( int j = 0; j < 2; j++ ) {
+                    String writer = "embedder-" + i + "-" + j;
+                    results.add( executor.submit( () -> stress( embedder, writer ) ) );
+                }
+            }
+            for ( Future<Integer> result : results ) {
+                assertEquals( "torn artifacts", 0, (int) result.get( 5, TimeUnit.MINUTES ) );
+            }
+        } finally {
+            executor.shutdownNow();
+            for ( MavenEmbedder embedder : embedders ) {
+                embedder.close();
+            }
+        }
+
+        for ( int i = 0; i < processes.size(); i++ ) {
+            Process process = processes.get( i );
+            assertTrue( process.waitFor( 5, TimeUnit.MINUTES ) );
+            assertEquals( new String( Files.readAllBytes( logs.get( i ).toPath() ), StandardCharsets.UTF_8 ), 0,
+                          process.exitValue() );
+        }
+    }
+
+    /**
+     * the other JVMs: <code>repository writer</code>
+     */
+    public static void main( String[] args ) throws Exception {
+        int torn;
+        try (MavenEmbedder embedder = newEmbedder( new File( args[0] ) )) {
+            torn = stress( embedder, args[1] );
+        }
+        System.out.println( torn + " torn artifacts" );
+        System.exit( torn == 0 ? 0 : 1 );
+    }
+
+    private static MavenEmbedder newEmbedder( File repository ) throws Exception {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( repository.getAbsolutePath() );
+        mavenRequest.setOffline( true );
+        mavenRequest.setNamedLockFactory( "file-lock" );
+        mavenRequest.setNamedLockTimeout( 120 );
+        return new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest );
+    }
+
+    /**
+     * @return number of torn artifacts read
+     */
+    private static int stress( MavenEmbedder embedder, String writer ) throws Exception {
+        RepositorySystem repositorySystem = embedder.lookup( RepositorySystem.class );
+        RepositorySystemSession session = embedder.buildRepositorySystemSession();
+        Random random = new Random();
+        int torn = 0;
+        for ( int i = 0; i < OPERATIONS; i++ ) {
+            Artifact artifact = new DefaultArtifact( "stress:artifact-" + random.nextInt( ARTIFACTS ) + ":1.0" );
+            File file = new File( session.getLocalRepository().getBasedir(),
+                                  session.getLocalRepositoryManager().getPathForLocalArtifact( artifact ) );
+            boolean shared = random.nextBoolean();
+            try (SyncContext syncContext = repositorySystem.newSyncContext( session, shared )) {
+                syncContext.acquire( Collections.singleton( artifact ), null );
+                if ( !shared ) {
+                    write( file, writer + '-' + i );
+                } else if ( file.exists() && !isComplete( file ) ) {
+                    torn++;
+                }
+            }
+        }
+        return torn;
+    }
+
+    /**
+     * random content followed by its crc
+     */
+    private static void write( File file, String content ) throws Exception {
+        byte[] bytes = new byte[SIZE];
+        new Random( content.hashCode() ).nextBytes( bytes );
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream( file )) {
+            int chunk = SIZE / CHUNKS;
+            for ( int offset = 0; offset < SIZE; offset += chunk ) {
+                out.write( bytes, offset, chunk );
+                out.flush();
+                Thread.yield();
+            }
+            out.write( ByteBuffer.allocate( 8 ).putLong( crc.getValue() ).array() );
+        }
+    }
+
+    private static boolean isComplete( File file ) throws Exception {
+        byte[] bytes = Files.readAllBytes( file.toPath() );
+        if ( bytes.length != SIZE + 8 ) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, SIZE );
+        return crc.getValue() == ByteBuffer.wrap( bytes, SIZE, 8 ).getLong();
+    }
+}
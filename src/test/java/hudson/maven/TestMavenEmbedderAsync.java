@@ -0,0 +1,90 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuildingResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestMavenEmbedderAsync {
+
+    private static final File ONE_MODULE = new File( "src/test/projects-tests/one-module/pom.xml" );
+
+    private MavenRequest newRequest() {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        return mavenRequest;
+    }
+
+    @Test
+    public void testReadProjectAsync() throws Exception {
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), newRequest() )) {
+            CompletableFuture<MavenProject> project = mavenEmbedder.readProjectAsync( ONE_MODULE );
+            CompletableFuture<List<ProjectBuildingResult>> results = mavenEmbedder.buildProjectsAsync(
+                new File( "src/test/projects-tests/several-modules-in-directory/pom.xml" ), true );
+            assertEquals( "my-app", project.get( 1, TimeUnit.MINUTES ).getArtifactId() );
+            assertEquals( 2, results.get( 1, TimeUnit.MINUTES ).size() );
+        }
+    }
+
+    @Test
+    public void testCancelAndTimeoutStopTheTask() throws Exception {
+        // tasks are queued but never run
+        List<Runnable> queued = new CopyOnWriteArrayList<>();
+        try (MavenEmbedder mavenEmbedder = new MavenEmbedder( Thread.currentThread().getContextClassLoader(),
+                                                              newRequest().setAsyncExecutor( queued::add ) )) {
+            CompletableFuture<MavenProject> cancelled = mavenEmbedder.readProjectAsync( ONE_MODULE );
+            assertTrue( cancelled.cancel( true ) );
+            assertTrue( ( (Future<?>) queued.get( 0 ) ).isCancelled() );
+
+            CompletableFuture<MavenProject> timedOut =
+                mavenEmbedder.readProjectAsync( ONE_MODULE ).orTimeout( 50, TimeUnit.MILLISECONDS );
+            try {
+                timedOut.get();
+                fail( "TimeoutException expected" );
+            } catch ( ExecutionException e ) {
+                assertTrue( e.getCause() instanceof TimeoutException );
+            }
+            assertTrue( ( (Future<?>) queued.get( 1 ) ).isCancelled() );
+
+            // a queued task runs normally if nobody cancelled it
+            CompletableFuture<MavenProject> project = mavenEmbedder.readProjectAsync( ONE_MODULE );
+            ClassLoader originalCl = Thread.currentThread().getContextClassLoader();
+            queued.get( 2 ).run();
+            assertEquals( "my-app", project.get().getArtifactId() );
+            assertSame( originalCl, Thread.currentThread().getContextClassLoader() );
+        }
+    }
+}
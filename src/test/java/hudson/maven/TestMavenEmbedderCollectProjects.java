@@ -0,0 +1,105 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.ProjectBuildingResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TestMavenEmbedderCollectProjects {
+
+    private static final String[] INCLUDES = { "one-module/pom.xml", "several-modules-in-directory/*.xml" };
+
+    private MavenRequest newRequest() {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        return mavenRequest;
+    }
+
+    private List<String> artifactIds( List<MavenProject> projects ) {
+        List<String> artifactIds = new ArrayList<>();
+        for ( MavenProject project : projects ) {
+            artifactIds.add( project.getArtifactId() );
+        }
+        return artifactIds;
+    }
+
+    @Test
+    public void testParallelKeepsOrder() throws Exception {
+        File basedir = new File( "src/test/projects-tests" );
+        List<String> serial;
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), newRequest() )) {
+            serial = artifactIds( mavenEmbedder.collectProjects( basedir, INCLUDES, new String[0] ) );
+        }
+        assertEquals( 3, serial.size() );
+
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        try (MavenEmbedder mavenEmbedder = new MavenEmbedder( Thread.currentThread().getContextClassLoader(),
+                                                              newRequest().setProjectBuildingExecutor( pool ) )) {
+            for ( int i = 0; i < 5; i++ ) {
+                assertEquals( serial, artifactIds( mavenEmbedder.collectProjects( basedir, INCLUDES, new String[0] ) ) );
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailuresAreAggregated() throws Exception {
+        MavenRequest mavenRequest = newRequest();
+        mavenRequest.setValidationLevel( ModelBuildingRequest.VALIDATION_LEVEL_MAVEN_3_0 );
+        ForkJoinPool pool = new ForkJoinPool( 2 );
+        mavenRequest.setProjectBuildingExecutor( pool );
+        List<File> poms = Arrays.asList( new File( "src/test/projects-tests/incorrect-inheritence-testcase/pom.xml" ),
+                                         new File( "src/test/projects-tests/one-module/pom.xml" ),
+                                         new File( "src/test/projects-tests/does-not-exist/pom.xml" ) );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            mavenEmbedder.buildProjects( poms );
+            fail( "ProjectBuildingException expected" );
+        } catch ( ProjectBuildingException e ) {
+            List<ProjectBuildingResult> results = e.getResults();
+            assertEquals( 3, results.size() );
+            for ( int i = 0; i < poms.size(); i++ ) {
+                assertEquals( poms.get( i ).getAbsoluteFile(), results.get( i ).getPomFile().getAbsoluteFile() );
+            }
+            assertNotNull( results.get( 1 ).getProject() );
+            assertNull( results.get( 2 ).getProject() );
+            assertFalse( results.get( 2 ).getProblems().isEmpty() );
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads projects from a lot of threads with a single embedder
+ * (<code>-Dhudson.maven.concurrencyTest.iterations=1000</code> for a long run).
+ */
+public class TestMavenEmbedderConcurrency {
+
+    private static final int THREADS = 8;
+
+    private static final int ITERATIONS = Integer.getInteger( "hudson.maven.concurrencyTest.iterations", 25 );
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        File oneModule = new File( "src/test/projects-tests/one-module/pom.xml" );
+        File reactor = new File( "src/test/projects-tests/several-modules-in-directory/pom.xml" );
+
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        ClassLoader originalCl = Thread.currentThread().getContextClassLoader();
+        try (MavenEmbedder mavenEmbedder = new MavenEmbedder( originalCl, mavenRequest )) {
+            CountDownLatch start = new CountDownLatch( 1 );
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < THREADS; t++ ) {
+                boolean recursive = t % 2 == 0;
+                futures.add( executor.submit( (Callable<Void>) () -> {
+                    ClassLoader workerCl = Thread.currentThread().getContextClassLoader();
+                    start.await();
+                    for ( int i = 0; i < ITERATIONS; i++ ) {
+                        assertEquals( "my-app", mavenEmbedder.readProject( oneModule ).getArtifactId() );
+                        List<MavenProject> projects = mavenEmbedder.readProjects( reactor, recursive );
+                        assertEquals( recursive ? 2 : 1, projects.size() );
+                        List<String> artifactIds = new ArrayList<>();
+                        for ( MavenProject project : projects ) {
+                            artifactIds.add( project.getArtifactId() );
+                        }
+                        assertTrue( artifactIds.toString(), artifactIds.contains( "reactor" ) );
+                        assertSame( workerCl, Thread.currentThread().getContextClassLoader() );
+                    }
+                    return null;
+                } ) );
+            }
+            start.countDown();
+            for ( Future<?> future : futures ) {
+                future.get( 5, TimeUnit.MINUTES );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertSame( originalCl, Thread.currentThread().getContextClassLoader() );
+    }
+}
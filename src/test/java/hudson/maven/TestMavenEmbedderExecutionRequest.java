@@ -0,0 +1,106 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestMavenEmbedderExecutionRequest {
+
+    private MavenRequest newRequest() {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        mavenRequest.setPom( new File( "src/test/projects-tests/several-modules-in-directory/pom.xml" ).getAbsolutePath() );
+        mavenRequest.setBaseDirectory( new File( "src/test/projects-tests/several-modules-in-directory" ).getAbsolutePath() );
+        mavenRequest.setGoals( Collections.singletonList( "validate" ) );
+        mavenRequest.setOffline( true );
+        return mavenRequest;
+    }
+
+    @Test
+    public void testDegreeOfConcurrency() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        assertEquals( 4, MavenEmbedder.calculateDegreeOfConcurrency( "4" ) );
+        assertEquals( cores, MavenEmbedder.calculateDegreeOfConcurrency( "1C" ) );
+        assertEquals( Math.max( 1, (int) ( 0.5f * cores ) ), MavenEmbedder.calculateDegreeOfConcurrency( "0.5C" ) );
+        for ( String invalid : new String[]{ "0", "-1", "C", "x", "0C" } ) {
+            try {
+                MavenEmbedder.calculateDegreeOfConcurrency( invalid );
+                fail( invalid + " accepted" );
+            } catch ( MavenEmbedderException e ) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testReactorOptionsAreCopied() throws Exception {
+        MavenRequest mavenRequest = newRequest()
+            .setThreadCount( "2" )
+            .setMakeBehavior( MavenExecutionRequest.REACTOR_MAKE_UPSTREAM )
+            .setSelectedProjects( Collections.singletonList( ":module" ) )
+            .setResumeFromProject( ":module" )
+            .setFailureBehavior( MavenExecutionRequest.REACTOR_FAIL_AT_END )
+            .setRecursive( false )
+            .setShowErrors( true )
+            .setNoSnapshotUpdates( true );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), newRequest() )) {
+            MavenExecutionRequest request = mavenEmbedder.buildMavenExecutionRequest( mavenRequest );
+            assertEquals( "multithreaded", request.getBuilderId() );
+            assertEquals( 2, request.getDegreeOfConcurrency() );
+            assertEquals( MavenExecutionRequest.REACTOR_MAKE_UPSTREAM, request.getMakeBehavior() );
+            assertEquals( Collections.singletonList( ":module" ), request.getSelectedProjects() );
+            assertEquals( ":module", request.getResumeFrom() );
+            assertEquals( MavenExecutionRequest.REACTOR_FAIL_AT_END, request.getReactorFailureBehavior() );
+            assertFalse( request.isRecursive() );
+            assertTrue( request.isShowErrors() );
+            assertTrue( request.isNoSnapshotUpdates() );
+            assertEquals( new File( mavenRequest.getBaseDirectory() ).getAbsolutePath(), request.getBaseDirectory() );
+
+            MavenExecutionRequest defaults = mavenEmbedder.buildMavenExecutionRequest( newRequest() );
+            assertTrue( defaults.isRecursive() );
+            assertEquals( 1, defaults.getDegreeOfConcurrency() );
+        }
+    }
+
+    @Test
+    public void testPartialParallelBuild() throws Exception {
+        MavenRequest mavenRequest = newRequest()
+            .setThreadCount( "1C" )
+            .setSelectedProjects( Collections.singletonList( ":module" ) );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            MavenExecutionResult result = mavenEmbedder.execute( mavenRequest );
+            assertEquals( Collections.emptyList(), result.getExceptions() );
+            assertEquals( 1, result.getTopologicallySortedProjects().size() );
+            assertEquals( "module", result.getTopologicallySortedProjects().get( 0 ).getArtifactId() );
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.OperatingSystemMXBean;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Creates and closes a lot of embedders (<code>-Dhudson.maven.leakTest.iterations=2000</code> for a long run)
+ * and checks metaspace, loaded classes and open file descriptors stay within a budget.
+ */
+public class TestMavenEmbedderLeak {
+
+    private static final int ITERATIONS = Integer.getInteger( "hudson.maven.leakTest.iterations", 30 );
+
+    private static final long METASPACE_BUDGET = 16L * 1024 * 1024;
+
+    private static final long FD_BUDGET = 32;
+
+    /**
+     * each leaked maven home realm keeps a few dozens of classes, so a handful of leaks is enough to fail
+     */
+    private static final long LOADED_CLASSES_BUDGET = 200;
+
+    @Test
+    public void testCloseReleasesRealmsAndJars() throws Exception {
+        File mavenHome = new File( System.getProperty( "maven.home" ) );
+
+        // warm up so classes loaded once by the test classloader are not accounted
+        runOnce( mavenHome );
+        long metaspaceBefore = usedMetaspace();
+        long fdBefore = openFileDescriptors();
+        long classesBefore = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            runOnce( mavenHome );
+        }
+
+        long metaspaceAfter = usedMetaspace();
+        long fdAfter = openFileDescriptors();
+        long classesAfter = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        System.out.println( ITERATIONS + " embedders, metaspace delta " + ( metaspaceAfter - metaspaceBefore )
+                                + " bytes, file descriptors delta " + ( fdAfter - fdBefore )
+                                + ", loaded classes delta " + ( classesAfter - classesBefore ) );
+
+        assertTrue( "metaspace grew by " + ( metaspaceAfter - metaspaceBefore ),
+                    metaspaceAfter - metaspaceBefore < METASPACE_BUDGET );
+        assertTrue( "file descriptors grew by " + ( fdAfter - fdBefore ), fdAfter - fdBefore < FD_BUDGET );
+        assertTrue( "loaded classes grew by " + ( classesAfter - classesBefore ),
+                    classesAfter - classesBefore < LOADED_CLASSES_BUDGET );
+    }
+
+    private void runOnce( File mavenHome ) throws Exception {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        try (MavenEmbedder mavenEmbedder = new MavenEmbedder( mavenHome, mavenRequest )) {
+            // force loading classes from the maven home realm
+            mavenEmbedder.readProject( new File( "src/test/projects-tests/one-module/pom.xml" ) );
+        }
+    }
+
+    private static long usedMetaspace() throws InterruptedException {
+        for ( int i = 0; i < 3; i++ ) {
+            System.gc();
+            Thread.sleep( 50 );
+        }
+        long used = 0;
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+            if ( "Metaspace".equals( pool.getName() ) ) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long openFileDescriptors() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if ( os instanceof UnixOperatingSystemMXBean ) {
+            return ( (UnixOperatingSystemMXBean) os ).getOpenFileDescriptorCount();
+        }
+        // not available, only metaspace is checked
+        return 0;
+    }
+}
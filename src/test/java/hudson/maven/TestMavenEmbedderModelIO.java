@@ -0,0 +1,98 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.model.Model;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestMavenEmbedderModelIO {
+
+    private static final String POM = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n"
+        + "<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>a</artifactId>"
+        + "<version>1.0</version><name>dépôt</name></project>";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static MavenEmbedder mavenEmbedder;
+
+    @BeforeClass
+    public static void createEmbedder() throws Exception {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        mavenEmbedder = new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest );
+    }
+
+    @AfterClass
+    public static void closeEmbedder() {
+        mavenEmbedder.close();
+    }
+
+    @Test
+    public void testEncodingIsDetected() throws Exception {
+        File pom = tmp.newFile( "pom.xml" );
+        Files.write( pom.toPath(), POM.getBytes( StandardCharsets.ISO_8859_1 ) );
+
+        assertEquals( "dépôt", mavenEmbedder.readModel( pom ).getName() );
+        assertEquals( "dépôt", mavenEmbedder.readModel( pom.toPath() ).getName() );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect( 1024 );
+        direct.put( POM.getBytes( StandardCharsets.ISO_8859_1 ) ).flip();
+        assertEquals( "dépôt", mavenEmbedder.readModel( direct ).getName() );
+        assertEquals( 0, direct.position() );
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Model model = mavenEmbedder.readModel(
+            ByteBuffer.wrap( POM.getBytes( StandardCharsets.ISO_8859_1 ) ) );
+        model.setVersion( "2.0" );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mavenEmbedder.writeModel( out, model );
+        // written with the encoding of the original file
+        assertTrue( out.toString( "ISO-8859-1" ).contains( "dépôt" ) );
+
+        Path path = tmp.newFile( "written.xml" ).toPath();
+        mavenEmbedder.writeModel( path, model );
+        Model written = mavenEmbedder.readModel( path );
+        assertEquals( "2.0", written.getVersion() );
+        assertEquals( "dépôt", written.getName() );
+
+        StringWriter writer = new StringWriter();
+        mavenEmbedder.writeModel( writer, written );
+        assertTrue( writer.toString().contains( "<version>2.0</version>" ) );
+    }
+}
@@ -0,0 +1,73 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.eclipse.aether.RepositoryCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class TestMavenEmbedderRepositoryCache {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private void writeParent( File dir, String value ) throws Exception {
+        Files.write( new File( dir, "pom.xml" ).toPath(), ( "<project><modelVersion>4.0.0</modelVersion>"
+            + "<groupId>test</groupId><artifactId>parent</artifactId><version>1.0</version>"
+            + "<packaging>pom</packaging><properties><shared>" + value + "</shared></properties></project>" )
+            .getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void testParentIsReadOnce() throws Exception {
+        File root = tmp.newFolder();
+        writeParent( root, "first" );
+        File child = new File( root, "child" );
+        child.mkdirs();
+        Files.write( new File( child, "pom.xml" ).toPath(), ( "<project><modelVersion>4.0.0</modelVersion>"
+            + "<parent><groupId>test</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+            + "<artifactId>child</artifactId></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            File pom = new File( child, "pom.xml" );
+            assertEquals( "first", mavenEmbedder.readProject( pom ).getProperties().getProperty( "shared" ) );
+
+            writeParent( root, "second" );
+            // served from the embedder cache
+            assertEquals( "first", mavenEmbedder.readProject( pom ).getProperties().getProperty( "shared" ) );
+
+            RepositoryCache before = mavenEmbedder.getRepositoryCache();
+            mavenEmbedder.invalidateCaches();
+            assertNotSame( before, mavenEmbedder.getRepositoryCache() );
+            assertEquals( "second", mavenEmbedder.readProject( pom ).getProperties().getProperty( "shared" ) );
+        }
+    }
+}
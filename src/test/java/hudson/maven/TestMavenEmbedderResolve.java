@@ -0,0 +1,104 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestMavenEmbedderResolve {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testResolveArtifacts() throws Exception {
+        File remote = tmp.newFolder( "remote" );
+        for ( int i = 0; i < 10; i++ ) {
+            write( remote, "org/foo/tool-" + i + "/1.0/tool-" + i + "-1.0.jar" );
+        }
+        write( remote, "org/foo/tool-0/1.0/tool-0-1.0-sources.jar" );
+        File local = tmp.newFolder( "local" );
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( local.getAbsolutePath() );
+        mavenRequest.setResolveThreads( 4 );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            List<ArtifactRepository> repositories = Collections.singletonList(
+                mavenEmbedder.createRepository( remote.toURI().toString(), "tools" ) );
+            List<Artifact> artifacts = new ArrayList<>();
+            for ( int i = 0; i < 10; i++ ) {
+                artifacts.add( mavenEmbedder.createArtifact( "org.foo", "tool-" + i, "1.0", "runtime", "jar" ) );
+            }
+            artifacts.add( mavenEmbedder.createArtifactWithClassifier( "org.foo", "tool-0", "1.0", "jar", "sources" ) );
+            artifacts.add( mavenEmbedder.createArtifact( "org.foo", "missing", "1.0", "runtime", "jar" ) );
+
+            List<ResolvedArtifact> results = mavenEmbedder.resolve( artifacts, repositories );
+            assertEquals( 12, results.size() );
+            for ( int i = 0; i < 11; i++ ) {
+                ResolvedArtifact result = results.get( i );
+                assertTrue( result.toString(), result.isResolved() );
+                assertEquals( "tools", result.getRepositoryId() );
+                assertEquals( artifacts.get( i ), result.getArtifact() );
+                assertTrue( result.getFile().getPath().startsWith( local.getPath() ) );
+                assertEquals( result.getFile(), artifacts.get( i ).getFile() );
+            }
+            assertEquals( "tool-0-1.0-sources.jar", results.get( 10 ).getFile().getName() );
+            ResolvedArtifact missing = results.get( 11 );
+            assertFalse( missing.isResolved() );
+            assertNull( missing.getFile() );
+            assertFalse( missing.getExceptions().isEmpty() );
+
+            // the legacy single artifact resolution
+            Artifact artifact = mavenEmbedder.createArtifact( "org.foo", "tool-1", "1.0", "runtime", "jar" );
+            mavenEmbedder.resolve( artifact, repositories, null );
+            assertEquals( results.get( 1 ).getFile(), artifact.getFile() );
+            try {
+                mavenEmbedder.resolve( artifacts.get( 11 ), repositories, null );
+                fail( "resolved a missing artifact" );
+            } catch ( ArtifactNotFoundException e ) {
+                // expected
+            }
+        }
+    }
+
+    private static void write( File repository, String path ) throws Exception {
+        File file = new File( repository, path );
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), path.getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
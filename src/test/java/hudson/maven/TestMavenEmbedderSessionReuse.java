@@ -0,0 +1,147 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.apache.maven.plugin.ExtensionRealmCache;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.eclipse.aether.RepositoryCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestMavenEmbedderSessionReuse {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private void writeSettings( File settings, String value ) throws Exception {
+        Files.write( settings.toPath(), ( "<settings><profiles><profile><id>p</id><properties><fromSettings>" + value
+            + "</fromSettings></properties></profile></profiles><activeProfiles><activeProfile>p</activeProfile>"
+            + "</activeProfiles></settings>" ).getBytes( StandardCharsets.UTF_8 ) );
+        // make sure the mtime changes on coarse file systems
+        settings.setLastModified( settings.lastModified() + 2000 );
+    }
+
+    private void writePom( File pom, String name ) throws Exception {
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><groupId>test</groupId>"
+            + "<artifactId>reuse</artifactId><version>1.0</version><packaging>pom</packaging><name>" + name
+            + "</name></project>" ).getBytes( StandardCharsets.UTF_8 ) );
+        // make sure the mtime changes on coarse file systems
+        pom.setLastModified( pom.lastModified() + 2000 );
+    }
+
+    private MavenExecutionResult execute( MavenEmbedder mavenEmbedder, File pom ) throws Exception {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setPom( pom.getAbsolutePath() );
+        mavenRequest.setBaseDirectory( pom.getParent() );
+        mavenRequest.setGoals( Collections.singletonList( "validate" ) );
+        mavenRequest.setOffline( true );
+        MavenExecutionResult result = mavenEmbedder.execute( mavenRequest );
+        assertEquals( Collections.emptyList(), result.getExceptions() );
+        return result;
+    }
+
+    @Test
+    public void testOnlyChangesAreInvalidated() throws Exception {
+        File settings = tmp.newFile( "settings.xml" );
+        writeSettings( settings, "first" );
+        File pom = new File( tmp.newFolder(), "pom.xml" );
+        writePom( pom, "first" );
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        mavenRequest.setUserSettingsFile( settings.getAbsolutePath() );
+        mavenRequest.setSessionReuse( true );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            MavenExecutionResult result = execute( mavenEmbedder, pom );
+            assertEquals( "first", result.getProject().getProperties().getProperty( "fromSettings" ) );
+            RepositoryCache cache = mavenEmbedder.getRepositoryCache();
+
+            // nothing changed, caches are kept
+            execute( mavenEmbedder, pom );
+            assertSame( cache, mavenEmbedder.getRepositoryCache() );
+
+            writeSettings( settings, "second" );
+            result = execute( mavenEmbedder, pom );
+            assertEquals( "second", result.getProject().getProperties().getProperty( "fromSettings" ) );
+            assertSame( cache, mavenEmbedder.getRepositoryCache() );
+
+            writePom( pom, "second" );
+            result = execute( mavenEmbedder, pom );
+            assertEquals( "second", result.getProject().getName() );
+            assertNotSame( cache, mavenEmbedder.getRepositoryCache() );
+        }
+    }
+
+    @Test
+    public void testPooledContainerRealmsAreKept() throws Exception {
+        File settings = tmp.newFile( "settings.xml" );
+        writeSettings( settings, "first" );
+        File pom = new File( tmp.newFolder(), "pom.xml" );
+        writePom( pom, "first" );
+        EmbedderContainerPool pool = new EmbedderContainerPool();
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        mavenRequest.setUserSettingsFile( settings.getAbsolutePath() );
+        mavenRequest.setSessionReuse( true );
+        mavenRequest.setContainerPool( pool );
+        MavenRequest otherRequest = new MavenRequest();
+        otherRequest.setLocalRepositoryPath( mavenRequest.getLocalRepositoryPath() );
+        otherRequest.setContainerPool( pool );
+        try (MavenEmbedder mavenEmbedder = new MavenEmbedder( cl, mavenRequest );
+             MavenEmbedder other = new MavenEmbedder( cl, otherRequest )) {
+            assertSame( mavenEmbedder.getPlexusContainer(), other.getPlexusContainer() );
+
+            // an extension realm used by a build of the other embedder
+            File jar = tmp.newFile( "extension.jar" );
+            Artifact artifact = other.createArtifact( "test", "extension", "1.0", "runtime", "jar" );
+            artifact.setFile( jar );
+            ExtensionRealmCache extensionRealmCache = other.lookup( ExtensionRealmCache.class );
+            ExtensionRealmCache.Key key = extensionRealmCache.createKey( Collections.singletonList( artifact ) );
+            ClassRealm realm = other.getPlexusContainer().getContainerRealm().createChildRealm( "other-build" );
+            extensionRealmCache.put( key, realm, null, Collections.singletonList( artifact ) );
+
+            execute( mavenEmbedder, pom );
+            writeSettings( settings, "second" );
+            writePom( pom, "second" );
+            MavenExecutionResult result = execute( mavenEmbedder, pom );
+            assertEquals( "second", result.getProject().getProperties().getProperty( "fromSettings" ) );
+
+            assertSame( realm, extensionRealmCache.get( key ).getRealm() );
+            assertSame( realm, realm.getWorld().getClassRealm( "other-build" ) );
+        } finally {
+            pool.dispose();
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package hudson.maven;
 
 import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.jvnet.hudson.test.Issue;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
 
 import static org.junit.Assert.*;
 
@@ -14,6 +19,9 @@ import static org.junit.Assert.*;
  */
 public class TestMavenEmbedderUtils {
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void testMavenVersion() throws Exception {
         MavenInformation mavenInformation = MavenEmbedderUtils.getMavenVersion( new File( System.getProperty( "maven.home" ) ));
@@ -63,4 +71,32 @@ public class TestMavenEmbedderUtils {
          
         MavenEmbedderUtils.getMavenVersion(mvnHome, nestedLoad); 
     }
+
+    @Test
+    public void testMavenVersionIsCached() throws Exception {
+        File mvnHome = new File( System.getProperty( "maven.home" ) );
+        MavenInformation first = MavenEmbedderUtils.getMavenVersion( mvnHome );
+        assertSame( first, MavenEmbedderUtils.getMavenVersion( mvnHome ) );
+        assertTrue( first.getVersionResourcePath().startsWith( "jar:file:" ) );
+        assertTrue( first.getVersionResourcePath().contains( "maven-core-" ) );
+    }
+
+    @Test
+    public void testMavenVersionCacheFile() throws Exception {
+        File cacheFile = new File( tmp.getRoot(), "cache/maven-versions.properties" );
+        File mvnHome = new File( "src/test/maven-2.2.1" );
+        try {
+            MavenEmbedderUtils.setMavenInformationCacheFile( cacheFile );
+            assertEquals( "2.2.1", MavenEmbedderUtils.getMavenVersion( mvnHome ).getVersion() );
+            assertTrue( cacheFile.isFile() );
+
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream( cacheFile )) {
+                properties.load( in );
+            }
+            assertTrue( properties.getProperty( new File( mvnHome, "lib" ).getAbsolutePath() ).contains( "|2.2.1|" ) );
+        } finally {
+            MavenEmbedderUtils.setMavenInformationCacheFile( null );
+        }
+    }
 }
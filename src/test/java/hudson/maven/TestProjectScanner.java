@@ -0,0 +1,99 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestProjectScanner {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testModuleInSameDirectory() throws Exception {
+        List<ScannedProject> projects =
+            ProjectScanner.scan( new File( "src/test/projects-tests/several-modules-in-directory" ) );
+        assertEquals( 2, projects.size() );
+
+        ScannedProject root = projects.get( 0 );
+        assertEquals( "com.mycompany.app:reactor:1.0-SNAPSHOT", root.getId() );
+        assertEquals( "pom", root.getPackaging() );
+        assertEquals( Arrays.asList( "module.xml" ), root.getModules() );
+        assertFalse( root.hasParent() );
+        assertNull( root.getParentRelativePath() );
+
+        assertEquals( "com.mycompany.app:module:1.0-SNAPSHOT", projects.get( 1 ).getId() );
+        assertEquals( "module.xml", projects.get( 1 ).getPomFile().getName() );
+    }
+
+    @Test
+    public void testInheritedCoordinates() throws Exception {
+        List<ScannedProject> projects =
+            ProjectScanner.scan( new File( "src/test/projects-tests/incorrect-inheritence-testcase/pom.xml" ) );
+        assertEquals( 2, projects.size() );
+
+        ScannedProject module = projects.get( 1 );
+        assertEquals( "org.hudson-ci.testcase:wrong-inheritence-module:1.0-SNAPSHOT", module.getId() );
+        assertEquals( "jar", module.getPackaging() );
+        assertTrue( module.hasParent() );
+        assertEquals( "wrong-inheritence-parent", module.getParentArtifactId() );
+        assertEquals( "../pom.xml", module.getParentRelativePath() );
+    }
+
+    @Test
+    public void testCyclesAndMissingModules() throws Exception {
+        File root = tmp.newFolder();
+        Files.write( new File( root, "pom.xml" ).toPath(), ( "<?xml version=\"1.0\"?>\n<!-- cycle -->\n"
+            + "<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>root</artifactId>"
+            + "<version>1</version><packaging>pom</packaging>"
+            + "<build><plugins><plugin><artifactId>ignored</artifactId></plugin></plugins></build>"
+            + "<modules><module>a</module><module>missing</module></modules></project>" )
+            .getBytes( StandardCharsets.UTF_8 ) );
+        File a = new File( root, "a" );
+        a.mkdirs();
+        Files.write( new File( a, "pom.xml" ).toPath(), ( "<project><parent><groupId>g</groupId>"
+            + "<artifactId>root</artifactId><version>1</version><relativePath>..</relativePath></parent>"
+            + "<artifactId>a</artifactId><modules><module>..</module></modules></project>" )
+            .getBytes( StandardCharsets.UTF_8 ) );
+
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setLocalRepositoryPath( System.getProperty( "localRepository" , "./target/repo-maven" ) );
+        try (MavenEmbedder mavenEmbedder =
+                 new MavenEmbedder( Thread.currentThread().getContextClassLoader(), mavenRequest )) {
+            List<ScannedProject> projects = mavenEmbedder.scanProjects( root );
+            assertEquals( 2, projects.size() );
+            assertEquals( "g:a:1", projects.get( 1 ).getId() );
+            assertEquals( "..", projects.get( 1 ).getParentRelativePath() );
+        }
+    }
+}
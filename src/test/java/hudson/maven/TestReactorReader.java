@@ -0,0 +1,258 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.WorkspaceRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestReactorReader {
+
+    private static final File ROOT = new File( "target/reactor" );
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    static MavenProject newProject( String groupId, String artifactId, String version ) {
+        MavenProject project = new MavenProject();
+        project.setGroupId( groupId );
+        project.setArtifactId( artifactId );
+        project.setVersion( version );
+        project.setFile( new File( ROOT, artifactId + "/pom.xml" ) );
+        project.setArtifact( newArtifact( groupId, artifactId, version, "jar", null ) );
+        return project;
+    }
+
+    static org.apache.maven.artifact.Artifact newArtifact( String groupId, String artifactId, String version,
+                                                           String type, String classifier ) {
+        DefaultArtifactHandler handler = new DefaultArtifactHandler( type );
+        if ( "test-jar".equals( type ) ) {
+            handler.setExtension( "jar" );
+        }
+        return new org.apache.maven.artifact.DefaultArtifact( groupId, artifactId, version, "compile", type,
+                                                              classifier, handler );
+    }
+
+    @Test
+    public void testFindArtifact() {
+        MavenProject core = newProject( "org.test", "core", "1.0" );
+        core.addAttachedArtifact( newArtifact( "org.test", "core", "1.0", "test-jar", "tests" ) );
+        Map<String, MavenProject> projects = new HashMap<>();
+        projects.put( "org.test:core:1.0", core );
+        ReactorReader reactorReader = new ReactorReader( projects, ROOT );
+
+        File expected = new File( ROOT, "core" );
+        assertEquals( expected, reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:1.0" ) ) );
+        assertEquals( expected, reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:tests:1.0" ) ) );
+        assertEquals( core.getFile(), reactorReader.findArtifact( new DefaultArtifact( "org.test:core:pom:1.0" ) ) );
+        assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:sources:1.0" ) ) );
+        assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.test:core:zip:1.0" ) ) );
+        assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:2.0" ) ) );
+        assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.test:other:jar:1.0" ) ) );
+        assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.other:core:jar:1.0" ) ) );
+
+        // attached during the build
+        core.addAttachedArtifact( newArtifact( "org.test", "core", "1.0", "java-source", "sources" ) );
+        assertEquals( expected, reactorReader.findArtifact( new DefaultArtifact( "org.test:core:java-source:sources:1.0" ) ) );
+    }
+
+    @Test
+    public void testFindVersions() {
+        Map<String, MavenProject> projects = new HashMap<>();
+        projects.put( "org.test:core:1.0", newProject( "org.test", "core", "1.0" ) );
+        ReactorReader reactorReader = new ReactorReader( projects, ROOT );
+
+        assertEquals( Collections.singletonList( "1.0" ),
+                      reactorReader.findVersions( new DefaultArtifact( "org.test:core:jar:[1,)" ) ) );
+        assertEquals( Collections.emptyList(),
+                      reactorReader.findVersions( new DefaultArtifact( "org.test:core:jar:sources:[1,)" ) ) );
+        assertEquals( Collections.emptyList(),
+                      reactorReader.findVersions( new DefaultArtifact( "org.test:other:jar:[1,)" ) ) );
+
+        WorkspaceRepository repository = reactorReader.getRepository();
+        assertSame( repository, reactorReader.getRepository() );
+
+        MavenProject core2 = newProject( "org.test", "core", "2.0" );
+        reactorReader.addProject( core2 );
+        assertEquals( Arrays.asList( "1.0", "2.0" ),
+                      reactorReader.findVersions( new DefaultArtifact( "org.test:core:jar:[1,)" ) ) );
+        assertEquals( new File( ROOT, "core" ),
+                      reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:2.0" ) ) );
+        assertEquals( new HashSet<>( Arrays.asList( "org.test:core:1.0", "org.test:core:2.0" ) ),
+                      reactorReader.getRepository().getKey() );
+        // the given map is copied
+        assertEquals( 1, projects.size() );
+
+        assertTrue( reactorReader.removeProject( projects.get( "org.test:core:1.0" ) ) );
+        assertFalse( reactorReader.removeProject( projects.get( "org.test:core:1.0" ) ) );
+        assertEquals( Collections.singletonList( "2.0" ),
+                      reactorReader.findVersions( new DefaultArtifact( "org.test:core:jar:[1,)" ) ) );
+        assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:1.0" ) ) );
+        assertEquals( Collections.singleton( "org.test:core:2.0" ), reactorReader.getRepository().getKey() );
+    }
+
+    @Test
+    public void testConcurrentChanges() throws Exception {
+        int threads = 8;
+        int projectsPerThread = 200;
+        ReactorReader reactorReader = new ReactorReader( new HashMap<>(), ROOT );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ ) {
+                int thread = t;
+                futures.add( executor.submit( () -> {
+                    for ( int i = 0; i < projectsPerThread; i++ ) {
+                        // all the threads share the artifactIds, each one adds its own versions
+                        MavenProject project = newProject( "org.test", "module-" + i, thread + "." + i );
+                        reactorReader.addProject( project );
+                        assertEquals( new File( ROOT, project.getArtifactId() ),
+                                      reactorReader.findArtifact( new DefaultArtifact( "org.test", project.getArtifactId(),
+                                                                                       "jar", project.getVersion() ) ) );
+                        reactorReader.getRepository();
+                        if ( i % 2 == 1 ) {
+                            assertTrue( reactorReader.removeProject( project ) );
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            for ( Future<?> future : futures ) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals( threads * projectsPerThread / 2, ( (Set<?>) reactorReader.getRepository().getKey() ).size() );
+        for ( int i = 0; i < projectsPerThread; i++ ) {
+            List<String> versions =
+                reactorReader.findVersions( new DefaultArtifact( "org.test:module-" + i + ":jar:[0,)" ) );
+            assertEquals( i % 2 == 0 ? threads : 0, versions.size() );
+        }
+    }
+
+    private static File awaitArtifact( ReactorReader reactorReader, String coords, File expected )
+        throws InterruptedException {
+        // the watch service reports the changes asynchronously
+        long deadline = System.currentTimeMillis() + 15000;
+        File file = reactorReader.findArtifact( new DefaultArtifact( coords ) );
+        while ( !Objects.equals( expected, file ) && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 20 );
+            file = reactorReader.findArtifact( new DefaultArtifact( coords ) );
+        }
+        return file;
+    }
+
+    @Test
+    public void testBuildOutputs() throws Exception {
+        File target = tmp.newFolder( "core", "target" );
+        MavenProject core = newProject( "org.test", "core", "1.0" );
+        core.getBuild().setDirectory( target.getPath() );
+        core.getBuild().setOutputDirectory( new File( target, "classes" ).getPath() );
+        core.getBuild().setTestOutputDirectory( new File( target, "test-classes" ).getPath() );
+        core.getBuild().setFinalName( "core-1.0" );
+        core.addAttachedArtifact( newArtifact( "org.test", "core", "1.0", "test-jar", "tests" ) );
+        Map<String, MavenProject> projects = new HashMap<>();
+        projects.put( "org.test:core:1.0", core );
+
+        ReactorReader reactorReader = new ReactorReader( projects, ROOT, true );
+        try {
+            assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:1.0" ) ) );
+            assertNull( reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:tests:1.0" ) ) );
+            assertEquals( core.getFile(), reactorReader.findArtifact( new DefaultArtifact( "org.test:core:pom:1.0" ) ) );
+
+            File classes = new File( target, "classes" );
+            File testClasses = new File( target, "test-classes" );
+            assertTrue( classes.mkdirs() && testClasses.mkdirs() );
+            assertEquals( classes, awaitArtifact( reactorReader, "org.test:core:jar:1.0", classes ) );
+            assertEquals( testClasses, awaitArtifact( reactorReader, "org.test:core:jar:tests:1.0", testClasses ) );
+
+            File jar = new File( target, "core-1.0.jar" );
+            Files.write( jar.toPath(), new byte[0] );
+            assertEquals( jar, awaitArtifact( reactorReader, "org.test:core:jar:1.0", jar ) );
+
+            Files.delete( jar.toPath() );
+            assertEquals( classes, awaitArtifact( reactorReader, "org.test:core:jar:1.0", classes ) );
+
+            // once packaged the artifact file wins
+            File packaged = tmp.newFile( "elsewhere.jar" );
+            core.getArtifact().setFile( packaged );
+            assertEquals( packaged, reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:1.0" ) ) );
+            // not changed by the lookups
+            assertEquals( packaged, core.getArtifact().getFile() );
+        } finally {
+            reactorReader.close();
+        }
+    }
+
+    @Test
+    public void testCloseReleasesWatcher() throws Exception {
+        File target = tmp.newFolder( "core", "target" );
+        MavenProject core = newProject( "org.test", "core", "1.0" );
+        core.getBuild().setDirectory( target.getPath() );
+        core.getBuild().setOutputDirectory( new File( target, "classes" ).getPath() );
+        Map<String, MavenProject> projects = new HashMap<>();
+        projects.put( "org.test:core:1.0", core );
+
+        ReactorReader reactorReader;
+        FileStatusCache fileStatusCache;
+        try (ReactorReader reader = new ReactorReader( projects, ROOT, true )) {
+            reactorReader = reader;
+            fileStatusCache = reader.getFileStatusCache();
+            assertNull( reader.findArtifact( new DefaultArtifact( "org.test:core:jar:1.0" ) ) );
+            assertTrue( fileStatusCache.watchedDirectories() > 0 );
+        }
+        assertEquals( 0, fileStatusCache.watchedDirectories() );
+        reactorReader.close();
+
+        // checked on the file system from now on
+        File classes = new File( target, "classes" );
+        assertTrue( classes.mkdirs() );
+        assertEquals( classes, reactorReader.findArtifact( new DefaultArtifact( "org.test:core:jar:1.0" ) ) );
+        assertEquals( 0, fileStatusCache.size() );
+        assertEquals( 0, fileStatusCache.watchedDirectories() );
+    }
+}
@@ -0,0 +1,134 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.settings.Settings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestSettingsCache {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static void writeSettings( File file, String localRepository ) throws Exception {
+        Files.write( file.toPath(), ( "<settings><localRepository>" + localRepository
+            + "</localRepository></settings>" ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private MavenRequest newRequest( File userSettings ) {
+        MavenRequest mavenRequest = new MavenRequest();
+        mavenRequest.setUserSettingsFile( userSettings.getAbsolutePath() );
+        return mavenRequest;
+    }
+
+    @Test
+    public void testSharedAndInvalidatedOnChange() throws Exception {
+        File userSettings = tmp.newFile( "settings.xml" );
+        writeSettings( userSettings, "/tmp/first-repo" );
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+        try (MavenEmbedder first = new MavenEmbedder( cl, newRequest( userSettings ) );
+             MavenEmbedder second = new MavenEmbedder( cl, newRequest( userSettings ) )) {
+
+            assertEquals( "/tmp/first-repo", first.getSettings().getLocalRepository() );
+
+            SettingsCache.Key key = SettingsCache.newKey( new File( "unused-global.xml" ), userSettings, null );
+            Settings cached = SettingsCache.INSTANCE.get( key, Settings::new );
+            assertSame( cached, SettingsCache.INSTANCE.get( key, Settings::new ) );
+
+            // callers get their own copy
+            Settings copy = second.getSettings();
+            assertNotSame( copy, second.getSettings() );
+            copy.setLocalRepository( "/tmp/modified" );
+            assertEquals( "/tmp/first-repo", first.getSettings().getLocalRepository() );
+
+            writeSettings( userSettings, "/tmp/other-repository" );
+            // make sure the change is visible even on file systems with a coarse mtime
+            userSettings.setLastModified( userSettings.lastModified() + 2000 );
+
+            assertEquals( "/tmp/other-repository", first.getSettings().getLocalRepository() );
+            assertEquals( "/tmp/other-repository", second.getLocalRepositoryPath() );
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        SettingsCache.INSTANCE.clear();
+        File global = new File( tmp.getRoot(), "missing-global.xml" );
+        File user = new File( tmp.getRoot(), "missing-user.xml" );
+        List<SettingsCache.Key> keys = new ArrayList<>();
+        for ( int i = 0; i <= 64; i++ ) {
+            Properties properties = new Properties();
+            properties.setProperty( "i", Integer.toString( i ) );
+            keys.add( SettingsCache.newKey( global, user, properties ) );
+        }
+        Settings first = SettingsCache.INSTANCE.get( keys.get( 0 ), Settings::new );
+        for ( int i = 1; i < 64; i++ ) {
+            SettingsCache.INSTANCE.get( keys.get( i ), Settings::new );
+        }
+        assertSame( first, SettingsCache.INSTANCE.get( keys.get( 0 ), Settings::new ) );
+
+        Settings second = SettingsCache.INSTANCE.get( keys.get( 1 ), Settings::new );
+        Settings last = SettingsCache.INSTANCE.get( keys.get( 64 ), Settings::new );
+        assertSame( first, SettingsCache.INSTANCE.get( keys.get( 0 ), Settings::new ) );
+        assertSame( second, SettingsCache.INSTANCE.get( keys.get( 1 ), Settings::new ) );
+        assertSame( last, SettingsCache.INSTANCE.get( keys.get( 64 ), Settings::new ) );
+        // the least recently used one went away
+        boolean[] built = new boolean[1];
+        SettingsCache.INSTANCE.get( keys.get( 2 ), () -> {
+            built[0] = true;
+            return new Settings();
+        } );
+        assertTrue( built[0] );
+    }
+
+    @Test
+    public void testPropertiesDigestFollowsChanges() throws Exception {
+        File global = new File( "global.xml" );
+        File user = new File( "user.xml" );
+        Properties system = new Properties();
+        system.setProperty( "a", "1" );
+        SettingsCache.PropertiesDigest propertiesDigest = new SettingsCache.PropertiesDigest();
+
+        SettingsCache.Key key = propertiesDigest.newKey( global, user, null, system );
+        assertEquals( SettingsCache.newKey( global, user, null, system ), key );
+        assertEquals( key, propertiesDigest.newKey( global, user, null, system ) );
+
+        system.setProperty( "b", "2" );
+        SettingsCache.Key changed = propertiesDigest.newKey( global, user, null, system );
+        assertNotEquals( key, changed );
+        assertEquals( SettingsCache.newKey( global, user, null, system ), changed );
+    }
+}
@@ -0,0 +1,184 @@
+package hudson.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestWorkspaceIndexReader {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testFindArtifacts() throws Exception {
+        File root = tmp.newFolder( "workspace" );
+        File pom = writePom( new File( root, "job1" ), "g", "a", "1.0" );
+        writePom( new File( root, "job2/module" ), "g", "a", "2.0" );
+        writePom( new File( root, "job3" ), "g", "${project.name}", "1.0" );
+        File jar = new File( root, "job1/target/a-1.0.jar" );
+        jar.getParentFile().mkdirs();
+        Files.write( jar.toPath(), new byte[0] );
+        File testClasses = new File( root, "job2/module/target/test-classes" );
+        testClasses.mkdirs();
+
+        try (WorkspaceIndexReader reader = new WorkspaceIndexReader( new File( tmp.getRoot(), "index" ),
+                                                                      Collections.singletonList( root ) )) {
+            assertEquals( 2, reader.size() );
+            assertEquals( pom.getAbsoluteFile(), reader.findArtifact( new DefaultArtifact( "g:a:pom:1.0" ) ) );
+            assertEquals( jar.getAbsoluteFile(), reader.findArtifact( new DefaultArtifact( "g:a:1.0" ) ) );
+            assertEquals( testClasses.getAbsoluteFile(),
+                          reader.findArtifact( new DefaultArtifact( "g:a:jar:tests:2.0" ) ) );
+            assertNull( reader.findArtifact( new DefaultArtifact( "g:a:2.0" ) ) );
+            assertNull( reader.findArtifact( new DefaultArtifact( "g:b:1.0" ) ) );
+            assertEquals( Arrays.asList( "1.0", "2.0" ), reader.findVersions( new DefaultArtifact( "g:a:pom:0" ) ) );
+            assertEquals( Collections.singletonList( "1.0" ), reader.findVersions( new DefaultArtifact( "g:a:0" ) ) );
+        }
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        File root = tmp.newFolder( "workspace" );
+        File index = new File( tmp.getRoot(), "index" );
+        File job1 = new File( root, "job1" );
+        File pom = writePom( job1, "g", "a", "1.0" );
+        writePom( new File( root, "job2" ), "g", "b", "1.0" );
+
+        try (WorkspaceIndexReader reader = new WorkspaceIndexReader( index, Collections.singletonList( root ) )) {
+            assertEquals( 2, reader.readPoms );
+            reader.refresh();
+            assertEquals( 2, reader.readPoms );
+
+            writePom( job1, "g", "a", "1.1" );
+            pom.setLastModified( pom.lastModified() + 2000 );
+            File added = writePom( new File( root, "job3" ), "g", "c", "1.0" );
+            root.setLastModified( root.lastModified() + 2000 );
+            reader.refresh();
+            assertEquals( 4, reader.readPoms );
+            assertEquals( 3, reader.size() );
+            assertNull( reader.findArtifact( new DefaultArtifact( "g:a:pom:1.0" ) ) );
+            assertEquals( pom.getAbsoluteFile(), reader.findArtifact( new DefaultArtifact( "g:a:pom:1.1" ) ) );
+            assertEquals( added.getAbsoluteFile(), reader.findArtifact( new DefaultArtifact( "g:c:pom:1.0" ) ) );
+        }
+
+        // the index file is read by the next instance, nothing changed
+        try (WorkspaceIndexReader reader = new WorkspaceIndexReader( index, Collections.singletonList( root ) )) {
+            assertEquals( 0, reader.readPoms );
+            assertEquals( 3, reader.size() );
+            assertEquals( pom.getAbsoluteFile(), reader.findArtifact( new DefaultArtifact( "g:a:pom:1.1" ) ) );
+
+            assertTrue( pom.delete() );
+            job1.setLastModified( job1.lastModified() + 2000 );
+            reader.refresh();
+            assertEquals( 2, reader.size() );
+            assertNull( reader.findArtifact( new DefaultArtifact( "g:a:pom:1.1" ) ) );
+        }
+    }
+
+    @Test
+    public void testRefreshReadsIndexOfOtherReader() throws Exception {
+        File root = tmp.newFolder( "workspace" );
+        File index = new File( tmp.getRoot(), "index" );
+        writePom( new File( root, "job1" ), "g", "a", "1.0" );
+
+        // stands for another JVM sharing the index file
+        try (WorkspaceIndexReader first = new WorkspaceIndexReader( index, Collections.singletonList( root ) );
+             WorkspaceIndexReader second = new WorkspaceIndexReader( index, Collections.singletonList( root ) )) {
+            assertEquals( 1, first.readPoms );
+            assertEquals( 0, second.readPoms );
+
+            File added = writePom( new File( root, "job2" ), "g", "b", "1.0" );
+            root.setLastModified( root.lastModified() + 2000 );
+            first.refresh();
+            assertEquals( 2, first.readPoms );
+            assertNull( second.findArtifact( new DefaultArtifact( "g:b:pom:1.0" ) ) );
+
+            second.refresh();
+            assertEquals( 0, second.readPoms );
+            assertEquals( 2, second.size() );
+            assertEquals( added.getAbsoluteFile(), second.findArtifact( new DefaultArtifact( "g:b:pom:1.0" ) ) );
+        }
+    }
+
+    @Test
+    public void testReadersWithOtherRoots() throws Exception {
+        File firstRoot = tmp.newFolder( "first" );
+        File secondRoot = tmp.newFolder( "second" );
+        File index = new File( tmp.getRoot(), "index" );
+        File firstPom = writePom( new File( firstRoot, "job" ), "g", "a", "1.0" );
+        File secondPom = writePom( new File( secondRoot, "job" ), "g", "a", "1.0" );
+        writePom( new File( secondRoot, "other" ), "g", "b", "1.0" );
+
+        try (WorkspaceIndexReader first = new WorkspaceIndexReader( index, Collections.singletonList( firstRoot ) );
+             WorkspaceIndexReader second = new WorkspaceIndexReader( index, Collections.singletonList( secondRoot ) )) {
+            first.refresh();
+            assertEquals( 1, first.size() );
+            assertEquals( 2, second.size() );
+            assertEquals( firstPom.getAbsoluteFile(), first.findArtifact( new DefaultArtifact( "g:a:pom:1.0" ) ) );
+            assertEquals( secondPom.getAbsoluteFile(), second.findArtifact( new DefaultArtifact( "g:a:pom:1.0" ) ) );
+            assertNull( first.findArtifact( new DefaultArtifact( "g:b:pom:1.0" ) ) );
+            assertEquals( Collections.singletonList( "1.0" ),
+                          second.findVersions( new DefaultArtifact( "g:a:pom:0" ) ) );
+
+            // the readers don't prune the directories of each other
+            Object written = Files.readAttributes( index.toPath(), BasicFileAttributes.class ).fileKey();
+            first.refresh();
+            second.refresh();
+            assertEquals( written, Files.readAttributes( index.toPath(), BasicFileAttributes.class ).fileKey() );
+            assertEquals( 3, first.readPoms + second.readPoms );
+        }
+    }
+
+    @Test
+    public void testDamagedIndex() throws Exception {
+        File root = tmp.newFolder( "workspace" );
+        File index = new File( tmp.getRoot(), "index" );
+        File pom = writePom( root, "g", "a", "1.0" );
+        Files.write( index.toPath(), "not an index".getBytes( StandardCharsets.UTF_8 ) );
+
+        try (WorkspaceIndexReader reader = new WorkspaceIndexReader( index, Collections.singletonList( root ) )) {
+            assertEquals( 1, reader.size() );
+            assertEquals( pom.getAbsoluteFile(), reader.findArtifact( new DefaultArtifact( "g:a:pom:1.0" ) ) );
+        }
+    }
+
+    private static File writePom( File directory, String groupId, String artifactId, String version )
+        throws Exception {
+        directory.mkdirs();
+        File pom = new File( directory, "pom.xml" );
+        Files.write( pom.toPath(), ( "<project><modelVersion>4.0.0</modelVersion><groupId>" + groupId
+            + "</groupId><artifactId>" + artifactId + "</artifactId><version>" + version + "</version></project>" )
+            .getBytes( StandardCharsets.UTF_8 ) );
+        return pom;
+    }
+}